@@ -0,0 +1,76 @@
+package linalg;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the basic vector operations, both of the immutable EuclideanVector and of the
+ * mutable Vector3 used in the render loop.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EuclideanVectorBenchmark {
+    private EuclideanVector a;
+    private EuclideanVector b;
+    private Vector3 u;
+    private Vector3 v;
+    private final Vector3 dest = new Vector3();
+
+    @Setup
+    public void setup() {
+        this.a = new EuclideanVector(1.5, -2.25, 3.125);
+        this.b = new EuclideanVector(-0.5, 4, 2);
+        this.u = new Vector3(1.5, -2.25, 3.125);
+        this.v = new Vector3(-0.5, 4, 2);
+    }
+
+    @Benchmark
+    public EuclideanVector add() {
+        return this.a.add(this.b);
+    }
+
+    @Benchmark
+    public EuclideanVector subtract() {
+        return this.a.subtract(this.b);
+    }
+
+    @Benchmark
+    public float dot() {
+        return this.a.dot(this.b);
+    }
+
+    @Benchmark
+    public EuclideanVector cross() {
+        return this.a.cross(this.b);
+    }
+
+    @Benchmark
+    public EuclideanVector normalize() {
+        return this.a.getNormalized();
+    }
+
+    @Benchmark
+    public Vector3 addVector3() {
+        return this.u.add(this.v, this.dest);
+    }
+
+    @Benchmark
+    public double dotVector3() {
+        return this.u.dot(this.v);
+    }
+
+    @Benchmark
+    public Vector3 crossVector3() {
+        return this.u.cross(this.v, this.dest);
+    }
+
+    @Benchmark
+    public Vector3 normalizeVector3() {
+        return this.u.normalize(this.dest);
+    }
+}
@@ -0,0 +1,77 @@
+package obj;
+
+import mesh.Mesh;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for reading and writing .obj files: teapot.obj (expected in the working directory) and
+ * generated grids of n x n vertices ("grid:n").
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class OBJFileBenchmark {
+    @Param({"teapot.obj", "grid:300", "grid:1500"})
+    public String source;
+
+    private String path;
+    private String output;
+    private Mesh mesh;
+
+    @Setup
+    public void setup() throws Exception {
+        if(this.source.startsWith("grid:")) {
+            File file = File.createTempFile("grid", ".obj");
+            file.deleteOnExit();
+            this.path = file.getPath();
+            OBJFile.write(grid(Integer.parseInt(this.source.substring(5))), this.path);
+        } else {
+            this.path = this.source;
+        }
+        File output = File.createTempFile("output", ".obj");
+        output.deleteOnExit();
+        this.output = output.getPath();
+        this.mesh = OBJFile.read(this.path);
+    }
+
+    /**
+     * Creates a (wavy) grid of n x n vertices with two triangles per cell.
+     */
+    private static Mesh grid(int n) throws Exception {
+        Mesh mesh = new Mesh();
+        for(int i = 0; i < n; i++) {
+            for(int j = 0; j < n; j++) {
+                mesh.addVertex((double) i / n, (double) j / n, 0.1 * Math.sin(i * 0.1) * Math.cos(j * 0.1));
+            }
+        }
+        for(int i = 0; i + 1 < n; i++) {
+            for(int j = 0; j + 1 < n; j++) {
+                int v = i * n + j;
+                mesh.addFace(v, v + n, v + 1);
+                mesh.addFace(v + 1, v + n, v + n + 1);
+            }
+        }
+        return mesh;
+    }
+
+    @Benchmark
+    public Mesh read() throws Exception {
+        return OBJFile.read(this.path);
+    }
+
+    @Benchmark
+    public Mesh readSingleThreaded() throws Exception {
+        return OBJFile.read(this.path, 1);
+    }
+
+    @Benchmark
+    public void write() throws Exception {
+        OBJFile.write(this.mesh, this.output);
+    }
+}
@@ -0,0 +1,39 @@
+package render;
+
+import linalg.EuclideanVector;
+import linalg.Vector3;
+import mesh.Vertex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the projection of points to the screen.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CameraBenchmark {
+    private Camera camera;
+    private Vertex vertex;
+    private final Vector3 dest = new Vector3();
+
+    @Setup
+    public void setup() {
+        this.camera = new Scene(1000, 500).getCamera();
+        this.vertex = new Vertex(0.25, -0.5, 0.75);
+    }
+
+    @Benchmark
+    public EuclideanVector project() {
+        return this.camera.project(this.vertex);
+    }
+
+    @Benchmark
+    public boolean projectPrimitive() {
+        return this.camera.project(0.25, -0.5, 0.75, this.dest);
+    }
+}
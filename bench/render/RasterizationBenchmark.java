@@ -0,0 +1,67 @@
+package render;
+
+import linalg.EuclideanVector;
+import mesh.Vertex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for drawing single triangles and lines of different sizes (in pixels on the screen).
+ * The buffers are cleared before every invocation, so every pixel passes the depth test.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RasterizationBenchmark {
+    @Param({"4", "32", "128", "400"})
+    public int size;
+
+    private Scene scene;
+    private Vertex a;
+    private Vertex b;
+    private Vertex c;
+    private int color;
+
+    /**
+     * Places a right triangle with legs of the given size (in pixels) around the lock point of the camera,
+     * parallel to the screen.
+     */
+    @Setup
+    public void setup() {
+        this.scene = new Scene(1000, 500);
+        Camera camera = this.scene.getCamera();
+        EuclideanVector lock = camera.getLock();
+        EuclideanVector right = camera.getLook().cross(new EuclideanVector(0, 0, -1)).getNormalized();
+        EuclideanVector up = right.cross(camera.getLook());
+        // the number of pixels per unit at the lock point (project does not divide by the depth)
+        EuclideanVector p = camera.project(new Vertex(lock.add(right).getCoordinates()));
+        EuclideanVector q = camera.project(new Vertex(lock.getCoordinates()));
+        double scale = p.x() / p.z() - q.x() / q.z();
+        double length = this.size / Math.abs(scale);
+        EuclideanVector corner = lock.subtract(right.add(up).getScaled(length / 2));
+        this.a = new Vertex(corner.getCoordinates());
+        this.b = new Vertex(corner.add(right.getScaled(length)).getCoordinates());
+        this.c = new Vertex(corner.add(up.getScaled(length)).getCoordinates());
+        this.color = Color.fromRGB((byte) 200, (byte) 200, (byte) 200);
+    }
+
+    @Setup(Level.Invocation)
+    public void clear() {
+        // rendering a scene without meshes only clears the buffers
+        this.scene.render();
+    }
+
+    @Benchmark
+    public void rasterizeTriangle() {
+        this.scene.rasterizeTriangle(this.a, this.b, this.c, this.color);
+    }
+
+    @Benchmark
+    public void rasterizeLine() {
+        this.scene.rasterizeLine(this.a, this.b, this.color);
+    }
+}
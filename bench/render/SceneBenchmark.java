@@ -0,0 +1,63 @@
+package render;
+
+import mesh.Vertex;
+import obj.OBJFile;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for rendering a full frame of teapot.obj at several resolutions, with forward and deferred
+ * shading, and for shading it again after the light moved.
+ * The file is expected in the working directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SceneBenchmark {
+    @Param({"320x240", "1000x500", "1920x1080"})
+    public String resolution;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"false", "true"})
+    public boolean deferred;
+
+    private Scene scene;
+    private PointLight light;
+    private boolean moved;
+
+    @Setup
+    public void setup() throws Exception {
+        String[] size = this.resolution.split("x");
+        this.scene = new Scene(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+        this.scene.setThreadCount(this.threads);
+        this.scene.setDeferredShading(this.deferred);
+        this.light = new PointLight(new Vertex(-1, 5, 2), 2);
+        this.scene.addLight(this.light);
+        this.scene.addMesh(OBJFile.read("teapot.obj"));
+    }
+
+    @Benchmark
+    public Scene render() {
+        // nothing changes between the frames, so without invalidating, all but the first frame would be skipped
+        this.scene.invalidate();
+        this.scene.render();
+        return this.scene;
+    }
+
+    /**
+     * Moves the light back and forth, so every frame is shaded again from the geometry buffer.
+     */
+    @Benchmark
+    public Scene reshade() {
+        this.moved = !this.moved;
+        this.light.setPosition(this.moved ? new Vertex(1, 5, 2) : new Vertex(-1, 5, 2));
+        this.scene.render();
+        return this.scene;
+    }
+}
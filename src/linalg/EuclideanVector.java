@@ -20,6 +20,16 @@ public class EuclideanVector {
         System.arraycopy(coordinates, 0, this.coordinates, 0, coordinates.length);
     }
 
+    /**
+     * Constructor which takes ownership of the given array instead of copying it.
+     * Only used for freshly allocated results of the operations below.
+     * @param coordinates the coordinates of the vector
+     * @param owned marker to distinguish this constructor from the copying one
+     */
+    private EuclideanVector(double[] coordinates, boolean owned) {
+        this.coordinates = coordinates;
+    }
+
     public double[] getCoordinates() {
         return this.coordinates;
     }
@@ -49,7 +59,7 @@ public class EuclideanVector {
         if(n < 0) {
             n = 0;
         }
-        return new EuclideanVector(new double[n]);
+        return new EuclideanVector(new double[n], true);
     }
 
     /*@
@@ -139,7 +149,7 @@ public class EuclideanVector {
             sum[i] = this.coordinates[i] + other.getCoordinate(i);
         }
 
-        return new EuclideanVector(sum);
+        return new EuclideanVector(sum, true);
     }
 
     /*@
@@ -162,7 +172,7 @@ public class EuclideanVector {
             difference[i] = this.coordinates[i] - other.getCoordinate(i);
         }
 
-        return new EuclideanVector(difference);
+        return new EuclideanVector(difference, true);
     }
 
     /*@
@@ -198,7 +208,7 @@ public class EuclideanVector {
         for(int i = 0; i < scaled.length; i++) {
             scaled[i] = alpha * this.coordinates[i];
         }
-        return new EuclideanVector(scaled);
+        return new EuclideanVector(scaled, true);
     }
 
     /*@
@@ -0,0 +1,139 @@
+package linalg;
+
+/**
+ * A mutable 4x4 matrix, stored row-major in a flat array.
+ * As with Vector3 and Vector4, operations write to a given destination so that
+ * transforming vertices does not allocate.
+ */
+public final class Matrix4 {
+    private final double[] m = new double[16];
+
+    /**
+     * Constructor for the identity matrix.
+     */
+    public Matrix4() {
+        this.setIdentity();
+    }
+
+    /*@
+      @ requires 0 <= row < 4 && 0 <= column < 4;
+      @*/
+    /**
+     * Returns the entry in the given row and column.
+     * @param row the row of the entry
+     * @param column the column of the entry
+     * @return the entry of the matrix
+     */
+    public double get(int row, int column) {
+        return this.m[4 * row + column];
+    }
+
+    /**
+     * Sets the entry in the given row and column.
+     * @param row the row of the entry
+     * @param column the column of the entry
+     * @param value the new value of the entry
+     * @return this matrix
+     */
+    public Matrix4 set(int row, int column, double value) {
+        this.m[4 * row + column] = value;
+        return this;
+    }
+
+    /**
+     * Copies the entries of the other matrix into this matrix.
+     * @param other the matrix to copy
+     * @return this matrix
+     */
+    public Matrix4 set(Matrix4 other) {
+        System.arraycopy(other.m, 0, this.m, 0, 16);
+        return this;
+    }
+
+    /**
+     * Sets a whole row of the matrix.
+     * @param row the row to set
+     * @param a the entry in column 0
+     * @param b the entry in column 1
+     * @param c the entry in column 2
+     * @param d the entry in column 3
+     * @return this matrix
+     */
+    public Matrix4 setRow(int row, double a, double b, double c, double d) {
+        int i = 4 * row;
+        this.m[i] = a;
+        this.m[i + 1] = b;
+        this.m[i + 2] = c;
+        this.m[i + 3] = d;
+        return this;
+    }
+
+    /**
+     * Resets this matrix to the identity.
+     * @return this matrix
+     */
+    public Matrix4 setIdentity() {
+        for(int i = 0; i < 16; i++) {
+            this.m[i] = (i % 5 == 0) ? 1 : 0;
+        }
+        return this;
+    }
+
+    /**
+     * Writes the product this * other to dest. The entries of other are read into locals first and each
+     * row of this is read before the same row of dest is written, so dest may be this or other (or both)
+     * without a temporary matrix.
+     * @param other the right factor
+     * @param dest the matrix to write the result to (may be this or other)
+     * @return dest
+     */
+    public Matrix4 multiply(Matrix4 other, Matrix4 dest) {
+        double[] a = this.m, b = other.m, r = dest.m;
+        double b00 = b[0], b01 = b[1], b02 = b[2], b03 = b[3];
+        double b10 = b[4], b11 = b[5], b12 = b[6], b13 = b[7];
+        double b20 = b[8], b21 = b[9], b22 = b[10], b23 = b[11];
+        double b30 = b[12], b31 = b[13], b32 = b[14], b33 = b[15];
+        for(int i = 0; i < 16; i += 4) {
+            double a0 = a[i], a1 = a[i + 1], a2 = a[i + 2], a3 = a[i + 3];
+            r[i] = a0 * b00 + a1 * b10 + a2 * b20 + a3 * b30;
+            r[i + 1] = a0 * b01 + a1 * b11 + a2 * b21 + a3 * b31;
+            r[i + 2] = a0 * b02 + a1 * b12 + a2 * b22 + a3 * b32;
+            r[i + 3] = a0 * b03 + a1 * b13 + a2 * b23 + a3 * b33;
+        }
+        return dest;
+    }
+
+    /**
+     * Writes the product of this matrix and the vector v to dest.
+     * @param v the vector to transform
+     * @param dest the vector to write the result to (may be v)
+     * @return dest
+     */
+    public Vector4 transform(Vector4 v, Vector4 dest) {
+        return this.transform(v.x(), v.y(), v.z(), v.w(), dest);
+    }
+
+    /**
+     * Writes the product of this matrix and the vector (x, y, z, w) to dest.
+     * @return dest
+     */
+    public Vector4 transform(double x, double y, double z, double w, Vector4 dest) {
+        double[] a = this.m;
+        return dest.set(a[0] * x + a[1] * y + a[2] * z + a[3] * w,
+                a[4] * x + a[5] * y + a[6] * z + a[7] * w,
+                a[8] * x + a[9] * y + a[10] * z + a[11] * w,
+                a[12] * x + a[13] * y + a[14] * z + a[15] * w);
+    }
+
+    /**
+     * Transforms the point (x, y, z, 1) and writes the first three coordinates of
+     * the result to dest. The last row of the matrix is ignored.
+     * @return dest
+     */
+    public Vector3 transformPoint(double x, double y, double z, Vector3 dest) {
+        double[] a = this.m;
+        return dest.set(a[0] * x + a[1] * y + a[2] * z + a[3],
+                a[4] * x + a[5] * y + a[6] * z + a[7],
+                a[8] * x + a[9] * y + a[10] * z + a[11]);
+    }
+}
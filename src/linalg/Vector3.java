@@ -0,0 +1,235 @@
+package linalg;
+
+/**
+ * A mutable vector in the 3 dimensional euclidean vector space.
+ * In contrast to EuclideanVector, all operations either work in place or write
+ * their result to a given destination vector, so no memory is allocated on the
+ * way. This is what the render loop uses for its per vertex and per pixel math.
+ */
+public final class Vector3 {
+    private double x;
+    private double y;
+    private double z;
+
+    /**
+     * Constructor for the zero vector.
+     */
+    public Vector3() {
+    }
+
+    /**
+     * Constructor. We take the three coordinates of the vector.
+     * @param x the first coordinate
+     * @param y the second coordinate
+     * @param z the third coordinate
+     */
+    public Vector3(double x, double y, double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    /**
+     * Method to conveniently get the first coordinate of the vector.
+     * @return the first coordinate of the vector
+     */
+    public double x() {
+        return this.x;
+    }
+
+    /**
+     * Method to conveniently get the second coordinate of the vector.
+     * @return the second coordinate of the vector
+     */
+    public double y() {
+        return this.y;
+    }
+
+    /**
+     * Method to conveniently get the third coordinate of the vector.
+     * @return the third coordinate of the vector
+     */
+    public double z() {
+        return this.z;
+    }
+
+    /*@
+      @ ensures this.x() == x && this.y() == y && this.z() == z;
+      @*/
+    /**
+     * Sets the coordinates of the vector.
+     * @param x the new first coordinate
+     * @param y the new second coordinate
+     * @param z the new third coordinate
+     * @return this vector
+     */
+    public Vector3 set(double x, double y, double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    /**
+     * Copies the coordinates of the other vector into this vector.
+     * @param other the vector to copy
+     * @return this vector
+     */
+    public Vector3 set(Vector3 other) {
+        return this.set(other.x, other.y, other.z);
+    }
+
+    /*@
+      @ requires other.getDimension() == 3;
+      @*/
+    /**
+     * Copies the coordinates of the given EuclideanVector into this vector.
+     * @param other the vector to copy
+     * @return this vector
+     * @throws ArithmeticException if the dimension of other is not 3
+     */
+    public Vector3 set(EuclideanVector other) throws ArithmeticException {
+        if(other.getDimension() != 3) {
+            throw new ArithmeticException("The dimension has to be 3!");
+        }
+        double[] coordinates = other.getCoordinates();
+        return this.set(coordinates[0], coordinates[1], coordinates[2]);
+    }
+
+    /**
+     * Adds the other vector to this vector (in place).
+     * @param other the vector to add
+     * @return this vector
+     */
+    public Vector3 add(Vector3 other) {
+        return this.add(other, this);
+    }
+
+    /**
+     * Writes the sum of this and the other vector to dest.
+     * @param other the vector to add
+     * @param dest the vector to write the result to (may be this or other)
+     * @return dest
+     */
+    public Vector3 add(Vector3 other, Vector3 dest) {
+        return dest.set(this.x + other.x, this.y + other.y, this.z + other.z);
+    }
+
+    /**
+     * Subtracts the other vector from this vector (in place).
+     * @param other the vector to subtract
+     * @return this vector
+     */
+    public Vector3 subtract(Vector3 other) {
+        return this.subtract(other, this);
+    }
+
+    /**
+     * Writes the difference of this and the other vector to dest.
+     * @param other the vector to subtract
+     * @param dest the vector to write the result to (may be this or other)
+     * @return dest
+     */
+    public Vector3 subtract(Vector3 other, Vector3 dest) {
+        return dest.set(this.x - other.x, this.y - other.y, this.z - other.z);
+    }
+
+    /**
+     * Scales this vector by the factor alpha (in place).
+     * @param alpha the factor to scale the vector with
+     * @return this vector
+     */
+    public Vector3 scale(double alpha) {
+        return this.scale(alpha, this);
+    }
+
+    /**
+     * Writes this vector scaled by the factor alpha to dest.
+     * @param alpha the factor to scale the vector with
+     * @param dest the vector to write the result to (may be this)
+     * @return dest
+     */
+    public Vector3 scale(double alpha, Vector3 dest) {
+        return dest.set(alpha * this.x, alpha * this.y, alpha * this.z);
+    }
+
+    /**
+     * Implements the standard euclidean dot product for two vectors.
+     * @param other the other vector involved in the dot product
+     * @return the standard dot product of the two vectors
+     */
+    public double dot(Vector3 other) {
+        return this.x * other.x + this.y * other.y + this.z * other.z;
+    }
+
+    /**
+     * Implements the standard euclidean dot product with the vector (x, y, z).
+     * @param x the first coordinate of the other vector
+     * @param y the second coordinate of the other vector
+     * @param z the third coordinate of the other vector
+     * @return the standard dot product of the two vectors
+     */
+    public double dot(double x, double y, double z) {
+        return this.x * x + this.y * y + this.z * z;
+    }
+
+    /*@
+      @ ensures \result.dot(this) == 0 && \result.dot(other) == 0;
+      @*/
+    /**
+     * Writes the cross product of this and the other vector to dest.
+     * @param other the other vector involved in the cross product
+     * @param dest the vector to write the result to (may be this or other)
+     * @return dest
+     */
+    public Vector3 cross(Vector3 other, Vector3 dest) {
+        double x1 = this.y * other.z - this.z * other.y;
+        double x2 = this.z * other.x - this.x * other.z;
+        double x3 = this.x * other.y - this.y * other.x;
+        return dest.set(x1, x2, x3);
+    }
+
+    /**
+     * Calculates the standard 2-norm for the vector
+     * @return the 2-norm (or magnitude) of the vector
+     */
+    public double getMagnitude() {
+        return Math.sqrt(this.dot(this));
+    }
+
+    /**
+     * Normalizes this vector (in place).
+     * @return this vector
+     * @throws ArithmeticException if the magnitude is 0
+     */
+    public Vector3 normalize() throws ArithmeticException {
+        return this.normalize(this);
+    }
+
+    /**
+     * Writes the normalized version of this vector to dest.
+     * @param dest the vector to write the result to (may be this)
+     * @return dest
+     * @throws ArithmeticException if the magnitude is 0
+     */
+    public Vector3 normalize(Vector3 dest) throws ArithmeticException {
+        double mag = this.getMagnitude();
+        if(mag == 0) {
+            throw new ArithmeticException("division by 0.");
+        }
+        return this.scale(1 / mag, dest);
+    }
+
+    /**
+     * Returns a (newly allocated) EuclideanVector with the coordinates of this vector.
+     * @return this vector as EuclideanVector
+     */
+    public EuclideanVector toEuclideanVector() {
+        return new EuclideanVector(this.x, this.y, this.z);
+    }
+
+    @Override
+    public String toString() {
+        return "(" + this.x + ", " + this.y + ", " + this.z + ")";
+    }
+}
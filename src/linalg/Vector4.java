@@ -0,0 +1,121 @@
+package linalg;
+
+/**
+ * A mutable vector in the 4 dimensional euclidean vector space, mostly used for
+ * homogeneous coordinates. Like Vector3, all operations work in place or write
+ * to a given destination vector.
+ */
+public final class Vector4 {
+    private double x;
+    private double y;
+    private double z;
+    private double w;
+
+    /**
+     * Constructor for the zero vector.
+     */
+    public Vector4() {
+    }
+
+    /**
+     * Constructor. We take the four coordinates of the vector.
+     * @param x the first coordinate
+     * @param y the second coordinate
+     * @param z the third coordinate
+     * @param w the fourth coordinate
+     */
+    public Vector4(double x, double y, double z, double w) {
+        this.set(x, y, z, w);
+    }
+
+    /**
+     * Method to conveniently get the first coordinate of the vector.
+     * @return the first coordinate of the vector
+     */
+    public double x() {
+        return this.x;
+    }
+
+    /**
+     * Method to conveniently get the second coordinate of the vector.
+     * @return the second coordinate of the vector
+     */
+    public double y() {
+        return this.y;
+    }
+
+    /**
+     * Method to conveniently get the third coordinate of the vector.
+     * @return the third coordinate of the vector
+     */
+    public double z() {
+        return this.z;
+    }
+
+    /**
+     * Method to conveniently get the fourth coordinate of the vector.
+     * @return the fourth coordinate of the vector
+     */
+    public double w() {
+        return this.w;
+    }
+
+    /**
+     * Sets the coordinates of the vector.
+     * @param x the new first coordinate
+     * @param y the new second coordinate
+     * @param z the new third coordinate
+     * @param w the new fourth coordinate
+     * @return this vector
+     */
+    public Vector4 set(double x, double y, double z, double w) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.w = w;
+        return this;
+    }
+
+    /**
+     * Copies the coordinates of the other vector into this vector.
+     * @param other the vector to copy
+     * @return this vector
+     */
+    public Vector4 set(Vector4 other) {
+        return this.set(other.x, other.y, other.z, other.w);
+    }
+
+    /**
+     * Writes the sum of this and the other vector to dest.
+     * @param other the vector to add
+     * @param dest the vector to write the result to (may be this or other)
+     * @return dest
+     */
+    public Vector4 add(Vector4 other, Vector4 dest) {
+        return dest.set(this.x + other.x, this.y + other.y, this.z + other.z, this.w + other.w);
+    }
+
+    /**
+     * Writes this vector scaled by the factor alpha to dest.
+     * @param alpha the factor to scale the vector with
+     * @param dest the vector to write the result to (may be this)
+     * @return dest
+     */
+    public Vector4 scale(double alpha, Vector4 dest) {
+        return dest.set(alpha * this.x, alpha * this.y, alpha * this.z, alpha * this.w);
+    }
+
+    /**
+     * Implements the standard euclidean dot product for two vectors.
+     * @param other the other vector involved in the dot product
+     * @return the standard dot product of the two vectors
+     */
+    public double dot(Vector4 other) {
+        return this.x * other.x + this.y * other.y + this.z * other.z + this.w * other.w;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + this.x + ", " + this.y + ", " + this.z + ", " + this.w + ")";
+    }
+}
@@ -0,0 +1,258 @@
+package mesh;
+
+import java.util.Arrays;
+
+/**
+ * A bounding volume hierarchy over the faces of a mesh, used to cull whole groups of faces
+ * at once (e.g. against the view frustum of a camera).
+ * Every node stores the axis aligned bounding box of its faces. The face-ids are kept in one
+ * array such that the faces of every node - not only of the leaves - form a contiguous range
+ * in it, so a node which is completely visible can hand out all of its faces at once.
+ *
+ * The hierarchy is built by splitting the faces at the median of their centroids along the
+ * longest axis. Faces added to the mesh later are built into a subtree of their own which
+ * is merged with the existing tree under a new root; only once too many of these subtrees
+ * piled up (or the new faces outnumber the old ones) the whole hierarchy is rebuilt.
+ */
+public class BoundingVolumeHierarchy {
+    private static final int LEAF_SIZE = 8;
+    private static final int MAX_SUBTREES = 8;
+
+    private final Mesh mesh;
+    // per node: the bounding box (minX, minY, minZ, maxX, maxY, maxZ), the children and the range of face-ids
+    private double[] bounds = new double[6 * 64];
+    private int[] children = new int[2 * 64];
+    private int[] ranges = new int[2 * 64];
+    private int nodeCount;
+    private int root = -1;
+    private int[] faceIds = new int[64];
+    private int faceCount;
+    private int subtrees;
+    // the bounding boxes of all faces, used while building
+    private double[] faceBounds = new double[6 * 64];
+
+    /**
+     * Constructor. Builds the hierarchy over all faces of the given mesh.
+     * @param mesh the mesh to build the hierarchy for
+     */
+    BoundingVolumeHierarchy(Mesh mesh) {
+        this.mesh = mesh;
+        this.rebuild();
+    }
+
+    /**
+     * Brings the hierarchy up to date with the faces of the mesh. New faces are added incrementally.
+     */
+    void update() {
+        int total = this.mesh.getFaceCount();
+        if(total == this.faceCount) {
+            return;
+        }
+        if(this.root < 0 || this.subtrees >= MAX_SUBTREES || total - this.faceCount > this.faceCount) {
+            this.rebuild();
+            return;
+        }
+        int start = this.faceCount;
+        this.addFaces(start, total);
+        int subtree = this.build(start, total);
+        int newRoot = this.newNode();
+        this.children[2 * newRoot] = this.root;
+        this.children[2 * newRoot + 1] = subtree;
+        this.ranges[2 * newRoot] = 0;
+        this.ranges[2 * newRoot + 1] = total;
+        for(int k = 0; k < 3; k++) {
+            this.bounds[6 * newRoot + k] = Math.min(this.bounds[6 * this.root + k], this.bounds[6 * subtree + k]);
+            this.bounds[6 * newRoot + 3 + k] = Math.max(this.bounds[6 * this.root + 3 + k], this.bounds[6 * subtree + 3 + k]);
+        }
+        this.root = newRoot;
+        this.subtrees++;
+    }
+
+    /**
+     * Throws away the hierarchy and builds it from scratch over all faces of the mesh.
+     * This is needed if vertices of the mesh were moved.
+     */
+    void rebuild() {
+        this.nodeCount = 0;
+        this.faceCount = 0;
+        this.subtrees = 0;
+        this.root = -1;
+        int total = this.mesh.getFaceCount();
+        this.addFaces(0, total);
+        if(total > 0) {
+            this.root = this.build(0, total);
+        }
+    }
+
+    /**
+     * Appends the faces from start up to end (exclusive) to the face-ids and calculates their bounding boxes.
+     */
+    private void addFaces(int start, int end) {
+        if(end > this.faceIds.length) {
+            this.faceIds = Arrays.copyOf(this.faceIds, Math.max(end, 2 * this.faceIds.length));
+            this.faceBounds = Arrays.copyOf(this.faceBounds, 6 * this.faceIds.length);
+        }
+        double[] c = this.mesh.getCoordinates();
+        int[] indices = this.mesh.getIndices();
+        int[] offsets = this.mesh.getFaceOffsets();
+        for(int f = start; f < end; f++) {
+            this.faceIds[f] = f;
+            double minX = Double.POSITIVE_INFINITY, minY = minX, minZ = minX;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+            for(int k = offsets[f]; k < offsets[f + 1]; k++) {
+                int v = 3 * indices[k];
+                minX = Math.min(minX, c[v]);
+                minY = Math.min(minY, c[v + 1]);
+                minZ = Math.min(minZ, c[v + 2]);
+                maxX = Math.max(maxX, c[v]);
+                maxY = Math.max(maxY, c[v + 1]);
+                maxZ = Math.max(maxZ, c[v + 2]);
+            }
+            int b = 6 * f;
+            this.faceBounds[b] = minX;
+            this.faceBounds[b + 1] = minY;
+            this.faceBounds[b + 2] = minZ;
+            this.faceBounds[b + 3] = maxX;
+            this.faceBounds[b + 4] = maxY;
+            this.faceBounds[b + 5] = maxZ;
+        }
+        this.faceCount = end;
+    }
+
+    /**
+     * Recursively builds the subtree over the face-ids from start up to end (exclusive).
+     * @return the node id of the root of the subtree
+     */
+    private int build(int start, int end) {
+        int node = this.newNode();
+        this.ranges[2 * node] = start;
+        this.ranges[2 * node + 1] = end - start;
+        int b = 6 * node;
+        double[] centroidMin = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double[] centroidMax = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for(int k = 0; k < 3; k++) {
+            this.bounds[b + k] = Double.POSITIVE_INFINITY;
+            this.bounds[b + 3 + k] = Double.NEGATIVE_INFINITY;
+        }
+        for(int i = start; i < end; i++) {
+            int f = 6 * this.faceIds[i];
+            for(int k = 0; k < 3; k++) {
+                this.bounds[b + k] = Math.min(this.bounds[b + k], this.faceBounds[f + k]);
+                this.bounds[b + 3 + k] = Math.max(this.bounds[b + 3 + k], this.faceBounds[f + 3 + k]);
+                double centroid = this.faceBounds[f + k] + this.faceBounds[f + 3 + k];
+                centroidMin[k] = Math.min(centroidMin[k], centroid);
+                centroidMax[k] = Math.max(centroidMax[k], centroid);
+            }
+        }
+        this.children[2 * node] = -1;
+        this.children[2 * node + 1] = -1;
+        if(end - start <= LEAF_SIZE) {
+            return node;
+        }
+        int axis = 0;
+        for(int k = 1; k < 3; k++) {
+            if(centroidMax[k] - centroidMin[k] > centroidMax[axis] - centroidMin[axis]) {
+                axis = k;
+            }
+        }
+        int middle = (start + end) >>> 1;
+        this.select(start, end - 1, middle, axis);
+        int left = this.build(start, middle);
+        int right = this.build(middle, end);
+        this.children[2 * node] = left;
+        this.children[2 * node + 1] = right;
+        return node;
+    }
+
+    /**
+     * Partially sorts the face-ids from lo to hi (inclusive) by their centroid along the axis,
+     * such that the k-th entry is in its sorted position (quickselect).
+     */
+    private void select(int lo, int hi, int k, int axis) {
+        while(lo < hi) {
+            double pivot = this.centroid(this.faceIds[(lo + hi) >>> 1], axis);
+            int i = lo, j = hi;
+            while(i <= j) {
+                while(this.centroid(this.faceIds[i], axis) < pivot) i++;
+                while(this.centroid(this.faceIds[j], axis) > pivot) j--;
+                if(i <= j) {
+                    int tmp = this.faceIds[i];
+                    this.faceIds[i] = this.faceIds[j];
+                    this.faceIds[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if(k <= j) {
+                hi = j;
+            } else if(k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private double centroid(int face, int axis) {
+        return this.faceBounds[6 * face + axis] + this.faceBounds[6 * face + 3 + axis];
+    }
+
+    private int newNode() {
+        if(this.nodeCount == this.ranges.length / 2) {
+            this.bounds = Arrays.copyOf(this.bounds, 2 * this.bounds.length);
+            this.children = Arrays.copyOf(this.children, 2 * this.children.length);
+            this.ranges = Arrays.copyOf(this.ranges, 2 * this.ranges.length);
+        }
+        return this.nodeCount++;
+    }
+
+    /**
+     * @return the id of the root node, or -1 if the mesh has no faces
+     */
+    public int getRoot() {
+        return this.root;
+    }
+
+    public boolean isLeaf(int node) {
+        return this.children[2 * node] < 0;
+    }
+
+    public int getLeft(int node) {
+        return this.children[2 * node];
+    }
+
+    public int getRight(int node) {
+        return this.children[2 * node + 1];
+    }
+
+    /**
+     * Returns the bounding boxes of all nodes. The box of node n is stored as
+     * (minX, minY, minZ, maxX, maxY, maxZ) starting at index 6 * n.
+     * The array must not be modified.
+     * @return the packed bounding boxes
+     */
+    public double[] getBounds() {
+        return this.bounds;
+    }
+
+    /**
+     * Returns the face-ids, ordered such that the faces of node n are found from getStart(n)
+     * up to getStart(n) + getCount(n) (exclusive). The array must not be modified.
+     * @return the ordered face-ids
+     */
+    public int[] getFaceIds() {
+        return this.faceIds;
+    }
+
+    public int getStart(int node) {
+        return this.ranges[2 * node];
+    }
+
+    public int getCount(int node) {
+        return this.ranges[2 * node + 1];
+    }
+
+    public int getNodeCount() {
+        return this.nodeCount;
+    }
+}
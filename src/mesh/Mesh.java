@@ -1,69 +1,500 @@
 package mesh;
 
 import linalg.EuclideanVector;
+import linalg.Vector3;
 import render.Color;
 import render.Scene;
-import render.Light;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * A class to model the concept of a mesh consisting of faces and vertices.
  * Allows for the calculation of surface normals and midpoints of given faces.
+ *
+ * The mesh is stored as struct-of-arrays: the coordinates of all vertices are packed
+ * into one contiguous array (x, y, z per vertex), the vertex-ids of all faces are packed
+ * into one index buffer and the i-th face occupies indices[faceOffsets[i]] up to
+ * indices[faceOffsets[i + 1]] (exclusive). The surface normals are kept in a packed
+ * array as well (x, y, z per face).
+ * The surface normals are not calculated when faces are added, but in one pass over all new
+ * faces when they are needed for the first time (e.g. when rendering). Meshes which are only
+ * loaded and written again never pay for them. The same holds for the vertex normals used for
+ * smooth shading, which are averaged from the surface normals of the adjacent faces.
+ * Vertex and Face objects are only created on demand as views of this data.
  */
 public class Mesh {
-    private ArrayList<Face> faces;
-    private ArrayList<Vertex> vertices;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private double[] coordinates;
+    private int vertexCount;
+    private int[] indices;
+    private int indexCount;
+    private int[] faceOffsets;
+    private double[] normals;
+    // the surface normals of the faces up to normalCount (exclusive) are up to date
+    private int normalCount;
+    // the first face whose normal was calculated while one of its vertices was missing (MAX_VALUE if none)
+    private int incompleteFace = Integer.MAX_VALUE;
+    private int faceCount;
+    // the packed vertex normals (x, y, z per vertex), calculated again once outdated
+    private double[] vertexNormals = new double[0];
+    private boolean vertexNormalsOutdated = true;
+    private BoundingVolumeHierarchy hierarchy;
+    private boolean verticesMoved;
+    // counts the changes of the geometry, see getModificationCount
+    private long modificationCount;
+    // scratch vectors for the normal calculation
+    private final Vector3 edgeA = new Vector3();
+    private final Vector3 edgeB = new Vector3();
+    private final Vector3 normal = new Vector3();
 
     public Mesh() {
-        this.faces = new ArrayList<>();
-        this.vertices = new ArrayList<>();
+        this.coordinates = new double[3 * INITIAL_CAPACITY];
+        this.indices = new int[3 * INITIAL_CAPACITY];
+        this.faceOffsets = new int[INITIAL_CAPACITY + 1];
+        this.normals = new double[3 * INITIAL_CAPACITY];
+    }
+
+    /*@
+      @ requires coordinates.length >= 3 * vertexCount && faceOffsets.length > faceCount;
+      @ requires faceOffsets[0] == 0 && indices.length >= faceOffsets[faceCount];
+      @*/
+    /**
+     * Constructor for a mesh from already packed arrays (see the class description for the layout),
+     * e.g. as produced by a file parser. The arrays are taken over without copying them; they may be
+     * longer than needed.
+     * @param coordinates the packed vertex coordinates
+     * @param vertexCount the number of vertices
+     * @param indices the packed vertex-ids of the faces
+     * @param faceOffsets the offsets of the faces into indices
+     * @param faceCount the number of faces
+     * @throws Exception if a face does not consist of 3 or 4 vertices
+     */
+    public Mesh(double[] coordinates, int vertexCount, int[] indices, int[] faceOffsets, int faceCount) throws Exception {
+        this(coordinates, vertexCount, indices, faceOffsets, faceCount, null);
+    }
+
+    /*@
+      @ requires normals == null || normals.length >= 3 * faceCount;
+      @*/
+    /**
+     * Constructor for a mesh from already packed arrays like above, but with the surface normals of
+     * all faces given as well (e.g. when loading a mesh from a cache).
+     * @param normals the packed surface normals or null to calculate them once needed
+     * @throws Exception if a face does not consist of 3 or 4 vertices
+     */
+    public Mesh(double[] coordinates, int vertexCount, int[] indices, int[] faceOffsets, int faceCount,
+                double[] normals) throws Exception {
+        this.coordinates = coordinates.length >= 3 ? coordinates : new double[3 * INITIAL_CAPACITY];
+        this.vertexCount = vertexCount;
+        this.indices = indices.length >= 3 ? indices : new int[3 * INITIAL_CAPACITY];
+        this.faceOffsets = faceOffsets.length >= 2 ? faceOffsets : new int[INITIAL_CAPACITY + 1];
+        this.faceCount = faceCount;
+        this.indexCount = this.faceOffsets[faceCount];
+        for(int f = 0; f < faceCount; f++) {
+            int n = this.faceOffsets[f + 1] - this.faceOffsets[f];
+            if(n < 3 || n > 4) {
+                throw new Exception("The number of vertices has to be 3 or 4.");
+            }
+        }
+        int capacity = 3 * (this.faceOffsets.length - 1);
+        if(normals == null) {
+            this.normals = new double[capacity];
+        } else {
+            this.normals = normals.length >= capacity ? normals : Arrays.copyOf(normals, capacity);
+            this.normalCount = faceCount;
+        }
     }
 
     /*@
-      @ requires i >= 0 && i < this.vertices.size();
+      @ requires i >= 0 && i < this.vertexCount;
       @*/
     /**
      * Returns the i-th vertex from the mesh.
+     * The returned vertex is a copy of the packed coordinates, so modifying it does not change the mesh.
      * @param i the index you want to reference
      * @return the i-th vertex from the mesh
      * @throws Exception if i is out of bounds
      */
     public Vertex getVertex(int i) throws Exception {
-        if(i < 0 || i >= vertices.size()) {
+        if(i < 0 || i >= this.vertexCount) {
             throw new Exception("The vertex-id is out of bounds!");
         }
-        return this.vertices.get(i);
+        return new Vertex(this.coordinates[3*i], this.coordinates[3*i + 1], this.coordinates[3*i + 2]);
     }
 
     /*@
-      @ ensures this.vertices.size() == \old this.vertices.size() + 1;
+      @ ensures this.vertexCount == \old this.vertexCount + 1;
       @*/
     /**
      * Adds the vertex to the mesh.
      * @param vertex the vertex to add to the mesh
      */
     public void addVertex(Vertex vertex) {
-        this.vertices.add(vertex);
+        double[] p = vertex.getCoordinates();
+        this.addVertex(p[0], p[1], p[2]);
+    }
+
+    /*@
+      @ ensures this.vertexCount == \old this.vertexCount + 1;
+      @*/
+    /**
+     * Adds the vertex (x, y, z) to the mesh.
+     * @param x the first coordinate of the vertex
+     * @param y the second coordinate of the vertex
+     * @param z the third coordinate of the vertex
+     */
+    public void addVertex(double x, double y, double z) {
+        if(3 * this.vertexCount + 3 > this.coordinates.length) {
+            this.coordinates = Arrays.copyOf(this.coordinates, 2 * this.coordinates.length);
+        }
+        this.coordinates[3*this.vertexCount] = x;
+        this.coordinates[3*this.vertexCount + 1] = y;
+        this.coordinates[3*this.vertexCount + 2] = z;
+        this.vertexCount++;
+        // faces whose vertices were missing got the zero vector as normal, so their normals are calculated again
+        if(this.incompleteFace < this.normalCount) {
+            this.normalCount = this.incompleteFace;
+        }
+        this.vertexNormalsOutdated = true;
+        this.modificationCount++;
+    }
+
+    /*@
+      @ requires i >= 0 && i < this.vertexCount;
+      @*/
+    /**
+     * Moves the i-th vertex of the mesh to (x, y, z).
+     * The surface normals are calculated again when they are needed next and the bounding volume
+     * hierarchy (if enabled) is rebuilt.
+     * @param i the index of the vertex
+     * @param x the new first coordinate of the vertex
+     * @param y the new second coordinate of the vertex
+     * @param z the new third coordinate of the vertex
+     */
+    public void setVertex(int i, double x, double y, double z) {
+        if(i < 0 || i >= this.vertexCount) {
+            throw new IndexOutOfBoundsException("The vertex-id is out of bounds!");
+        }
+        this.coordinates[3*i] = x;
+        this.coordinates[3*i + 1] = y;
+        this.coordinates[3*i + 2] = z;
+        this.invalidateNormals();
+        this.verticesMoved = true;
+    }
+
+    /**
+     * Marks all surface normals as outdated, so they are calculated again from the vertices when
+     * they are needed next. Note that this also replaces normals given explicitly with a face.
+     */
+    public void invalidateNormals() {
+        this.normalCount = 0;
+        this.vertexNormalsOutdated = true;
+        this.modificationCount++;
     }
 
     /*@
-      @ ensures this.faces.size() == \old this.faces.size() + 1;
+      @ ensures this.faceCount == \old this.faceCount + 1;
       @*/
     /**
      * Adds the face to the mesh.
+     * If the face has no surface normal set, it is calculated from the vertices of the mesh once needed.
      * @param face the face to add to the mesh.
      */
     public void addFace(Face face) {
-        this.faces.add(face);
+        EuclideanVector surfaceNormal = face.getSurfaceNormal();
+        if(surfaceNormal != null) {
+            // the normals of the previous faces are calculated now, so this one is not overwritten later
+            this.updateNormals();
+        }
+        this.appendFace(face.getVertices());
+        if(surfaceNormal != null) {
+            this.normal.set(surfaceNormal);
+            this.setNormal(this.faceCount - 1, this.normal);
+            this.normalCount = this.faceCount;
+        }
+    }
+
+    /*@
+      @ requires 3 <= vertices.length <= 4;
+      @ ensures this.faceCount == \old this.faceCount + 1;
+      @*/
+    /**
+     * Adds the face consisting of the given vertex-ids to the mesh. Its surface normal is calculated once needed.
+     * @param vertices list of vertex-ids of which the face consists
+     * @throws Exception if the number of vertices is not 3 or 4
+     */
+    public void addFace(int ... vertices) throws Exception {
+        if(vertices.length < 3 || vertices.length > 4) {
+            throw new Exception("The number of vertices has to be 3 or 4.");
+        }
+        this.appendFace(vertices);
+    }
+
+    private void appendFace(int[] vertices) {
+        if(this.indexCount + vertices.length > this.indices.length) {
+            this.indices = Arrays.copyOf(this.indices, Math.max(2 * this.indices.length, this.indexCount + vertices.length));
+        }
+        if(this.faceCount + 2 > this.faceOffsets.length) {
+            this.faceOffsets = Arrays.copyOf(this.faceOffsets, 2 * this.faceOffsets.length);
+            this.normals = Arrays.copyOf(this.normals, 3 * (this.faceOffsets.length - 1));
+        }
+        System.arraycopy(vertices, 0, this.indices, this.indexCount, vertices.length);
+        this.indexCount += vertices.length;
+        this.faceOffsets[this.faceCount + 1] = this.indexCount;
+        this.faceCount++;
+        this.vertexNormalsOutdated = true;
+        this.modificationCount++;
     }
 
-    public ArrayList<Face> getFaces() {
-        return this.faces;
+    private void setNormal(int face, Vector3 n) {
+        this.normals[3*face] = n.x();
+        this.normals[3*face + 1] = n.y();
+        this.normals[3*face + 2] = n.z();
     }
 
-    public ArrayList<Vertex> getVertices() {
-        return this.vertices;
+    /**
+     * Returns a read-only view of the faces of the mesh. Each access creates a new Face object
+     * (with its surface normal set) from the packed index buffer, so changing a returned face does not
+     * change the mesh. Faces are added with addFace.
+     * Note that up to the packed storage, this method returned the ArrayList holding the faces themselves.
+     * @return the faces of the mesh
+     */
+    public List<Face> getFaces() {
+        return new AbstractList<>() {
+            @Override
+            public Face get(int i) {
+                return Mesh.this.getFace(i);
+            }
+
+            @Override
+            public int size() {
+                return Mesh.this.faceCount;
+            }
+        };
+    }
+
+    /**
+     * Returns a view of the vertices of the mesh. Each access creates a new Vertex object
+     * from the packed coordinates, so changing a returned vertex does not change the mesh. Vertices are
+     * moved by replacing them in the view (set) or with setVertex, which also outdates the normals.
+     * The view cannot be resized, vertices are added with addVertex.
+     * Note that up to the packed storage, this method returned the ArrayList holding the vertices themselves.
+     * @return the vertices of the mesh
+     */
+    public List<Vertex> getVertices() {
+        return new AbstractList<>() {
+            @Override
+            public Vertex get(int i) {
+                double[] c = Mesh.this.coordinates;
+                if(i < 0 || i >= Mesh.this.vertexCount) {
+                    throw new IndexOutOfBoundsException("The vertex-id is out of bounds!");
+                }
+                return new Vertex(c[3*i], c[3*i + 1], c[3*i + 2]);
+            }
+
+            @Override
+            public Vertex set(int i, Vertex vertex) {
+                Vertex old = this.get(i);
+                double[] p = vertex.getCoordinates();
+                Mesh.this.setVertex(i, p[0], p[1], p[2]);
+                return old;
+            }
+
+            @Override
+            public int size() {
+                return Mesh.this.vertexCount;
+            }
+        };
+    }
+
+    /*@
+      @ requires i >= 0 && i < this.faceCount;
+      @*/
+    /**
+     * Returns the i-th face of the mesh as a new Face object (with its surface normal set).
+     * @param i the index of the face
+     * @return the i-th face of the mesh
+     */
+    public Face getFace(int i) {
+        if(i < 0 || i >= this.faceCount) {
+            throw new IndexOutOfBoundsException("The face-id is out of bounds!");
+        }
+        this.updateNormals();
+        try {
+            Face face = new Face(Arrays.copyOfRange(this.indices, this.faceOffsets[i], this.faceOffsets[i + 1]));
+            face.setSurfaceNormal(new EuclideanVector(this.normals[3*i], this.normals[3*i + 1], this.normals[3*i + 2]));
+            return face;
+        } catch (Exception e) {
+            // cannot happen, the number of vertices was checked when the face was added
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Builds a bounding volume hierarchy over the faces of the mesh, which allows the renderer to cull
+     * faces outside of the view in groups. Faces added afterwards are added to the hierarchy incrementally.
+     */
+    public void enableBoundingVolumeHierarchy() {
+        if(this.hierarchy == null) {
+            this.hierarchy = new BoundingVolumeHierarchy(this);
+        }
+    }
+
+    /**
+     * Returns the (up to date) bounding volume hierarchy of the mesh.
+     * @return the bounding volume hierarchy or null if it was not enabled
+     */
+    public BoundingVolumeHierarchy getBoundingVolumeHierarchy() {
+        if(this.hierarchy != null && this.verticesMoved) {
+            this.hierarchy.rebuild();
+        } else if(this.hierarchy != null) {
+            this.hierarchy.update();
+        }
+        this.verticesMoved = false;
+        return this.hierarchy;
+    }
+
+    /**
+     * Returns a counter which changes whenever vertices or faces are added, a vertex is moved or the normals
+     * are invalidated. Data derived from the geometry of the mesh (e.g. shadow maps) can be cached along
+     * with the counter and is outdated once it changed. Note that changes written directly into the packed
+     * arrays are only noticed after a call to invalidateNormals.
+     * @return the modification counter of the mesh
+     */
+    public long getModificationCount() {
+        return this.modificationCount;
+    }
+
+    public int getVertexCount() {
+        return this.vertexCount;
+    }
+
+    public int getFaceCount() {
+        return this.faceCount;
+    }
+
+    /**
+     * Returns the packed coordinates (x, y, z per vertex) of the mesh.
+     * The array may be longer than 3 * getVertexCount() and must not be modified.
+     * @return the packed vertex coordinates
+     */
+    public double[] getCoordinates() {
+        return this.coordinates;
+    }
+
+    /**
+     * Returns the packed index buffer of the mesh, see getFaceOffsets().
+     * The array may be longer than needed and must not be modified.
+     * @return the packed vertex-ids of all faces
+     */
+    public int[] getIndices() {
+        return this.indices;
+    }
+
+    /**
+     * Returns the offsets of the faces into the index buffer. The vertex-ids of the i-th face
+     * are stored in getIndices() from getFaceOffsets()[i] up to getFaceOffsets()[i + 1] (exclusive).
+     * The array may be longer than getFaceCount() + 1 and must not be modified.
+     * @return the offsets of the faces into the index buffer
+     */
+    public int[] getFaceOffsets() {
+        return this.faceOffsets;
+    }
+
+    /**
+     * Returns the packed surface normals (x, y, z per face) of the mesh, calculating outdated ones first.
+     * The array may be longer than 3 * getFaceCount() and must not be modified.
+     * @return the packed surface normals
+     */
+    public double[] getNormals() {
+        this.updateNormals();
+        return this.normals;
+    }
+
+    /**
+     * Returns the packed vertex normals (x, y, z per vertex) of the mesh, calculating them first if they are
+     * outdated. The normal of a vertex is the normalized sum of the surface normals of all faces containing it,
+     * vertices without faces get the zero vector. The array may be longer than 3 * getVertexCount() and must
+     * not be modified.
+     * @return the packed vertex normals
+     */
+    public double[] getVertexNormals() {
+        if(!this.vertexNormalsOutdated) {
+            return this.vertexNormals;
+        }
+        double[] n = this.getNormals();
+        if(this.vertexNormals.length < 3 * this.vertexCount) {
+            this.vertexNormals = new double[this.coordinates.length];
+        }
+        double[] v = this.vertexNormals;
+        Arrays.fill(v, 0, 3 * this.vertexCount, 0);
+        int[] indices = this.indices, offsets = this.faceOffsets;
+        for(int f = 0; f < this.faceCount; f++) {
+            for(int k = offsets[f]; k < offsets[f + 1]; k++) {
+                int i = 3 * indices[k];
+                if(i < 3 * this.vertexCount) {
+                    v[i] += n[3*f];
+                    v[i + 1] += n[3*f + 1];
+                    v[i + 2] += n[3*f + 2];
+                }
+            }
+        }
+        for(int i = 0; i < 3 * this.vertexCount; i += 3) {
+            double magnitude = Math.sqrt(v[i] * v[i] + v[i + 1] * v[i + 1] + v[i + 2] * v[i + 2]);
+            if(magnitude != 0) {
+                double scale = 1 / magnitude;
+                v[i] *= scale;
+                v[i + 1] *= scale;
+                v[i + 2] *= scale;
+            }
+        }
+        this.vertexNormalsOutdated = false;
+        return v;
+    }
+
+    /**
+     * Calculates the surface normals of all faces whose normal is not up to date in one pass
+     * (see getNormalVector(Face) for the calculation). Degenerate faces and faces referring to
+     * missing vertices get the zero vector as normal; the latter are calculated again once a vertex is added
+     * (along with all faces after them, which also replaces normals given explicitly with these faces).
+     */
+    private void updateNormals() {
+        if(this.normalCount == this.faceCount) {
+            return;
+        }
+        double[] c = this.coordinates, n = this.normals;
+        int[] indices = this.indices, offsets = this.faceOffsets;
+        int limit = 3 * this.vertexCount;
+        int incomplete = this.incompleteFace < this.normalCount ? this.incompleteFace : Integer.MAX_VALUE;
+        for(int f = this.normalCount; f < this.faceCount; f++) {
+            int o = offsets[f];
+            int v0 = 3 * indices[o], v1 = 3 * indices[o + 1], v2 = 3 * indices[o + 2];
+            double x = 0, y = 0, z = 0;
+            if(Math.max(v0, Math.max(v1, v2)) < limit) {
+                double ax = c[v0] - c[v1], ay = c[v0 + 1] - c[v1 + 1], az = c[v0 + 2] - c[v1 + 2];
+                double bx = c[v0] - c[v2], by = c[v0 + 1] - c[v2 + 1], bz = c[v0 + 2] - c[v2 + 2];
+                x = ay * bz - az * by;
+                y = az * bx - ax * bz;
+                z = ax * by - ay * bx;
+                double magnitude = Math.sqrt(x * x + y * y + z * z);
+                if(magnitude != 0) {
+                    double scale = 1 / magnitude;
+                    x *= scale;
+                    y *= scale;
+                    z *= scale;
+                }
+            } else {
+                incomplete = Math.min(incomplete, f);
+            }
+            n[3*f] = x;
+            n[3*f + 1] = y;
+            n[3*f + 2] = z;
+        }
+        this.incompleteFace = incomplete;
+        this.normalCount = this.faceCount;
     }
 
     /*@
@@ -78,18 +509,28 @@ public class Mesh {
      * vertex of the face and n is the number of vertices of the face.
      * Then the surface normal is just the normalized vector of the
      * cross product of a and b.
+     * The normal is always calculated from the current coordinates of this mesh: a surface normal
+     * stored at the face (e.g. by getFace(i) before a vertex was moved) is ignored and the face is
+     * not modified. The normals of the faces of the mesh itself are available via getNormals().
      * @param face the face you want to calculate the surface normal of
      * @return the surface normal vector of the face
      */
     public EuclideanVector getNormalVector(Face face) {
-        if(face.getSurfaceNormal() != null) {
-            return face.getSurfaceNormal();
-        }
-        int[] vertices = face.getVertices();
-        EuclideanVector a = this.vertices.get(vertices[0]).subtract(this.vertices.get(vertices[1]));
-        EuclideanVector b = this.vertices.get(vertices[0]).subtract(this.vertices.get(vertices[2]));
-        EuclideanVector n =  a.cross(b);
-        return n.getNormalized();
+        return this.getNormalVector(face, new Vector3()).toEuclideanVector();
+    }
+
+    /**
+     * Allocation-free version of getNormalVector(Face): writes the surface normal of the face to dest.
+     * @param face the face you want to calculate the surface normal of
+     * @param dest the vector to write the surface normal to
+     * @return dest
+     */
+    public Vector3 getNormalVector(Face face, Vector3 dest) {
+        double[] c = this.coordinates;
+        int v0 = 3 * face.getVertex(0), v1 = 3 * face.getVertex(1), v2 = 3 * face.getVertex(2);
+        this.edgeA.set(c[v0] - c[v1], c[v0 + 1] - c[v1 + 1], c[v0 + 2] - c[v1 + 2]);
+        this.edgeB.set(c[v0] - c[v2], c[v0 + 1] - c[v2 + 1], c[v0 + 2] - c[v2 + 2]);
+        return this.edgeA.cross(this.edgeB, dest).normalize();
     }
 
     /**
@@ -98,12 +539,43 @@ public class Mesh {
      * @return the midpoint of the given face
      */
     public EuclideanVector getMidpoint(Face face) throws Exception {
-        int[] vertices = face.getVertices();
-        EuclideanVector sum = EuclideanVector.getZero(3);
-        for (int i : vertices) {
-            sum = sum.add(this.getVertex(i));
+        return this.getMidpoint(face, new Vector3()).toEuclideanVector();
+    }
+
+    /**
+     * Allocation-free version of getMidpoint(Face): writes the midpoint of the face to dest.
+     * @param face the face to calculate the midpoint of
+     * @param dest the vector to write the midpoint to
+     * @return dest
+     */
+    public Vector3 getMidpoint(Face face, Vector3 dest) {
+        double x = 0, y = 0, z = 0;
+        int n = face.getNumberOfVertices();
+        for(int i = 0; i < n; i++) {
+            int v = 3 * face.getVertex(i);
+            x += this.coordinates[v];
+            y += this.coordinates[v + 1];
+            z += this.coordinates[v + 2];
         }
-        return sum.getScaled((double) 1 / vertices.length);
+        return dest.set(x, y, z).scale((double) 1 / n);
+    }
+
+    /**
+     * Writes the midpoint of the i-th face to dest.
+     * @param i the index of the face
+     * @param dest the vector to write the midpoint to
+     * @return dest
+     */
+    public Vector3 getMidpoint(int i, Vector3 dest) {
+        double x = 0, y = 0, z = 0;
+        int start = this.faceOffsets[i], end = this.faceOffsets[i + 1];
+        for(int k = start; k < end; k++) {
+            int v = 3 * this.indices[k];
+            x += this.coordinates[v];
+            y += this.coordinates[v + 1];
+            z += this.coordinates[v + 2];
+        }
+        return dest.set(x, y, z).scale((double) 1 / (end - start));
     }
 
     /**
@@ -112,30 +584,24 @@ public class Mesh {
      * @param scene the scene to draw to
      */
     public void drawWireframe(Scene scene) throws Exception {
-        for(Face f : faces) {
-            for(int i = 0; i < f.getNumberOfVertices(); i++) {
-                if(this.getNormalVector(f).dot(scene.getCamera().getLook()) <= 0) continue;
-                scene.rasterizeLine(this.getVertex(f.getVertex(i)),
-                        this.getVertex(f.getVertex((i+1) % f.getNumberOfVertices())),
+        this.updateNormals();
+        Vector3 look = scene.getCamera().getLookVector();
+        for(int f = 0; f < this.faceCount; f++) {
+            if(look.dot(this.normals[3*f], this.normals[3*f + 1], this.normals[3*f + 2]) <= 0) continue;
+            int start = this.faceOffsets[f], n = this.faceOffsets[f + 1] - start;
+            for(int i = 0; i < n; i++) {
+                scene.rasterizeLine(this.getVertex(this.indices[start + i]),
+                        this.getVertex(this.indices[start + (i+1) % n]),
                         Color.fromARGB((byte) 255, (byte) 252, (byte) 143, (byte) 0));
             }
         }
     }
 
+    /**
+     * Method to render the (shaded) faces of the mesh onto the scene.
+     * @param scene the scene to draw to
+     */
     public void render(Scene scene) throws Exception {
-        int white = Color.fromRGB((byte) 255, (byte) 255, (byte) 255);
-        for(Face f : this.faces) {
-            if(this.getNormalVector(f).dot(scene.getCamera().getLook()) <= 0) continue;
-            double intensity = 0;
-            for(Light light : scene.getLights()) intensity += light.intensityAt(getMidpoint(f), getNormalVector(f));
-            if(intensity <= 0) intensity = 0;
-            Vertex[] vertices = new Vertex[f.getNumberOfVertices()];
-            for(int i = 0; i < f.getNumberOfVertices(); i++) vertices[i] = this.getVertex(f.getVertex(i));
-            scene.rasterizeFace(Color.fromRGB((byte) (255*intensity),
-                    (byte) (255*intensity), (byte) (255*intensity)), vertices);
-            /*scene.rasterizeTriangle(this.getVertex(f.getVertex(0)),
-                    this.getVertex(f.getVertex(1)), this.getVertex(f.getVertex(2)), Color.fromRGB((byte) (255*intensity),
-                            (byte) (255*intensity), (byte) (255*intensity)));*/
-        }
+        scene.renderMesh(this);
     }
 }
@@ -0,0 +1,285 @@
+package obj;
+
+import mesh.Mesh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.CRC32C;
+
+/**
+ * A compact binary file format for meshes, mainly used to cache parsed .obj files.
+ * All values are stored little-endian:
+ * <pre>
+ *   header   magic (int), version (int), flags (int), vertexCount (int), faceCount (int), indexCount (int),
+ *            size (long), modification time (long) and hash (long) of the source file
+ *   vertices 3 * vertexCount doubles
+ *   offsets  faceCount + 1 ints, the offsets of the faces into the index buffer
+ *   indices  indexCount ints, the vertex-ids of the faces
+ *   normals  3 * faceCount doubles, only if flags contains NORMALS
+ * </pre>
+ * Loading a file memory-maps it and copies the sections in bulk into the packed arrays of a mesh,
+ * nothing has to be parsed.
+ */
+public class BinaryMeshFile {
+    private static final int MAGIC = 0x48534D56; // "VMSH"
+    private static final int VERSION = 1;
+    private static final int NORMALS = 1;
+    private static final int HEADER_SIZE = 48;
+    private static final long MAP_SIZE = 1L << 30;
+    private static final String CACHE_SUFFIX = ".vmesh";
+
+    /**
+     * Method to write a mesh to a given filepath in the binary format.
+     * @param mesh the mesh you want to write to the file
+     * @param path the filepath to write the mesh to
+     * @param withNormals whether the surface normals should be written as well
+     * @throws IOException if there is no access to the filepath i.e. the file cannot the created etc.
+     */
+    public static void write(Mesh mesh, String path, boolean withNormals) throws IOException {
+        write(mesh, Path.of(path), withNormals, 0, 0, 0);
+    }
+
+    /**
+     * Method to read a mesh from a file in the binary format.
+     * @param path the path to the file
+     * @return the mesh stored in the file
+     * @throws Exception if there is no access to the filepath or the file is not a valid mesh file
+     */
+    public static Mesh read(String path) throws Exception {
+        return read(Path.of(path));
+    }
+
+    /**
+     * Method to read a .obj file using a binary cache next to it (the path with the suffix ".vmesh").
+     * If the cache belongs to the current content of the .obj file, the mesh is loaded from the cache.
+     * Otherwise the .obj file is read and the cache is (re)written. A cache belongs to the .obj file if
+     * size and modification time match, or - if only the modification time differs - the hash of the content.
+     * In the latter case the modification time in the cache is updated, so the file is not hashed again next time.
+     * @param path the path to the .obj file
+     * @return a mesh compiled from the vertex/face information in the .obj file
+     * @throws Exception if there is no access to the filepath or the file does not exist.
+     */
+    public static Mesh readCached(String path) throws Exception {
+        Path source = Path.of(path);
+        Path cache = Path.of(path + CACHE_SUFFIX);
+        BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        long size = attributes.size(), modified = attributes.lastModifiedTime().toMillis();
+        long[] key = readKey(cache);
+        // the hash is only calculated if the modification time does not match
+        long hash = key != null && key[0] == size && key[1] != modified ? hash(source) : -1;
+        if(key != null && key[0] == size && (key[1] == modified || key[2] == hash)) {
+            Mesh mesh = null;
+            try {
+                mesh = read(cache);
+            } catch (Exception e) {
+                // the cache is broken, so we read the .obj file again
+            }
+            if(mesh != null) {
+                if(key[1] != modified) {
+                    updateModificationTime(cache, modified);
+                }
+                return mesh;
+            }
+        }
+        Mesh mesh = OBJFile.read(path);
+        // the cache is written to a unique file in the same directory first, so concurrent readers never
+        // see a partly written cache and the file can be moved atomically
+        Path temporary = null;
+        try {
+            temporary = Files.createTempFile(cache.toAbsolutePath().getParent(), cache.getFileName() + ".", ".tmp");
+            write(mesh, temporary, true, size, modified, hash >= 0 ? hash : hash(source));
+            Files.move(temporary, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the cache is only an optimization, e.g. the directory might not be writable
+            if(temporary != null) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+        return mesh;
+    }
+
+    /**
+     * Calculates a CRC32C hash of the content of the file.
+     */
+    private static long hash(Path path) throws IOException {
+        CRC32C crc = new CRC32C();
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for(long position = 0; position < size; position += MAP_SIZE) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_SIZE, size - position)));
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Overwrites the modification time of the source file in the header of the cache. Readers see either the
+     * old or the new time, both of which belong to the same content.
+     */
+    private static void updateModificationTime(Path cache, long modified) {
+        try(FileChannel channel = FileChannel.open(cache, StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(modified).flip();
+            while(value.hasRemaining()) {
+                channel.write(value, 32 + value.position());
+            }
+        } catch (IOException e) {
+            // the cache is only an optimization, next time the file is hashed again
+        }
+    }
+
+    /**
+     * Reads the size, modification time and hash of the source file from the header of the given file.
+     * @return the key of the source file or null if there is no valid mesh file
+     */
+    private static long[] readKey(Path path) {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = readHeader(channel);
+            return new long[] {header.getLong(24), header.getLong(32), header.getLong(40)};
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while(header.hasRemaining() && channel.read(header) >= 0);
+        if(header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Not a valid mesh file.");
+        }
+        return header;
+    }
+
+    private static Mesh read(Path path) throws Exception {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = readHeader(channel);
+            int flags = header.getInt(8);
+            int vertexCount = header.getInt(12), faceCount = header.getInt(16), indexCount = header.getInt(20);
+            long expected = HEADER_SIZE + 24L * vertexCount + 4L * (faceCount + 1) + 4L * indexCount
+                    + ((flags & NORMALS) != 0 ? 24L * faceCount : 0);
+            if(vertexCount < 0 || faceCount < 0 || indexCount < 0 || channel.size() != expected) {
+                throw new IOException("Not a valid mesh file.");
+            }
+            long position = HEADER_SIZE;
+            double[] coordinates = new double[3 * vertexCount];
+            position = readDoubles(channel, position, coordinates);
+            int[] faceOffsets = new int[faceCount + 1];
+            position = readInts(channel, position, faceOffsets);
+            int[] indices = new int[indexCount];
+            position = readInts(channel, position, indices);
+            double[] normals = null;
+            if((flags & NORMALS) != 0) {
+                normals = new double[3 * faceCount];
+                readDoubles(channel, position, normals);
+            }
+            if(faceOffsets[0] != 0 || faceOffsets[faceCount] != indexCount) {
+                throw new IOException("Not a valid mesh file.");
+            }
+            for(int i = 0; i < indexCount; i++) {
+                if(indices[i] < 0 || indices[i] >= vertexCount) {
+                    throw new IOException("Not a valid mesh file.");
+                }
+            }
+            return new Mesh(coordinates, vertexCount, indices, faceOffsets, faceCount, normals);
+        }
+    }
+
+    /**
+     * Reads dest.length doubles starting at the given position by mapping the file in windows.
+     * @return the position after the doubles
+     */
+    private static long readDoubles(FileChannel channel, long position, double[] dest) throws IOException {
+        int done = 0;
+        while(done < dest.length) {
+            int count = (int) Math.min(dest.length - done, MAP_SIZE / Double.BYTES);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, (long) count * Double.BYTES);
+            window.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(dest, done, count);
+            done += count;
+            position += (long) count * Double.BYTES;
+        }
+        return position;
+    }
+
+    /**
+     * Reads dest.length ints starting at the given position by mapping the file in windows.
+     * @return the position after the ints
+     */
+    private static long readInts(FileChannel channel, long position, int[] dest) throws IOException {
+        int done = 0;
+        while(done < dest.length) {
+            int count = (int) Math.min(dest.length - done, MAP_SIZE / Integer.BYTES);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, (long) count * Integer.BYTES);
+            window.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(dest, done, count);
+            done += count;
+            position += (long) count * Integer.BYTES;
+        }
+        return position;
+    }
+
+    private static void write(Mesh mesh, Path path, boolean withNormals, long size, long modified, long hash)
+            throws IOException {
+        int vertexCount = mesh.getVertexCount(), faceCount = mesh.getFaceCount();
+        int indexCount = mesh.getFaceOffsets()[faceCount];
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(withNormals ? NORMALS : 0);
+            buffer.putInt(vertexCount).putInt(faceCount).putInt(indexCount);
+            buffer.putLong(size).putLong(modified).putLong(hash);
+            writeDoubles(channel, buffer, mesh.getCoordinates(), 3 * vertexCount);
+            writeInts(channel, buffer, mesh.getFaceOffsets(), faceCount + 1);
+            writeInts(channel, buffer, mesh.getIndices(), indexCount);
+            if(withNormals) {
+                writeDoubles(channel, buffer, mesh.getNormals(), 3 * faceCount);
+            }
+            flush(channel, buffer);
+        }
+    }
+
+    /**
+     * Writes the first count values to the channel, copying them into the buffer in blocks.
+     */
+    private static void writeDoubles(FileChannel channel, ByteBuffer buffer, double[] values, int count) throws IOException {
+        int done = 0;
+        while(done < count) {
+            if(buffer.remaining() < Double.BYTES) {
+                flush(channel, buffer);
+            }
+            int block = Math.min(count - done, buffer.remaining() / Double.BYTES);
+            buffer.asDoubleBuffer().put(values, done, block);
+            buffer.position(buffer.position() + block * Double.BYTES);
+            done += block;
+        }
+    }
+
+    /**
+     * Writes the first count values to the channel, copying them into the buffer in blocks.
+     */
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values, int count) throws IOException {
+        int done = 0;
+        while(done < count) {
+            if(buffer.remaining() < Integer.BYTES) {
+                flush(channel, buffer);
+            }
+            int block = Math.min(count - done, buffer.remaining() / Integer.BYTES);
+            buffer.asIntBuffer().put(values, done, block);
+            buffer.position(buffer.position() + block * Integer.BYTES);
+            done += block;
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
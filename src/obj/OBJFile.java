@@ -1,9 +1,8 @@
 package obj;
 
-import mesh.Face;
 import mesh.Mesh;
-import mesh.Vertex;
-import java.io.*;
+import java.io.IOException;
+import java.nio.file.Path;
 
 /**
  * A (simple) class to load and write wavefront .obj files.
@@ -15,81 +14,56 @@ public class OBJFile {
             """;
 
     /*@
-      @ requires a.length > Math.max(i, j);
-      @ ensures \result a[i] == \old a[j] && \result a[j] == \old a[i];
-      @ ensures \forall k != i && k != j : \result a[k] = \old a[k];
+      @ requires that the file exists...
       @*/
     /**
-     * Method to swap the entries i and j in the given array.
-     * @param array given array of types T
-     * @param i the first index to swap
-     * @param j the second index to swap
-     * @param <T> some generic datatype
+     * Method to read a .obj file and compile its content to a mesh-object.
+     * For now, only vertices and faces are considered in reading the file.
+     * The file is memory-mapped and parsed in a streaming fashion (see OBJParser), so even files of
+     * several gigabytes can be read without holding their text in memory. Large files are parsed in
+     * parallel using all available processors.
+     * @TODO: allow for pre-defined surface-normals, etc..
+     *
+     * @param path the path to the .obj file
+     * @return a mesh compiled from the vertex/face information in the .obj file
+     * @throws Exception if there is no access to the filepath or the file does not exist.
      */
-    private static <T> void swap (T[] array, int i, int j) {
-        T tmp = array[i];
-        array[i] = array[j];
-        array[j] = tmp;
+    public static Mesh read(String path) throws Exception {
+        return read(path, Runtime.getRuntime().availableProcessors());
     }
 
     /*@
-      @ requires that the file exists...
+      @ requires threadCount >= 1;
       @*/
     /**
-     * Method to read a .obj file and compile its content to a mesh-object.
-     * For now, only vertices and faces are considered in reading the file.
-     * @TODO: allow for pre-defined surface-normals, etc..
+     * Method to read a .obj file like read(path), but with at most the given number of threads.
+     * The file is split into chunks on line boundaries which are parsed in parallel and merged
+     * afterwards; the result does not depend on the number of threads.
      *
      * @param path the path to the .obj file
+     * @param threadCount the maximal number of threads used for parsing
      * @return a mesh compiled from the vertex/face information in the .obj file
      * @throws Exception if there is no access to the filepath or the file does not exist.
      */
-    public static Mesh read(String path) throws Exception {
-        File file = new File(path);
-        BufferedReader content = new BufferedReader(new FileReader(file));
-        Mesh mesh = new Mesh();
-        String line;
-        while ((line = content.readLine()) != null) {
-            // we ignore multiple spaces in the line
-            line = line.replaceAll("\\s+", " ");
-            String[] splitLine = line.split(" ");
-            if(splitLine[0].equals("v")) {
-                // the last coordinate in the vector should be the "up"-direction
-                swap(splitLine, 2, 3);
-                double[] coordinates = new double[splitLine.length - 1];
-                for(int i = 0; i < coordinates.length; i++) coordinates[i] = Double.parseDouble(splitLine[i + 1]);
-                mesh.addVertex(new Vertex(coordinates));
-            } else if(splitLine[0].equals("f")) {
-                int[] vertexIds = new int[splitLine.length - 1];
-                for(int i = 0; i < vertexIds.length; i++) {
-                    vertexIds[i] = Integer.parseInt(splitLine[i + 1].split("/")[0]) - 1;
-                }
-                Face face = new Face(vertexIds);
-                face.setSurfaceNormal(mesh.getNormalVector(face));
-                mesh.addFace(face);
-            }
+    public static Mesh read(String path, int threadCount) throws Exception {
+        if(threadCount < 1) {
+            throw new IllegalArgumentException("The number of threads has to be positive.");
         }
-        return mesh;
+        return OBJParser.read(Path.of(path), threadCount);
     }
 
     /**
      * A method to write a mesh to a given filepath.
-     * For now, we only write vertices and faces.
+     * For now, we only write vertices and faces. The mesh is streamed to the file (see OBJWriter),
+     * so the memory used does not depend on the size of the mesh.
      * @param mesh the mesh you want to write to the file
      * @param path the filepath to write the mesh to
      * @throws IOException if there is no access to the filepath i.e. the file cannot the created etc.
      */
     public static void write(Mesh mesh, String path) throws IOException {
-        FileWriter fileWriter = new FileWriter(path);
-        StringBuilder export = new StringBuilder();
-        export.append(HEADER);
-        for(Vertex vertex : mesh.getVertices()) {
-            export.append(vertex.exportToObj());
-        }
-        for (Face face : mesh.getFaces()) {
-            export.append(face.exportToObj());
+        try(OBJWriter writer = new OBJWriter(Path.of(path))) {
+            writer.write(HEADER);
+            writer.write(mesh);
         }
-        fileWriter.write(export.toString());
-        fileWriter.close();
     }
 }
@@ -0,0 +1,412 @@
+package obj;
+
+import mesh.Mesh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A streaming parser for wavefront .obj files.
+ * The file is memory-mapped in windows of at most MAP_SIZE bytes (so files larger than 2GB can be
+ * read as well) and the bytes are tokenized directly: coordinates and vertex-ids are parsed without
+ * creating Strings and written straight into the packed arrays of a mesh.
+ * Like before, only vertices ("v") and faces ("f") are considered; for faces of the form
+ * "f v/vt/vn ..." only the vertex-id is used and negative (relative) vertex-ids are resolved.
+ *
+ * Large files can be parsed in parallel: the file is split into chunks on line boundaries, every
+ * chunk is parsed by its own parser and the results are concatenated in file order. Since the
+ * vertices keep their order, the (absolute) vertex-ids of the faces stay valid; only relative
+ * vertex-ids have to be shifted by the number of vertices in the preceding chunks.
+ */
+final class OBJParser {
+    private static final long MAP_SIZE = 1L << 30;
+    // files are only split into chunks of at least this size
+    private static final long MIN_CHUNK_SIZE = 1L << 22;
+    // 10^0 up to 10^22 are exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for(int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = 10 * POWERS_OF_TEN[i - 1];
+        }
+    }
+
+    private double[] coordinates = new double[3 * 1024];
+    private int vertexCount;
+    private int[] indices = new int[3 * 1024];
+    private int indexCount;
+    private int[] faceOffsets = new int[1024 + 1];
+    private int faceCount;
+    // positions in indices of vertex-ids which were given relative to the chunk
+    private int[] relativeIds = new int[16];
+    private int relativeCount;
+    private boolean relative;
+    // the position of the next byte to read in the current window
+    private MappedByteBuffer buffer;
+    private int cursor;
+    private int[] face = new int[4];
+
+    /*@
+      @ requires threadCount >= 1;
+      @*/
+    /**
+     * Reads the whole file at the given path, parsing chunks of the file with up to threadCount threads.
+     * The resulting mesh is the same as when reading the file with a single thread.
+     * @param path the path to the .obj file
+     * @param threadCount the maximal number of threads to use
+     * @return a mesh compiled from the vertex/face information in the .obj file
+     * @throws Exception if the file cannot be read or is malformed
+     */
+    static Mesh read(Path path, int threadCount) throws Exception {
+        return read(path, threadCount, MIN_CHUNK_SIZE);
+    }
+
+    /*@
+      @ requires threadCount >= 1 && minChunkSize >= 1;
+      @*/
+    /**
+     * Reads the whole file like read(path, threadCount), but only splits it into chunks of at least
+     * minChunkSize bytes (e.g. to test the chunking with small files).
+     */
+    static Mesh read(Path path, int threadCount, long minChunkSize) throws Exception {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] bounds = split(channel, (int) Math.max(1, Math.min(threadCount, channel.size() / minChunkSize)));
+            List<OBJParser> parsers = new ArrayList<>();
+            for(int i = 0; i + 1 < bounds.length; i++) {
+                parsers.add(new OBJParser());
+            }
+            if(parsers.size() == 1) {
+                parsers.get(0).parse(channel, bounds[0], bounds[1]);
+                return merge(parsers);
+            }
+            ForkJoinPool pool = new ForkJoinPool(parsers.size());
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for(int i = 0; i < parsers.size(); i++) {
+                    OBJParser parser = parsers.get(i);
+                    long from = bounds[i], to = bounds[i + 1];
+                    futures.add(pool.submit(() -> {
+                        parser.parse(channel, from, to);
+                        return null;
+                    }));
+                }
+                for(Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            } finally {
+                pool.shutdown();
+            }
+            return merge(parsers);
+        }
+    }
+
+    /**
+     * Splits the file into the given number of chunks of about the same size which start at the beginning of a line.
+     * @return the chunkCount + 1 bounds of the chunks (chunks may be empty)
+     */
+    static long[] split(FileChannel channel, int chunkCount) throws IOException {
+        long size = channel.size();
+        long[] bounds = new long[chunkCount + 1];
+        bounds[chunkCount] = size;
+        ByteBuffer scan = ByteBuffer.allocate(4096);
+        for(int i = 1; i < chunkCount; i++) {
+            long position = Math.max(bounds[i - 1], size / chunkCount * i);
+            // the chunk starts after the next line break
+            search:
+            while(position < size) {
+                scan.clear();
+                int read = channel.read(scan, position);
+                for(int k = 0; k < read; k++) {
+                    if(scan.get(k) == '\n') {
+                        position += k + 1;
+                        break search;
+                    }
+                }
+                position += Math.max(read, 0);
+            }
+            bounds[i] = Math.min(position, size);
+        }
+        return bounds;
+    }
+
+    /**
+     * Parses the lines in the given byte range of the file. The range has to start at the beginning of a line
+     * and end at the end of a line (or the end of the file).
+     * @param channel the opened .obj file
+     * @param from the first byte of the range
+     * @param to the end of the range (exclusive)
+     * @throws Exception if the file cannot be read or is malformed
+     */
+    void parse(FileChannel channel, long from, long to) throws Exception {
+        long windowStart = from;
+        while(windowStart < to) {
+            long windowEnd = Math.min(windowStart + MAP_SIZE, to);
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+            int limit = (int) (windowEnd - windowStart);
+            int lineStart = 0;
+            while(lineStart < limit) {
+                int lineEnd = this.findLineEnd(lineStart, limit);
+                if(lineEnd == limit && windowEnd < to) {
+                    // the line continues in the next window
+                    break;
+                }
+                this.parseLine(lineStart, lineEnd);
+                lineStart = lineEnd + 1;
+            }
+            if(lineStart == 0 && windowEnd < to) {
+                throw new IOException("Line in .obj file exceeds " + MAP_SIZE + " bytes.");
+            }
+            windowStart += Math.min(lineStart, limit);
+        }
+        this.buffer = null;
+    }
+
+    private int findLineEnd(int position, int limit) {
+        while(position < limit && this.buffer.get(position) != '\n') {
+            position++;
+        }
+        return position;
+    }
+
+    private void parseLine(int start, int end) throws Exception {
+        this.cursor = start;
+        this.skipBlanks(end);
+        if(this.cursor + 1 >= end || !isBlank(this.buffer.get(this.cursor + 1))) {
+            return;
+        }
+        byte keyword = this.buffer.get(this.cursor);
+        this.cursor++;
+        if(keyword == 'v') {
+            // the last coordinate in the vector should be the "up"-direction
+            double x = this.parseDouble(end);
+            double z = this.parseDouble(end);
+            double y = this.parseDouble(end);
+            this.addVertex(x, y, z);
+        } else if(keyword == 'f') {
+            int n = 0;
+            this.skipBlanks(end);
+            while(this.cursor < end) {
+                if(n == this.face.length) {
+                    this.face = Arrays.copyOf(this.face, 2 * n);
+                }
+                this.face[n] = this.parseVertexId(end);
+                if(this.relative) {
+                    if(this.relativeCount == this.relativeIds.length) {
+                        this.relativeIds = Arrays.copyOf(this.relativeIds, 2 * this.relativeCount);
+                    }
+                    this.relativeIds[this.relativeCount++] = this.indexCount + n;
+                }
+                n++;
+                this.skipBlanks(end);
+            }
+            if(n < 3 || n > 4) {
+                throw new Exception("The number of vertices has to be 3 or 4.");
+            }
+            this.addFace(this.face, n);
+        }
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private void skipBlanks(int end) {
+        while(this.cursor < end && isBlank(this.buffer.get(this.cursor))) {
+            this.cursor++;
+        }
+    }
+
+    /**
+     * Parses the vertex-id of a face entry "v", "v/vt", "v//vn" or "v/vt/vn" and skips the rest of the entry.
+     * @return the zero-based vertex-id
+     */
+    private int parseVertexId(int end) throws Exception {
+        boolean negative = this.buffer.get(this.cursor) == '-';
+        if(negative) {
+            this.cursor++;
+        }
+        int start = this.cursor;
+        long value = 0;
+        byte b;
+        while(this.cursor < end && (b = this.buffer.get(this.cursor)) >= '0' && b <= '9') {
+            value = 10 * value + (b - '0');
+            if(value > Integer.MAX_VALUE) {
+                throw new Exception("Vertex-id out of range in .obj file.");
+            }
+            this.cursor++;
+        }
+        if(this.cursor == start || (this.cursor < end && !isBlank(this.buffer.get(this.cursor))
+                && this.buffer.get(this.cursor) != '/')) {
+            throw new Exception("Malformed face in .obj file.");
+        }
+        while(this.cursor < end && !isBlank(this.buffer.get(this.cursor))) {
+            this.cursor++;
+        }
+        // negative ids count backwards from the last vertex read so far
+        this.relative = negative;
+        return negative ? this.vertexCount - (int) value : (int) value - 1;
+    }
+
+    /**
+     * Parses the next decimal number of the line. Numbers of up to 18 significant digits with a moderate exponent
+     * are converted with a single (correctly rounded) multiplication or division, which gives the same result as
+     * Double.parseDouble; anything else falls back to Double.parseDouble.
+     */
+    private double parseDouble(int end) throws Exception {
+        this.skipBlanks(end);
+        int start = this.cursor;
+        boolean negative = false;
+        if(this.cursor < end && (this.buffer.get(this.cursor) == '-' || this.buffer.get(this.cursor) == '+')) {
+            negative = this.buffer.get(this.cursor) == '-';
+            this.cursor++;
+        }
+        long mantissa = 0;
+        int digits = 0, exponent = 0;
+        boolean seenDigit = false, seenPoint = false;
+        for(; this.cursor < end; this.cursor++) {
+            byte b = this.buffer.get(this.cursor);
+            if(b >= '0' && b <= '9') {
+                seenDigit = true;
+                if(digits < 18) {
+                    if(mantissa != 0 || b != '0') {
+                        digits++;
+                    }
+                    mantissa = 10 * mantissa + (b - '0');
+                    if(seenPoint) {
+                        exponent--;
+                    }
+                } else {
+                    // more digits than fit into the mantissa
+                    return this.parseDoubleSlow(start, end);
+                }
+            } else if(b == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if(this.cursor < end && (this.buffer.get(this.cursor) | 0x20) == 'e') {
+            this.cursor++;
+            boolean negativeExponent = false;
+            if(this.cursor < end && (this.buffer.get(this.cursor) == '-' || this.buffer.get(this.cursor) == '+')) {
+                negativeExponent = this.buffer.get(this.cursor) == '-';
+                this.cursor++;
+            }
+            int value = 0, exponentStart = this.cursor;
+            byte b;
+            while(this.cursor < end && (b = this.buffer.get(this.cursor)) >= '0' && b <= '9') {
+                value = Math.min(10 * value + (b - '0'), 10000);
+                this.cursor++;
+            }
+            if(this.cursor == exponentStart) {
+                return this.parseDoubleSlow(start, end);
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+        if(!seenDigit || (this.cursor < end && !isBlank(this.buffer.get(this.cursor)))) {
+            return this.parseDoubleSlow(start, end);
+        }
+        double value;
+        if(mantissa == 0) {
+            value = 0;
+        } else if(mantissa < (1L << 53) && exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        } else if(mantissa < (1L << 53) && exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return this.parseDoubleSlow(start, end);
+        }
+        // the sign is applied last, so "-0" gives -0.0 like Double.parseDouble
+        return negative ? -value : value;
+    }
+
+    private double parseDoubleSlow(int start, int end) throws Exception {
+        this.cursor = start;
+        while(this.cursor < end && !isBlank(this.buffer.get(this.cursor))) {
+            this.cursor++;
+        }
+        byte[] token = new byte[this.cursor - start];
+        this.buffer.get(start, token);
+        try {
+            return Double.parseDouble(new String(token, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw new Exception("Malformed vertex in .obj file.", e);
+        }
+    }
+
+    private void addVertex(double x, double y, double z) {
+        if(3 * this.vertexCount + 3 > this.coordinates.length) {
+            this.coordinates = Arrays.copyOf(this.coordinates, 2 * this.coordinates.length);
+        }
+        this.coordinates[3 * this.vertexCount] = x;
+        this.coordinates[3 * this.vertexCount + 1] = y;
+        this.coordinates[3 * this.vertexCount + 2] = z;
+        this.vertexCount++;
+    }
+
+    private void addFace(int[] vertices, int n) {
+        if(this.indexCount + n > this.indices.length) {
+            this.indices = Arrays.copyOf(this.indices, 2 * this.indices.length);
+        }
+        if(this.faceCount + 2 > this.faceOffsets.length) {
+            this.faceOffsets = Arrays.copyOf(this.faceOffsets, 2 * this.faceOffsets.length);
+        }
+        System.arraycopy(vertices, 0, this.indices, this.indexCount, n);
+        this.indexCount += n;
+        this.faceOffsets[++this.faceCount] = this.indexCount;
+    }
+
+    /**
+     * Creates the mesh from the data of the parsers of consecutive chunks. The packed arrays of a single
+     * parser are handed over without copying.
+     * @throws Exception if a face refers to a vertex which does not exist
+     */
+    private static Mesh merge(List<OBJParser> parsers) throws Exception {
+        OBJParser result = parsers.get(0);
+        if(parsers.size() > 1) {
+            int vertexCount = 0, indexCount = 0, faceCount = 0;
+            for(OBJParser parser : parsers) {
+                vertexCount += parser.vertexCount;
+                indexCount += parser.indexCount;
+                faceCount += parser.faceCount;
+            }
+            result = new OBJParser();
+            result.coordinates = new double[3 * Math.max(vertexCount, 1)];
+            result.indices = new int[Math.max(indexCount, 3)];
+            result.faceOffsets = new int[faceCount + 2];
+            for(OBJParser parser : parsers) {
+                System.arraycopy(parser.coordinates, 0, result.coordinates, 3 * result.vertexCount, 3 * parser.vertexCount);
+                System.arraycopy(parser.indices, 0, result.indices, result.indexCount, parser.indexCount);
+                for(int i = 0; i < parser.relativeCount; i++) {
+                    result.indices[result.indexCount + parser.relativeIds[i]] += result.vertexCount;
+                }
+                for(int f = 1; f <= parser.faceCount; f++) {
+                    result.faceOffsets[result.faceCount + f] = result.indexCount + parser.faceOffsets[f];
+                }
+                result.vertexCount += parser.vertexCount;
+                result.indexCount += parser.indexCount;
+                result.faceCount += parser.faceCount;
+            }
+        }
+        for(int i = 0; i < result.indexCount; i++) {
+            if(result.indices[i] < 0 || result.indices[i] >= result.vertexCount) {
+                throw new Exception("Face refers to the unknown vertex " + (result.indices[i] + 1) + " in .obj file.");
+            }
+        }
+        return new Mesh(result.coordinates, result.vertexCount, result.indices, result.faceOffsets, result.faceCount);
+    }
+}
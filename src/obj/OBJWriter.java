@@ -0,0 +1,163 @@
+package obj;
+
+import mesh.Mesh;
+import mesh.Vertex;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * A streaming writer for wavefront .obj files.
+ * The mesh is written straight from its packed arrays through a fixed-size buffer, so the memory
+ * used does not depend on the size of the mesh. The output is the same as concatenating
+ * Vertex.exportToObj and Face.exportToObj, but numbers are formatted without String.format:
+ * a coordinate is scaled by 10^Vertex.PRECISION and rounded to a long, whose digits are written
+ * directly.
+ * String.format rounds the shortest decimal representation of a double half-up. Values close to a
+ * tie (e.g. 0.123455 read from a file with six decimal places) are therefore compared against the
+ * double nearest to the tie: if the value is that double, its shortest representation is the tie
+ * itself and it is rounded up. Only for values too large to be scaled exactly (and NaN or infinity)
+ * we fall back to String.format.
+ */
+final class OBJWriter implements AutoCloseable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final double SCALE = Math.pow(10, Vertex.PRECISION);
+    // scaled coordinates below this limit are exact enough to decide the rounding
+    private static final double FAST_LIMIT = 1e11;
+    private static final double TIE_MARGIN = 1e-3;
+    private static final double TIE_SCALE = 10 * Math.pow(10, Vertex.PRECISION);
+    private static final String PATTERN = " %." + Vertex.PRECISION + "f";
+
+    private final FileChannel channel;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private final byte[] digits = new byte[20];
+
+    /**
+     * Constructor. Creates (or truncates) the file at the given path.
+     * @param path the filepath to write to
+     * @throws IOException if the file cannot be created
+     */
+    OBJWriter(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Writes all vertices and faces of the mesh.
+     */
+    void write(Mesh mesh) throws IOException {
+        double[] c = mesh.getCoordinates();
+        for(int v = 0; v < mesh.getVertexCount(); v++) {
+            // the "up"-direction is written as second coordinate, see Vertex.exportToObj
+            this.ensureRemaining(64);
+            this.buffer[this.position++] = 'v';
+            this.writeCoordinate(c[3*v]);
+            this.writeCoordinate(c[3*v + 2]);
+            this.writeCoordinate(c[3*v + 1]);
+            this.buffer[this.position++] = '\n';
+        }
+        int[] indices = mesh.getIndices();
+        int[] offsets = mesh.getFaceOffsets();
+        for(int f = 0; f < mesh.getFaceCount(); f++) {
+            this.ensureRemaining(64);
+            this.buffer[this.position++] = 'f';
+            for(int k = offsets[f]; k < offsets[f + 1]; k++) {
+                this.buffer[this.position++] = ' ';
+                this.writeLong(indices[k] + 1L);
+            }
+            this.buffer[this.position++] = '\n';
+        }
+    }
+
+    /**
+     * Writes the text as is.
+     */
+    void write(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for(int i = 0; i < bytes.length; i += BUFFER_SIZE) {
+            int length = Math.min(BUFFER_SIZE, bytes.length - i);
+            this.ensureRemaining(length);
+            System.arraycopy(bytes, i, this.buffer, this.position, length);
+            this.position += length;
+        }
+    }
+
+    /**
+     * Writes " " followed by the coordinate with Vertex.PRECISION decimal places, like String.format(" %.nf").
+     */
+    private void writeCoordinate(double value) throws IOException {
+        double magnitude = Math.abs(value);
+        double scaled = magnitude * SCALE;
+        if(!(scaled < FAST_LIMIT)) {
+            this.write(String.format(Locale.ROOT, PATTERN, value));
+            return;
+        }
+        long rounded = (long) scaled;
+        double fraction = scaled - rounded;
+        if(Math.abs(fraction - 0.5) < TIE_MARGIN) {
+            // both the tie and 10^(PRECISION + 1) are exact doubles, so the division is correctly rounded
+            rounded += magnitude >= (10 * rounded + 5) / TIE_SCALE ? 1 : 0;
+        } else {
+            rounded += fraction > 0.5 ? 1 : 0;
+        }
+        byte[] b = this.buffer;
+        b[this.position++] = ' ';
+        // String.format keeps the sign of negative numbers rounded to zero (and of -0.0)
+        if(Double.doubleToRawLongBits(value) < 0) {
+            b[this.position++] = '-';
+        }
+        long scale = (long) SCALE;
+        this.writeLong(rounded / scale);
+        if(Vertex.PRECISION > 0) {
+            b[this.position++] = '.';
+            // the decimal places are written from the back
+            long decimals = rounded % scale;
+            int end = this.position + Vertex.PRECISION;
+            for(int i = end - 1; i >= this.position; i--) {
+                b[i] = (byte) ('0' + decimals % 10);
+                decimals /= 10;
+            }
+            this.position = end;
+        }
+    }
+
+    private void writeLong(long value) {
+        int n = 0;
+        do {
+            this.digits[n++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while(value > 0);
+        while(n > 0) {
+            this.buffer[this.position++] = this.digits[--n];
+        }
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if(BUFFER_SIZE - this.position < bytes) {
+            this.flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(this.buffer, 0, this.position);
+        while(bytes.hasRemaining()) {
+            this.channel.write(bytes);
+        }
+        this.position = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.flush();
+        } finally {
+            this.channel.close();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package render;
+
+import linalg.EuclideanVector;
+import mesh.Mesh;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A class to render an animation of a scene, i.e. a sequence of frames in which the camera moves.
+ * The frames are rendered concurrently: every thread owns a scene of its own (with its own buffers)
+ * which shares the meshes and lights of the given scene, so frames - not tiles - are rendered in
+ * parallel. Finished frames are handed to a FrameWriter in order through a bounded ring of frame
+ * buffers: a thread only starts a frame once its slot in the ring is free, so at most
+ * queueCapacity frames are kept in memory no matter how long the animation is.
+ *
+ * The meshes and lights must not be changed while the animation is rendered.
+ */
+public class Animation {
+    /**
+     * A function placing the camera for a frame.
+     */
+    public interface FrameTransform {
+        /**
+         * Moves the camera to its place in the given frame. The camera is reset to the camera of the
+         * animated scene before, so the transform does not depend on the order in which frames are rendered.
+         * @param frame the number of the frame
+         * @param camera the camera to move
+         */
+        void apply(int frame, Camera camera);
+    }
+
+    /**
+     * Receives the rendered frames of an animation in order.
+     */
+    public interface FrameWriter extends AutoCloseable {
+        /**
+         * Writes the next frame. The image is only valid during the call, its pixels are reused afterwards.
+         * @param frame the number of the frame
+         * @param image the rendered frame
+         * @throws IOException if the frame cannot be written
+         */
+        void write(int frame, BufferedImage image) throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    private final Scene scene;
+    private final int frameCount;
+    private final FrameTransform transform;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private int queueCapacity = 2 * this.threadCount;
+
+    // the ring of finished frames, frame i is stored in slot i % slots.length
+    private BufferedImage[] slots;
+    private boolean[] ready;
+    private int written;
+    // the first exception or error of a thread, rethrown by render
+    private Throwable failure;
+    private final Object lock = new Object();
+
+    /*@
+      @ requires frameCount >= 0;
+      @*/
+    /**
+     * Constructor for an animation of the given scene.
+     * @param scene the scene to animate (its size, meshes, lights and camera are used)
+     * @param frameCount the number of frames
+     * @param transform the function placing the camera for every frame
+     */
+    public Animation(Scene scene, int frameCount, FrameTransform transform) {
+        this.scene = scene;
+        this.frameCount = frameCount;
+        this.transform = transform;
+    }
+
+    /**
+     * Returns a transform which rotates the camera of the scene once around the vertical axis through
+     * its lock point over the given number of frames (the camera path used for the animations in doc/).
+     * @param frameCount the number of frames of one full rotation
+     * @return the transform for the rotation
+     */
+    public static FrameTransform orbit(int frameCount) {
+        return (frame, camera) -> {
+            double angle = 2 * Math.PI * frame / frameCount;
+            double cos = Math.cos(angle), sin = Math.sin(angle);
+            double[] p = camera.getPosition().getCoordinates();
+            double[] l = camera.getLock().getCoordinates();
+            double x = p[0] - l[0], y = p[1] - l[1];
+            camera.setPosition(new EuclideanVector(l[0] + cos * x - sin * y, l[1] + sin * x + cos * y, p[2]));
+        };
+    }
+
+    /*@
+      @ requires threads > 0;
+      @*/
+    /**
+     * Sets the number of frames rendered at the same time.
+     * @param threads the number of threads to use
+     */
+    public void setThreadCount(int threads) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("The number of threads has to be positive!");
+        }
+        this.threadCount = threads;
+    }
+
+    /*@
+      @ requires frames > 0;
+      @*/
+    /**
+     * Sets the maximal number of frames which are kept in memory, i.e. rendered but not yet written.
+     * At least one frame per thread is kept.
+     * @param frames the number of frames
+     */
+    public void setQueueCapacity(int frames) {
+        if(frames < 1) {
+            throw new IllegalArgumentException("The capacity has to be positive!");
+        }
+        this.queueCapacity = frames;
+    }
+
+    /**
+     * Renders all frames and writes them in order. The writer is closed afterwards.
+     * @param writer the writer receiving the frames
+     * @throws Exception if rendering or writing a frame failed (errors of the rendering threads are rethrown as well)
+     */
+    public void render(FrameWriter writer) throws Exception {
+        try(writer) {
+            if(this.frameCount == 0) {
+                return;
+            }
+            int threads = Math.min(this.threadCount, this.frameCount);
+            int capacity = Math.max(this.queueCapacity, threads);
+            this.slots = new BufferedImage[capacity];
+            this.ready = new boolean[capacity];
+            this.written = 0;
+            this.failure = null;
+            // the lazily calculated data of the meshes is calculated now, so the shared meshes are only read
+            for(Mesh mesh : this.scene.getMeshes()) {
+                mesh.getNormals();
+                mesh.getBoundingVolumeHierarchy();
+                if(this.scene.isSmoothShading()) {
+                    mesh.getVertexNormals();
+                }
+            }
+
+            AtomicInteger next = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                for(int t = 0; t < threads; t++) {
+                    executor.execute(() -> this.renderFrames(next));
+                }
+                this.writeFrames(writer);
+            } finally {
+                synchronized(this.lock) {
+                    if(this.failure == null && this.written < this.frameCount) {
+                        this.failure = new IllegalStateException("The animation was aborted.");
+                    }
+                    this.lock.notifyAll();
+                }
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Renders frames on a scene of its own until all frames are taken.
+     */
+    private void renderFrames(AtomicInteger next) {
+        try {
+            Scene frameScene = new Scene(this.scene.getWidth(), this.scene.getHeight());
+            frameScene.setThreadCount(1);
+            frameScene.setSmoothShading(this.scene.isSmoothShading());
+            frameScene.setDeferredShading(this.scene.isDeferredShading());
+            for(Mesh mesh : this.scene.getMeshes()) {
+                frameScene.addMesh(mesh);
+            }
+            for(Light light : this.scene.getLights()) {
+                frameScene.addLight(light);
+            }
+            int frame;
+            while((frame = next.getAndIncrement()) < this.frameCount) {
+                int slot = frame % this.slots.length;
+                synchronized(this.lock) {
+                    // the slot is free once the frame which used it before was written
+                    while(frame >= this.written + this.slots.length && this.failure == null) {
+                        this.lock.wait();
+                    }
+                    if(this.failure != null) {
+                        return;
+                    }
+                }
+                frameScene.getCamera().set(this.scene.getCamera());
+                this.transform.apply(frame, frameScene.getCamera());
+                frameScene.render();
+                if(this.slots[slot] == null) {
+                    this.slots[slot] = new BufferedImage(frameScene.getWidth(), frameScene.getHeight(), BufferedImage.TYPE_INT_RGB);
+                }
+                frameScene.copyFrameBuffer(((DataBufferInt) this.slots[slot].getRaster().getDataBuffer()).getData());
+                synchronized(this.lock) {
+                    this.ready[slot] = true;
+                    this.lock.notifyAll();
+                }
+            }
+        } catch (Throwable e) {
+            // errors (e.g. running out of memory for a frame) are passed on as well, otherwise nobody
+            // would mark the frame of this thread as ready and render would wait forever
+            synchronized(this.lock) {
+                if(this.failure == null) {
+                    this.failure = e;
+                }
+                this.lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits for the frames in order and hands them to the writer.
+     */
+    private void writeFrames(FrameWriter writer) throws Exception {
+        for(int frame = 0; frame < this.frameCount; frame++) {
+            int slot = frame % this.slots.length;
+            synchronized(this.lock) {
+                while(!this.ready[slot] && this.failure == null) {
+                    this.lock.wait();
+                }
+                if(this.failure instanceof Error) {
+                    throw (Error) this.failure;
+                } else if(this.failure != null) {
+                    throw (Exception) this.failure;
+                }
+            }
+            writer.write(frame, this.slots[slot]);
+            synchronized(this.lock) {
+                this.ready[slot] = false;
+                this.written++;
+                this.lock.notifyAll();
+            }
+        }
+    }
+}
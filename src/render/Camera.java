@@ -1,20 +1,40 @@
 package render;
 
 import linalg.EuclideanVector;
+import linalg.Matrix4;
+import linalg.Vector3;
 import mesh.Vertex;
 
 /**
  * A class to implement a (very simple) perspective camera.
  */
 public class Camera {
+    // points with a smaller depth are behind the camera and not in sight
+    private static final double MIN_DEPTH = -0.0001;
+    // the vertex transform runs on SIMD lanes if requested with -Dvymir.vectorize=true, the Vector API
+    // was added with --add-modules jdk.incubator.vector and the optional source set vector/ is on the classpath
+    private static final VertexTransform VECTORIZED = Boolean.getBoolean("vymir.vectorize")
+            ? loadVectorProjection() : null;
     private EuclideanVector position;
     private EuclideanVector lock;
     private EuclideanVector upGuide;
     private EuclideanVector look = new EuclideanVector();
     private EuclideanVector up = new EuclideanVector();
     private EuclideanVector right = new EuclideanVector();
+    // primitive copies of the basis for the allocation-free projection
+    private final Vector3 positionV = new Vector3();
+    private final Vector3 lockV = new Vector3();
+    private final Vector3 lookV = new Vector3();
+    private final Vector3 upV = new Vector3();
+    private final Vector3 rightV = new Vector3();
+    // the whole projection as one matrix, see updateViewMatrix
+    private final Matrix4 view = new Matrix4();
     private final Scene scene;
     private double zoom = 1;
+    // the near plane and the four side planes of the view
+    private final Frustum frustum = new Frustum(5);
+    // counts the calls to update, so the scene can tell whether the camera moved since the last frame
+    private long modificationCount;
 
     /*@
       @ requires position.getDimension() == 3 && lock.getDimension() == 3 && upGuide.getDimension() == 3;
@@ -40,15 +60,85 @@ public class Camera {
 
     /**
      * Calculates the orthonormal basis (right, up, look) for R^3 with given position,
-     * lock and upGuide.
+     * lock and upGuide. The zoom and the frustum depend on the size of the scene, so the
+     * scene calls this method when it is resized.
      */
-    private void update() {
+    void update() {
         this.look = this.lock.subtract(this.position).getNormalized();
         this.upGuide = this.upGuide.getNormalized();
         this.right = this.look.cross(this.upGuide);
         this.up = this.right.cross(this.look);
         this.zoom = Math.min(this.scene.getWidth(), this.scene.getHeight()) >> 1;
         zoom *= 1.5;
+        this.positionV.set(this.position);
+        this.lockV.set(this.lock);
+        this.lookV.set(this.look);
+        this.upV.set(this.up);
+        this.rightV.set(this.right);
+        this.updateViewMatrix();
+        this.updateFrustum();
+        this.modificationCount++;
+    }
+
+    /**
+     * @return a counter which changes whenever the camera is moved or its projection changes
+     */
+    long getModificationCount() {
+        return this.modificationCount;
+    }
+
+    /**
+     * Bakes the basis, the position and the zoom into the view matrix.
+     * A point p is mapped to (zoom * (p - position).right, zoom * (p - position).up, (p - position - lock).look),
+     * which is affine in p, so the three rows hold the scaled basis vectors and the constant parts
+     * are moved to the last column. The last row stays (0, 0, 0, 1).
+     */
+    private void updateViewMatrix() {
+        Vector3 p = this.positionV, l = this.lookV, r = this.rightV, u = this.upV;
+        double z = this.zoom;
+        this.view.setRow(0, z * r.x(), z * r.y(), z * r.z(), -z * r.dot(p));
+        this.view.setRow(1, z * u.x(), z * u.y(), z * u.z(), -z * u.dot(p));
+        this.view.setRow(2, l.x(), l.y(), l.z(),
+                -l.dot(p.x() + this.lockV.x(), p.y() + this.lockV.y(), p.z() + this.lockV.z()));
+    }
+
+    /**
+     * Calculates the planes of the view frustum.
+     * A point p has the depth (p - position - lock).look and the screen coordinates
+     * zoom * (p - position).right / depth and zoom * (p - position).up / depth. It can only show up on the
+     * screen if the depth is at least -0.0001 (see project) and both screen coordinates lie within half the
+     * width (height) of the scene. Multiplying with the depth turns these conditions into planes.
+     * We add a margin of one pixel to the sides, so the culling never removes anything visible.
+     */
+    private void updateFrustum() {
+        double halfWidth = (this.scene.getWidth() >> 1) + 1, halfHeight = (this.scene.getHeight() >> 1) + 1;
+        // depth(p) = look.p - depthOffset, x(p) = zoom * right.p - xOffset, y(p) = zoom * up.p - yOffset
+        double depthOffset = this.lookV.dot(this.positionV.x() + this.lockV.x(), this.positionV.y() + this.lockV.y(),
+                this.positionV.z() + this.lockV.z());
+        double xOffset = this.zoom * this.rightV.dot(this.positionV);
+        double yOffset = this.zoom * this.upV.dot(this.positionV);
+        Vector3 l = this.lookV, r = this.rightV, u = this.upV;
+        double z = this.zoom;
+        // -depth(p) - 0.0001 <= 0
+        this.frustum.setPlane(0, -l.x(), -l.y(), -l.z(), depthOffset - 0.0001);
+        // +-x(p) - halfWidth * depth(p) <= 0
+        this.frustum.setPlane(1, z * r.x() - halfWidth * l.x(), z * r.y() - halfWidth * l.y(),
+                z * r.z() - halfWidth * l.z(), -xOffset + halfWidth * depthOffset);
+        this.frustum.setPlane(2, -z * r.x() - halfWidth * l.x(), -z * r.y() - halfWidth * l.y(),
+                -z * r.z() - halfWidth * l.z(), xOffset + halfWidth * depthOffset);
+        // +-y(p) - halfHeight * depth(p) <= 0
+        this.frustum.setPlane(3, z * u.x() - halfHeight * l.x(), z * u.y() - halfHeight * l.y(),
+                z * u.z() - halfHeight * l.z(), -yOffset + halfHeight * depthOffset);
+        this.frustum.setPlane(4, -z * u.x() - halfHeight * l.x(), -z * u.y() - halfHeight * l.y(),
+                -z * u.z() - halfHeight * l.z(), yOffset + halfHeight * depthOffset);
+    }
+
+    /**
+     * Getter method for the view frustum of the camera, i.e. the part of space which may show up on the screen.
+     * @return the view frustum of the camera
+     */
+    public Frustum getFrustum() {
+        return this.frustum;
     }
 
     /*@
@@ -73,6 +163,17 @@ public class Camera {
         this.update();
     }
 
+    /**
+     * Copies position, lock and upGuide of the other camera (the scene stays the same).
+     * @param other the camera to copy
+     */
+    void set(Camera other) {
+        this.position = other.position;
+        this.lock = other.lock;
+        this.upGuide = other.upGuide;
+        this.update();
+    }
+
     /*@
       @ ensures \result == this.lock;
       @*/
@@ -114,13 +215,122 @@ public class Camera {
      *         vertex.
      */
     public EuclideanVector project(Vertex vertex) {
-        EuclideanVector w = vertex.subtract(this.position);
-        double depth = (w.subtract(this.lock)).dot(this.look);
-        if(depth < -0.0001) {
+        Vector3 screen = new Vector3();
+        double[] p = vertex.getCoordinates();
+        if(!this.project(p[0], p[1], p[2], screen)) {
             return null;
         }
-        double x = w.dot(this.right);
-        double y = w.dot(this.up);
-        return new EuclideanVector(this.zoom*x, this.zoom*y, depth);
+        return screen.toEuclideanVector();
+    }
+
+    /**
+     * Allocation-free version of project(Vertex): calculates the screen coordinates (x, y) and
+     * the depth of the point (px, py, pz) and writes them to dest.
+     * @param px the first coordinate of the point
+     * @param py the second coordinate of the point
+     * @param pz the third coordinate of the point
+     * @param dest the vector to write (x, y, depth) to
+     * @return false if the point is not in sight (dest is left untouched in that case)
+     */
+    public boolean project(double px, double py, double pz, Vector3 dest) {
+        Matrix4 m = this.view;
+        double depth = m.get(2, 0) * px + m.get(2, 1) * py + m.get(2, 2) * pz + m.get(2, 3);
+        if(depth < MIN_DEPTH) {
+            return false;
+        }
+        dest.set(m.get(0, 0) * px + m.get(0, 1) * py + m.get(0, 2) * pz + m.get(0, 3),
+                m.get(1, 0) * px + m.get(1, 1) * py + m.get(1, 2) * pz + m.get(1, 3), depth);
+        return true;
+    }
+
+    /**
+     * Inverse of project: calculates the point with the given screen coordinates (x, y) and depth.
+     * The basis (right, up, look) is orthogonal, but right and up are only unit vectors if the upGuide is
+     * perpendicular to the look vector, so the components along them are divided by their squared length.
+     * @param x the first screen coordinate
+     * @param y the second screen coordinate
+     * @param depth the depth of the point
+     * @param dest the vector to write the point to
+     * @return dest
+     */
+    Vector3 unproject(double x, double y, double depth, Vector3 dest) {
+        Vector3 p = this.positionV, l = this.lookV, r = this.rightV, u = this.upV;
+        double a = x * depth / (this.zoom * r.dot(r)), b = y * depth / (this.zoom * u.dot(u));
+        double c = (depth + l.dot(this.lockV)) / l.dot(l);
+        return dest.set(p.x() + a * r.x() + b * u.x() + c * l.x(), p.y() + a * r.y() + b * u.y() + c * l.y(),
+                p.z() + a * r.z() + b * u.z() + c * l.z());
+    }
+
+    /**
+     * Transforms the first count vertices of the packed coordinates (x, y, z per vertex, as in Mesh)
+     * with the view matrix and writes the screen coordinates (x, y, depth) packed in the same way to dest.
+     * Unlike project, all vertices are written, also the ones out of sight (see Clipper).
+     * If the system property vymir.vectorize is set and VectorProjection can be loaded (see
+     * loadVectorProjection), the vertices are transformed in batches by it, otherwise (and for the remainder)
+     * by a scalar loop.
+     * @param coordinates the packed coordinates of the vertices
+     * @param count the number of vertices
+     * @param dest the array to write to, of length at least 3 * count
+     */
+    void projectVertices(double[] coordinates, int count, double[] dest) {
+        if(VECTORIZED != null && count > 2) {
+            // the vector path reads one vertex beyond both ends of the batches
+            int end = VECTORIZED.project(this.view, coordinates, 1, count - 1, dest);
+            this.projectVertices(coordinates, 0, 1, dest);
+            this.projectVertices(coordinates, end, count, dest);
+        } else {
+            this.projectVertices(coordinates, 0, count, dest);
+        }
+    }
+
+    /**
+     * Loads the SIMD vertex transform from the optional source set vector/ by name, so neither compiling nor
+     * running src/ needs the module jdk.incubator.vector.
+     * @return the transform or null if the module or the class is missing
+     */
+    static VertexTransform loadVectorProjection() {
+        if(ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (VertexTransform) Class.forName("render.VectorProjection").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Scalar loop of projectVertices for the vertices from (inclusive) up to to (exclusive).
+     */
+    void projectVertices(double[] coordinates, int from, int to, double[] dest) {
+        Matrix4 m = this.view;
+        double m00 = m.get(0, 0), m01 = m.get(0, 1), m02 = m.get(0, 2), m03 = m.get(0, 3);
+        double m10 = m.get(1, 0), m11 = m.get(1, 1), m12 = m.get(1, 2), m13 = m.get(1, 3);
+        double m20 = m.get(2, 0), m21 = m.get(2, 1), m22 = m.get(2, 2), m23 = m.get(2, 3);
+        for(int i = 3 * from; i < 3 * to; i += 3) {
+            double x = coordinates[i], y = coordinates[i + 1], z = coordinates[i + 2];
+            dest[i] = m00 * x + m01 * y + m02 * z + m03;
+            dest[i + 1] = m10 * x + m11 * y + m12 * z + m13;
+            dest[i + 2] = m20 * x + m21 * y + m22 * z + m23;
+        }
+    }
+
+    /**
+     * Getter method for the view matrix of the camera, which maps a point (x, y, z, 1) to its
+     * screen coordinates (x, y) and depth before the perspective division (see project).
+     * The returned matrix must not be modified.
+     * @return the view matrix of the camera
+     */
+    public Matrix4 getViewMatrix() {
+        return this.view;
+    }
+
+    /**
+     * Getter method for the look vector of the camera as primitive vector.
+     * The returned vector must not be modified.
+     * @return the look vector of the camera
+     */
+    public Vector3 getLookVector() {
+        return this.lookV;
     }
 }
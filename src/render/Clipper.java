@@ -0,0 +1,204 @@
+package render;
+
+/**
+ * Clipping of projected triangles against the view frustum.
+ * The corners of a triangle are given by the results of the projection before the perspective division,
+ * i.e. homogeneous coordinates (x, y, depth) whose screen coordinates are (x / depth, y / depth). In these
+ * coordinates the planes of the frustum are linear and a point on an edge is found by linear interpolation,
+ * so triangles can be clipped before dividing by the depth. Each corner carries one more value (the light
+ * intensity for smooth shading), which is interpolated along with its coordinates.
+ *
+ * Every corner gets an outcode with one bit per plane it lies outside of. The side planes are the edges of
+ * the scissor rectangle (the whole screen by default): if all corners are outside of the same plane (see
+ * REJECTED), the triangle is not visible and is rejected as a whole.
+ * Around the screen there is a much larger guard band, which ends well before the screen coordinates get
+ * too large for the fixed-point setup of TriangleBuffer. If all corners are in front of the near plane and
+ * inside of the guard band, the triangle is accepted as it is: the parts outside of the scissor rectangle
+ * are skipped by the rasterizer, which clamps the bounding box of the triangle. Only the remaining
+ * triangles are clipped (Sutherland-Hodgman) against the near plane and the planes of the guard band.
+ * Clipping against a plane keeps all corners inside of the other planes (they are linear), so only the
+ * planes any of the corners is outside of are needed.
+ */
+final class Clipper {
+    static final int NEAR = 1;
+    static final int LEFT = 2;
+    static final int RIGHT = 4;
+    static final int TOP = 8;
+    static final int BOTTOM = 16;
+    // outside of the guard band on the left or right (top or bottom)
+    static final int GUARD_X = 32;
+    static final int GUARD_Y = 64;
+    // the planes a triangle is clipped against
+    static final int CLIPPED = NEAR | GUARD_X | GUARD_Y;
+    // the planes a triangle is rejected by if all of its corners are outside of one of them; the bits of the guard
+    // band stand for two opposite sides each, so corners on different sides would share them
+    static final int REJECTED = NEAR | LEFT | RIGHT | TOP | BOTTOM;
+    // the near plane, the four sides of the scissor rectangle and the four sides of the guard band
+    private static final int PLANES = 9;
+    // the depth of the near plane, corners closer to the camera are clipped
+    static final double NEAR_DEPTH = 0.001;
+    // the guard band spans +-GUARD_BAND screen coordinates, half of the range TriangleBuffer accepts
+    static final double GUARD_BAND = TriangleBuffer.MAX_COORDINATE / 2;
+
+    // the scissor rectangle in screen coordinates, widened by a margin of one pixel
+    private double minX;
+    private double minY;
+    private double maxX;
+    private double maxY;
+    // the corners (x, y, depth, intensity) of the clipped polygon and a second buffer for clipping it against
+    // the next plane, every plane adds at most one corner
+    private double[] polygon = new double[4 * (3 + PLANES)];
+    private double[] next = new double[4 * (3 + PLANES)];
+
+    /*@
+      @ requires width > 0 && height > 0;
+      @*/
+    /**
+     * Constructor for a clipper for a screen of the given size.
+     * @param width the width of the screen
+     * @param height the height of the screen
+     */
+    Clipper(int width, int height) {
+        this.setScissor(-width / 2, -height / 2, width / 2 - 1, height / 2 - 1);
+    }
+
+    /**
+     * Sets the scissor rectangle, i.e. the pixels which may be drawn to.
+     * The bounds are given in screen coordinates and are inclusive.
+     */
+    void setScissor(int minX, int minY, int maxX, int maxY) {
+        // with a margin of one pixel, like the frustum of the camera
+        this.minX = minX - 1;
+        this.minY = minY - 1;
+        this.maxX = maxX + 1;
+        this.maxY = maxY + 1;
+    }
+
+    /**
+     * Calculates the outcode of the projected point (x, y, depth).
+     * @return the bits of the planes the point lies outside of
+     */
+    int outcode(double x, double y, double depth) {
+        int code = depth < NEAR_DEPTH ? NEAR : 0;
+        if(x < this.minX * depth) code |= LEFT;
+        if(x > this.maxX * depth) code |= RIGHT;
+        if(y < this.minY * depth) code |= TOP;
+        if(y > this.maxY * depth) code |= BOTTOM;
+        double guard = GUARD_BAND * depth;
+        if(x < -guard || x > guard) code |= GUARD_X;
+        if(y < -guard || y > guard) code |= GUARD_Y;
+        return code;
+    }
+
+    /**
+     * Calculates the outcodes of the first count projected points, packed as (x, y, depth) in vertices.
+     * @param vertices the packed projected points
+     * @param count the number of points
+     * @param dest the array to write the outcodes to
+     */
+    void outcodes(double[] vertices, int count, byte[] dest) {
+        for(int v = 0; v < count; v++) {
+            dest[v] = (byte) this.outcode(vertices[3*v], vertices[3*v + 1], vertices[3*v + 2]);
+        }
+    }
+
+    /**
+     * Returns the signed distance (up to a positive factor) of the projected point to the given plane,
+     * which is negative outside of the plane. The planes are numbered as the bits of the outcodes, followed by
+     * the other sides of the guard band: 0 is the near plane, 1 to 4 are the sides of the scissor rectangle,
+     * 5 and 6 the left and top, 7 and 8 the right and bottom side of the guard band.
+     */
+    private double distance(int plane, double x, double y, double depth) {
+        switch(plane) {
+            case 0: return depth - NEAR_DEPTH;
+            case 1: return x - this.minX * depth;
+            case 2: return this.maxX * depth - x;
+            case 3: return y - this.minY * depth;
+            case 4: return this.maxY * depth - y;
+            case 5: return x + GUARD_BAND * depth;
+            case 6: return y + GUARD_BAND * depth;
+            case 7: return GUARD_BAND * depth - x;
+            default: return GUARD_BAND * depth - y;
+        }
+    }
+
+    /**
+     * @return whether the plane (numbered as in distance) has to be clipped against for the given outcode bits
+     */
+    private static boolean isClipped(int plane, int planes) {
+        switch(plane) {
+            case 0: return (planes & NEAR) != 0;
+            case 5: case 7: return (planes & GUARD_X) != 0;
+            case 6: case 8: return (planes & GUARD_Y) != 0;
+            default: return false;
+        }
+    }
+
+    /**
+     * Clips the triangle (a, b, c) against the near plane and the sides of the guard band, as far as they are in
+     * the given outcode (Sutherland-Hodgman): for each plane,
+     * we walk along the edges of the polygon, keep the corners inside of the plane and add the intersection of
+     * the plane with every edge crossing it. The polygon keeps the orientation of the triangle.
+     * The corners are written to getPolygon().
+     * @param ai the intensity of the corner a (bi, ci for b, c respectively)
+     * @param planes the outcode bits of the planes to clip against (see CLIPPED)
+     * @return the number of corners of the clipped polygon, less than three if nothing is left
+     */
+    int clip(double ax, double ay, double az, double ai, double bx, double by, double bz, double bi,
+             double cx, double cy, double cz, double ci, int planes) {
+        double[] p = this.polygon;
+        p[0] = ax; p[1] = ay; p[2] = az; p[3] = ai;
+        p[4] = bx; p[5] = by; p[6] = bz; p[7] = bi;
+        p[8] = cx; p[9] = cy; p[10] = cz; p[11] = ci;
+        int n = 3;
+        for(int plane = 0; plane < PLANES && n >= 3; plane++) {
+            if(isClipped(plane, planes)) {
+                n = this.clip(plane, n);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Clips the polygon with n corners against one plane and swaps the buffers.
+     * @return the new number of corners
+     */
+    private int clip(int plane, int n) {
+        double[] p = this.polygon, q = this.next;
+        int m = 0;
+        int s = 4 * (n - 1);
+        double sDistance = this.distance(plane, p[s], p[s + 1], p[s + 2]);
+        for(int e = 0; e < 4 * n; e += 4) {
+            double eDistance = this.distance(plane, p[e], p[e + 1], p[e + 2]);
+            if((sDistance >= 0) != (eDistance >= 0)) {
+                // we interpolate from the corner inside of the plane, so an edge shared by two triangles is
+                // cut at the same point for both of them, no matter in which direction it is walked
+                int in = sDistance >= 0 ? s : e, out = sDistance >= 0 ? e : s;
+                double inDistance = sDistance >= 0 ? sDistance : eDistance;
+                double outDistance = sDistance >= 0 ? eDistance : sDistance;
+                double t = inDistance / (inDistance - outDistance);
+                q[m] = p[in] + t * (p[out] - p[in]);
+                q[m + 1] = p[in + 1] + t * (p[out + 1] - p[in + 1]);
+                q[m + 2] = p[in + 2] + t * (p[out + 2] - p[in + 2]);
+                q[m + 3] = p[in + 3] + t * (p[out + 3] - p[in + 3]);
+                m += 4;
+            }
+            if(eDistance >= 0) {
+                System.arraycopy(p, e, q, m, 4);
+                m += 4;
+            }
+            s = e;
+            sDistance = eDistance;
+        }
+        this.polygon = q;
+        this.next = p;
+        return m / 4;
+    }
+
+    /**
+     * Returns the corners of the polygon of the last call to clip, packed as (x, y, depth, intensity).
+     */
+    double[] getPolygon() {
+        return this.polygon;
+    }
+}
@@ -0,0 +1,84 @@
+package render;
+
+import java.util.Arrays;
+
+/**
+ * A flat, row-major depth buffer. The depth of the pixel (x, y) is stored at index y * width + x.
+ * Depending on the chosen precision, the values are kept in a double or in a float array;
+ * the float variant halves the memory (and the bandwidth for clearing) of the buffer.
+ * The arrays only grow: resizing to a smaller size keeps them and only uses their beginning.
+ */
+final class DepthBuffer {
+    private double[] doubles;
+    private float[] floats;
+    private int size;
+
+    /*@
+      @ requires size >= 0;
+      @*/
+    /**
+     * Constructor for a depth buffer with the given number of pixels.
+     * @param size the number of pixels
+     * @param floatPrecision whether to store the depth values as floats
+     */
+    DepthBuffer(int size, boolean floatPrecision) {
+        this.doubles = floatPrecision ? null : new double[size];
+        this.floats = floatPrecision ? new float[size] : null;
+        this.size = size;
+    }
+
+    /*@
+      @ requires size >= 0;
+      @*/
+    /**
+     * Changes the number of pixels. New arrays are only allocated if the current ones are too small.
+     * The content is undefined afterwards.
+     * @param size the new number of pixels
+     */
+    void resize(int size) {
+        if(this.floats != null && size > this.floats.length) {
+            this.floats = new float[size];
+        } else if(this.doubles != null && size > this.doubles.length) {
+            this.doubles = new double[size];
+        }
+        this.size = size;
+    }
+
+    boolean isFloatPrecision() {
+        return this.floats != null;
+    }
+
+    double get(int i) {
+        return this.floats != null ? this.floats[i] : this.doubles[i];
+    }
+
+    void set(int i, double depth) {
+        if(this.floats != null) {
+            this.floats[i] = (float) depth;
+        } else {
+            this.doubles[i] = depth;
+        }
+    }
+
+    /**
+     * Sets every pixel of the buffer to positive infinity.
+     */
+    void clear() {
+        if(this.floats != null) {
+            Arrays.fill(this.floats, 0, this.size, Float.POSITIVE_INFINITY);
+        } else {
+            Arrays.fill(this.doubles, 0, this.size, Double.POSITIVE_INFINITY);
+        }
+    }
+
+    /**
+     * Sets the pixels from (inclusive) up to to (exclusive) to positive infinity.
+     */
+    void clear(int from, int to) {
+        if(this.floats != null) {
+            Arrays.fill(this.floats, from, to, Float.POSITIVE_INFINITY);
+        } else {
+            Arrays.fill(this.doubles, from, to, Double.POSITIVE_INFINITY);
+        }
+    }
+}
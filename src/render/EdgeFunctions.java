@@ -0,0 +1,97 @@
+package render;
+
+/**
+ * The edge functions of a triangle from a TriangleBuffer, stepped over the pixels of a rectangle row by row.
+ * The edge function of the edge opposite to corner k is w_k(p) = e.x * (p.y - s.y) - e.y * (p.x - s.x) for the
+ * edge e from its start s; it is positive inside the triangle. Pixels on edges which are not top-left edges are
+ * excluded by a bias of -1 (top-left fill rule), so a pixel is covered if (w0 | w1 | w2) >= 0. The corners are
+ * snapped to a fixed-point grid, so the edge functions are exact integers: shared edges are neither drawn twice
+ * nor left with cracks, and the result for a pixel does not depend on where the stepping started.
+ * The unbiased values w_k / area are the barycentric coordinates of the pixel, with which we interpolate
+ * 1 / depth linearly.
+ *
+ * A rasterizer sets up the triangle for the top left pixel of its rectangle and steps the values of the current
+ * row to the right by stepX0, stepX1 and stepX2 per pixel (in local variables, so they stay in registers), then
+ * moves on with nextRow. The fields are reused for every triangle, so each rasterizing thread needs an instance
+ * of its own.
+ */
+final class EdgeFunctions {
+    // the biased edge functions at the first pixel of the current row
+    long w0;
+    long w1;
+    long w2;
+    // 0 for top-left edges and -1 for the others
+    long bias0;
+    long bias1;
+    long bias2;
+    // the increments of the edge functions for one pixel to the right
+    long stepX0;
+    long stepX1;
+    long stepX2;
+    // the increments of the edge functions for one pixel down
+    private long stepY0;
+    private long stepY1;
+    private long stepY2;
+    // twice the area of the triangle in fixed-point, i.e. the sum of the unbiased edge functions
+    double area;
+    // the inverse depths of the corners
+    double iz0;
+    double iz1;
+    double iz2;
+
+    /**
+     * Sets up the edge functions of triangle t of the buffer for stepping from the pixel (minX, minY).
+     * @param buffer the buffer containing the triangle
+     * @param t the index of the triangle
+     * @param minX the x coordinate of the first pixel of each row
+     * @param minY the y coordinate of the first row
+     */
+    void setUp(TriangleBuffer buffer, int t, int minX, int minY) {
+        long[] p = buffer.getPoints();
+        int i = 6 * t;
+        long x0 = p[i], y0 = p[i + 1], x1 = p[i + 2], y1 = p[i + 3], x2 = p[i + 4], y2 = p[i + 5];
+        double[] inverseDepths = buffer.getInverseDepths();
+        this.iz0 = inverseDepths[3 * t];
+        this.iz1 = inverseDepths[3 * t + 1];
+        this.iz2 = inverseDepths[3 * t + 2];
+        this.area = (x1 - x0) * (y2 - y0) - (y1 - y0) * (x2 - x0);
+        this.bias0 = isTopLeft(x2 - x1, y2 - y1) ? 0 : -1;
+        this.bias1 = isTopLeft(x0 - x2, y0 - y2) ? 0 : -1;
+        this.bias2 = isTopLeft(x1 - x0, y1 - y0) ? 0 : -1;
+        long px = (long) minX << TriangleBuffer.SUBPIXEL_BITS, py = (long) minY << TriangleBuffer.SUBPIXEL_BITS;
+        this.w0 = (x2 - x1) * (py - y1) - (y2 - y1) * (px - x1) + this.bias0;
+        this.w1 = (x0 - x2) * (py - y2) - (y0 - y2) * (px - x2) + this.bias1;
+        this.w2 = (x1 - x0) * (py - y0) - (y1 - y0) * (px - x0) + this.bias2;
+        this.stepX0 = -(y2 - y1) * TriangleBuffer.SUBPIXEL_ONE;
+        this.stepX1 = -(y0 - y2) * TriangleBuffer.SUBPIXEL_ONE;
+        this.stepX2 = -(y1 - y0) * TriangleBuffer.SUBPIXEL_ONE;
+        this.stepY0 = (x2 - x1) * TriangleBuffer.SUBPIXEL_ONE;
+        this.stepY1 = (x0 - x2) * TriangleBuffer.SUBPIXEL_ONE;
+        this.stepY2 = (x1 - x0) * TriangleBuffer.SUBPIXEL_ONE;
+    }
+
+    /**
+     * Moves the first pixel of the current row one row down.
+     */
+    void nextRow() {
+        this.w0 += this.stepY0;
+        this.w1 += this.stepY1;
+        this.w2 += this.stepY2;
+    }
+
+    /**
+     * Returns the inverse depth of a covered pixel with the given (biased) edge functions, multiplied by the area.
+     */
+    double inverseDepth(long w0, long w1, long w2) {
+        return (w0 - this.bias0) * this.iz0 + (w1 - this.bias1) * this.iz1 + (w2 - this.bias2) * this.iz2;
+    }
+
+    /**
+     * Decides whether the edge (dx, dy) of a triangle with positive area is a top or a left edge.
+     * The y axis points down on the screen, so a top edge is horizontal and points right
+     * and a left edge points up.
+     */
+    static boolean isTopLeft(long dx, long dy) {
+        return dy < 0 || (dy == 0 && dx > 0);
+    }
+}
@@ -0,0 +1,99 @@
+package render;
+
+import mesh.Mesh;
+
+import java.util.List;
+
+/**
+ * Remembers what the last frame of a scene was rendered from: the camera, the meshes and the lights (by
+ * identity and modification counter) and the settings changing the image. Comparing it with the current
+ * state tells the scene how much of the frame has to be rendered again.
+ */
+final class FrameState {
+    // nothing changed, the last frame is still valid
+    static final int UNCHANGED = 0;
+    // only the lights changed, the frame has to be shaded again
+    static final int LIGHTING = 1;
+    // the geometry, the camera or the settings changed (or the frame buffer was drawn to), the frame has to be rendered
+    static final int GEOMETRY = 2;
+
+    private boolean valid;
+    private long camera;
+    private boolean smoothShading;
+    private boolean deferredShading;
+    private int scissorMinX;
+    private int scissorMinY;
+    private int scissorMaxX;
+    private int scissorMaxY;
+    private Mesh[] meshes = new Mesh[0];
+    private long[] meshCounts = new long[0];
+    private Light[] lights = new Light[0];
+    private long[] lightCounts = new long[0];
+
+    /**
+     * Marks the last frame as invalid, i.e. the next frame is rendered completely.
+     */
+    void invalidate() {
+        this.valid = false;
+    }
+
+    /**
+     * Compares the given state with the state of the last frame.
+     * @return UNCHANGED, LIGHTING or GEOMETRY
+     */
+    int compare(Camera camera, List<Mesh> meshes, List<Light> lights, boolean smoothShading, boolean deferredShading,
+                int scissorMinX, int scissorMinY, int scissorMaxX, int scissorMaxY) {
+        if(!this.valid || camera.getModificationCount() != this.camera || smoothShading != this.smoothShading
+                || deferredShading != this.deferredShading
+                || scissorMinX != this.scissorMinX || scissorMinY != this.scissorMinY
+                || scissorMaxX != this.scissorMaxX || scissorMaxY != this.scissorMaxY
+                || meshes.size() != this.meshes.length) {
+            return GEOMETRY;
+        }
+        for(int m = 0; m < meshes.size(); m++) {
+            if(meshes.get(m) != this.meshes[m] || meshes.get(m).getModificationCount() != this.meshCounts[m]) {
+                return GEOMETRY;
+            }
+        }
+        if(lights.size() != this.lights.length) {
+            return LIGHTING;
+        }
+        for(int l = 0; l < lights.size(); l++) {
+            if(lights.get(l) != this.lights[l] || lights.get(l).getModificationCount() != this.lightCounts[l]) {
+                return LIGHTING;
+            }
+        }
+        return UNCHANGED;
+    }
+
+    /**
+     * Records the given state as the state of the current frame.
+     */
+    void record(Camera camera, List<Mesh> meshes, List<Light> lights, boolean smoothShading, boolean deferredShading,
+                int scissorMinX, int scissorMinY, int scissorMaxX, int scissorMaxY) {
+        this.camera = camera.getModificationCount();
+        this.smoothShading = smoothShading;
+        this.deferredShading = deferredShading;
+        this.scissorMinX = scissorMinX;
+        this.scissorMinY = scissorMinY;
+        this.scissorMaxX = scissorMaxX;
+        this.scissorMaxY = scissorMaxY;
+        if(this.meshes.length != meshes.size()) {
+            this.meshes = new Mesh[meshes.size()];
+            this.meshCounts = new long[meshes.size()];
+        }
+        for(int m = 0; m < meshes.size(); m++) {
+            this.meshes[m] = meshes.get(m);
+            this.meshCounts[m] = meshes.get(m).getModificationCount();
+        }
+        if(this.lights.length != lights.size()) {
+            this.lights = new Light[lights.size()];
+            this.lightCounts = new long[lights.size()];
+        }
+        for(int l = 0; l < lights.size(); l++) {
+            this.lights[l] = lights.get(l);
+            this.lightCounts[l] = lights.get(l).getModificationCount();
+        }
+        this.valid = true;
+    }
+}
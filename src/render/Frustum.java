@@ -0,0 +1,67 @@
+package render;
+
+/**
+ * The view frustum of a camera, given by planes n.p + d = 0 whose normals n point out of the frustum.
+ * A point p lies inside the frustum if n.p + d <= 0 for every plane.
+ * It is used to decide which parts of a scene can be skipped before any projection happens.
+ */
+public final class Frustum {
+    public static final int OUTSIDE = 0;
+    public static final int INTERSECTING = 1;
+    public static final int INSIDE = 2;
+
+    // (a, b, c, d) per plane
+    private final double[] planes;
+
+    /**
+     * Constructor for a frustum with the given number of planes (all set to zero).
+     * @param planeCount the number of planes of the frustum
+     */
+    Frustum(int planeCount) {
+        this.planes = new double[4 * planeCount];
+    }
+
+    /**
+     * Sets the i-th plane to n.p + d = 0 with n = (a, b, c).
+     */
+    void setPlane(int i, double a, double b, double c, double d) {
+        this.planes[4 * i] = a;
+        this.planes[4 * i + 1] = b;
+        this.planes[4 * i + 2] = c;
+        this.planes[4 * i + 3] = d;
+    }
+
+    /**
+     * Classifies the axis aligned box against the frustum.
+     * The test is conservative: a box classified OUTSIDE lies completely outside of one of the planes,
+     * but a box outside of the frustum may still be classified INTERSECTING.
+     * @return OUTSIDE, INTERSECTING or INSIDE
+     */
+    public int classify(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        int result = INSIDE;
+        for(int i = 0; i < this.planes.length; i += 4) {
+            double a = this.planes[i], b = this.planes[i + 1], c = this.planes[i + 2], d = this.planes[i + 3];
+            // the corners of the box with the smallest and the largest distance to the plane
+            double near = a * (a > 0 ? minX : maxX) + b * (b > 0 ? minY : maxY) + c * (c > 0 ? minZ : maxZ) + d;
+            if(near > 0) {
+                return OUTSIDE;
+            }
+            double far = a * (a > 0 ? maxX : minX) + b * (b > 0 ? maxY : minY) + c * (c > 0 ? maxZ : minZ) + d;
+            if(far > 0) {
+                result = INTERSECTING;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Classifies the box of the given node of a bounding volume hierarchy, see classify.
+     * @param bounds the packed boxes (minX, minY, minZ, maxX, maxY, maxZ) of the nodes
+     * @param node the id of the node
+     * @return OUTSIDE, INTERSECTING or INSIDE
+     */
+    public int classify(double[] bounds, int node) {
+        int b = 6 * node;
+        return this.classify(bounds[b], bounds[b + 1], bounds[b + 2], bounds[b + 3], bounds[b + 4], bounds[b + 5]);
+    }
+}
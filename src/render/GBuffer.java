@@ -0,0 +1,69 @@
+package render;
+
+/**
+ * The geometry buffer of a frame. For every pixel, it keeps the id of the triangle (in the triangle buffer of
+ * the frame) which was drawn last at it; the depth of the pixel is kept in the depth buffer of the scene. The
+ * scene keeps the triangles until it submits the next frame, so a frame can be shaded again from the ids
+ * without rasterizing the triangles a second time (see Scene.render). Pixels drawn with a fixed color
+ * (lines and single triangles) have the id -1.
+ * With deferred shading, the buffer also keeps the surface normal (x, y, z as floats) of every pixel, which is
+ * only allocated once deferred shading is enabled (see allocateNormals).
+ * Like the depth buffer, it is row-major and only grows.
+ */
+final class GBuffer {
+    private int[] triangles;
+    private float[] normals;
+    private int size;
+
+    /*@
+      @ requires size >= 0;
+      @*/
+    /**
+     * Constructor for a geometry buffer with the given number of pixels.
+     * @param size the number of pixels
+     */
+    GBuffer(int size) {
+        this.triangles = new int[size];
+        this.size = size;
+    }
+
+    /**
+     * Changes the number of pixels. The content is undefined afterwards.
+     * @param size the new number of pixels
+     */
+    void resize(int size) {
+        if(size > this.triangles.length) {
+            this.triangles = new int[size];
+        }
+        if(this.normals != null && 3 * size > this.normals.length) {
+            this.normals = new float[3 * size];
+        }
+        this.size = size;
+    }
+
+    /**
+     * Returns the ids of the triangles drawn at the pixels. Pixels at which no triangle was drawn (their depth is
+     * infinite) have undefined ids.
+     */
+    int[] getTriangles() {
+        return this.triangles;
+    }
+
+    /**
+     * Allocates the normals of the pixels, unless they are allocated already. This is not done lazily in
+     * getNormals, since the tiles of a frame are rasterized concurrently.
+     */
+    void allocateNormals() {
+        if(this.normals == null) {
+            this.normals = new float[3 * this.size];
+        }
+    }
+
+    /**
+     * Returns the normals (x, y, z per pixel) of the pixels drawn by triangles for deferred shading, or null if
+     * they were not allocated.
+     */
+    float[] getNormals() {
+        return this.normals;
+    }
+}
@@ -0,0 +1,86 @@
+package render;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes the frames of an animation to an (endlessly looping) animated GIF.
+ * Every frame is appended to the file as soon as it is written, so the frames are not kept in memory.
+ */
+public class GifWriter implements Animation.FrameWriter {
+    private final ImageOutputStream output;
+    private final ImageWriter writer;
+    private final int delay;
+    private IIOMetadata metadata;
+
+    /**
+     * Constructor for a writer to the given file.
+     * @param path the path of the .gif file
+     * @param delay the time between two frames in milliseconds
+     * @throws IOException if the file cannot be created
+     */
+    public GifWriter(String path, int delay) throws IOException {
+        File file = new File(path);
+        file.delete();
+        this.output = ImageIO.createImageOutputStream(file);
+        this.writer = ImageIO.getImageWritersByFormatName("gif").next();
+        this.writer.setOutput(this.output);
+        this.writer.prepareWriteSequence(null);
+        this.delay = delay;
+    }
+
+    @Override
+    public void write(int frame, BufferedImage image) throws IOException {
+        if(this.metadata == null) {
+            this.metadata = this.createMetadata(image);
+        }
+        this.writer.writeToSequence(new IIOImage(image, null, this.metadata), null);
+    }
+
+    /**
+     * Creates the metadata of the frames: the delay and (in the first frame) the loop extension.
+     */
+    private IIOMetadata createMetadata(BufferedImage image) throws IOException {
+        IIOMetadata metadata = this.writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), null);
+        String format = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+
+        IIOMetadataNode control = new IIOMetadataNode("GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("delayTime", Integer.toString(this.delay / 10));
+        control.setAttribute("transparentColorIndex", "0");
+        root.appendChild(control);
+
+        IIOMetadataNode extensions = new IIOMetadataNode("ApplicationExtensions");
+        IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+        loop.setAttribute("applicationID", "NETSCAPE");
+        loop.setAttribute("authenticationCode", "2.0");
+        // loop forever
+        loop.setUserObject(new byte[] {1, 0, 0});
+        extensions.appendChild(loop);
+        root.appendChild(extensions);
+
+        metadata.setFromTree(format, root);
+        return metadata;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.writer.endWriteSequence();
+        } finally {
+            this.writer.dispose();
+            this.output.close();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package render;
+
+import java.util.Arrays;
+
+/**
+ * A coarse depth level on top of the depth buffer: the screen is divided into blocks of
+ * BLOCK_SIZE x BLOCK_SIZE pixels and for every block we keep a lower and an upper bound of the
+ * depth values stored in the depth buffer.
+ * If the nearest point of a triangle is behind the upper bound of a block, no pixel of the
+ * triangle in that block can pass the depth test, so the block can be skipped entirely.
+ * If the farthest point of a triangle is in front of the lower bound, every pixel passes.
+ *
+ * Depth values only decrease during a frame, so an outdated upper bound is still an upper bound.
+ * We therefore only recompute the upper bound of a block from the depth buffer once about half
+ * a block worth of pixels was written to it. Blocks never cross the screen tiles of TileBins,
+ * so disjoint tiles can update their blocks concurrently.
+ * Like the depth buffer, the arrays of the blocks only grow when the screen is resized.
+ */
+final class HierarchicalDepth {
+    static final int BLOCK_SHIFT = 3;
+    static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final int RECOMPUTE_THRESHOLD = BLOCK_SIZE * BLOCK_SIZE / 2;
+
+    private int width;
+    private int height;
+    private int columns;
+    private int blocks;
+    private double[] maxDepth = new double[0];
+    private double[] minDepth = new double[0];
+    private int[] pending = new int[0];
+
+    /**
+     * Constructor for the coarse depth level of a depth buffer with the given size.
+     * @param width the width of the depth buffer
+     * @param height the height of the depth buffer
+     */
+    HierarchicalDepth(int width, int height) {
+        this.resize(width, height);
+    }
+
+    /**
+     * Changes the size of the depth buffer. New arrays are only allocated if there are more blocks than before.
+     * The bounds are undefined afterwards, the blocks have to be cleared.
+     */
+    void resize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.columns = (width + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+        this.blocks = this.columns * ((height + BLOCK_SIZE - 1) >> BLOCK_SHIFT);
+        if(this.blocks > this.pending.length) {
+            this.maxDepth = new double[this.blocks];
+            this.minDepth = new double[this.blocks];
+            this.pending = new int[this.blocks];
+        }
+    }
+
+    /**
+     * Resets all blocks to an empty (infinitely far) depth buffer.
+     */
+    void clear() {
+        Arrays.fill(this.maxDepth, 0, this.blocks, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.minDepth, 0, this.blocks, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.pending, 0, this.blocks, 0);
+    }
+
+    /**
+     * Resets the blocks after the pixels inside the given rectangle (in buffer coordinates, bounds inclusive)
+     * were cleared. Blocks which are only partly inside keep pixels of unknown depth, so we give up their
+     * lower bound; infinity stays a valid upper bound.
+     */
+    void clear(int minX, int minY, int maxX, int maxY) {
+        // the last column (row) of a buffer with odd width (height) is never drawn to
+        int right = this.width / 2 * 2, bottom = this.height / 2 * 2;
+        for(int y = minY >> BLOCK_SHIFT; y <= maxY >> BLOCK_SHIFT; y++) {
+            for(int x = minX >> BLOCK_SHIFT; x <= maxX >> BLOCK_SHIFT; x++) {
+                int block = y * this.columns + x;
+                boolean covered = x << BLOCK_SHIFT >= minX && y << BLOCK_SHIFT >= minY
+                        && Math.min((x + 1) << BLOCK_SHIFT, right) - 1 <= maxX
+                        && Math.min((y + 1) << BLOCK_SHIFT, bottom) - 1 <= maxY;
+                this.maxDepth[block] = Double.POSITIVE_INFINITY;
+                this.minDepth[block] = covered ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+                this.pending[block] = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the block containing the given pixel of the depth buffer.
+     * @param x the x coordinate of the pixel in the buffer (not on the screen)
+     * @param y the y coordinate of the pixel in the buffer
+     * @return the id of the block
+     */
+    int getBlock(int x, int y) {
+        return (y >> BLOCK_SHIFT) * this.columns + (x >> BLOCK_SHIFT);
+    }
+
+    /**
+     * @return an upper bound for the depth values stored in the block
+     */
+    double getMaxDepth(int block) {
+        return this.maxDepth[block];
+    }
+
+    /**
+     * @return a lower bound for the depth values stored in the block
+     */
+    double getMinDepth(int block) {
+        return this.minDepth[block];
+    }
+
+    /**
+     * Records that pixels inside the given rectangle (in buffer coordinates, bounds inclusive) were written.
+     * We do not know how the written pixels are distributed over the blocks of the rectangle, so they are
+     * charged evenly to all of them.
+     * @param written the number of pixels written
+     * @param nearest the smallest depth written
+     * @param depthBuffer the depth buffer, used to tighten the upper bounds if enough pixels changed
+     */
+    void update(int minX, int minY, int maxX, int maxY, int written, double nearest, DepthBuffer depthBuffer) {
+        int blocks = ((maxX >> BLOCK_SHIFT) - (minX >> BLOCK_SHIFT) + 1) * ((maxY >> BLOCK_SHIFT) - (minY >> BLOCK_SHIFT) + 1);
+        int charge = (written + blocks - 1) / blocks;
+        for(int y = minY >> BLOCK_SHIFT; y <= maxY >> BLOCK_SHIFT; y++) {
+            for(int x = minX >> BLOCK_SHIFT; x <= maxX >> BLOCK_SHIFT; x++) {
+                int block = y * this.columns + x;
+                this.minDepth[block] = Math.min(this.minDepth[block], nearest);
+                this.pending[block] += charge;
+                if(this.pending[block] >= RECOMPUTE_THRESHOLD) {
+                    this.recompute(block, depthBuffer);
+                }
+            }
+        }
+    }
+
+    private void recompute(int block, DepthBuffer depthBuffer) {
+        int x0 = (block % this.columns) << BLOCK_SHIFT, y0 = (block / this.columns) << BLOCK_SHIFT;
+        // the last column (row) of a buffer with odd width (height) is never drawn to
+        int x1 = Math.min(x0 + BLOCK_SIZE, this.width / 2 * 2), y1 = Math.min(y0 + BLOCK_SIZE, this.height / 2 * 2);
+        double max = 0;
+        for(int y = y0; y < y1; y++) {
+            for(int x = x0; x < x1; x++) {
+                max = Math.max(max, depthBuffer.get(y * this.width + x));
+            }
+        }
+        this.maxDepth[block] = max;
+        this.pending[block] = 0;
+    }
+}
@@ -0,0 +1,36 @@
+package render;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes the frames of an animation to numbered image files, e.g. "frames/teapot%04d.png".
+ */
+public class ImageSequenceWriter implements Animation.FrameWriter {
+    private final String pattern;
+    private final String format;
+
+    /**
+     * Constructor for a writer using the given file name pattern.
+     * @param pattern the file name pattern, the number of the frame is inserted with String.format
+     * @param format the informal name of the image format, e.g. "PNG"
+     */
+    public ImageSequenceWriter(String pattern, String format) {
+        this.pattern = pattern;
+        this.format = format;
+    }
+
+    @Override
+    public void write(int frame, BufferedImage image) throws IOException {
+        File file = new File(String.format(this.pattern, frame));
+        if(!ImageIO.write(image, this.format, file)) {
+            throw new IOException("There is no writer for the format " + this.format + ".");
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
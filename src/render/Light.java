@@ -1,9 +1,81 @@
 package render;
 
 import linalg.EuclideanVector;
+import linalg.Vector3;
+import mesh.Mesh;
 import mesh.Vertex;
 
+import java.util.List;
+
+/**
+ * A light source of a scene.
+ * Every change of a light which affects its intensities has to be reported with modified(): the scene only
+ * shades a frame again (see Scene.render) if one of its lights reports a change. Moving the light with
+ * setPosition reports it already.
+ */
 public abstract class Light {
+    private long modificationCount;
+
     public abstract double intensityAt(EuclideanVector position, EuclideanVector normal);
-    public abstract void setPosition(Vertex position);
+
+    /**
+     * Moves the light and reports the change (see modified), so subclasses cannot forget to.
+     * @param position the new position of the light
+     */
+    public final void setPosition(Vertex position) {
+        this.updatePosition(position);
+        this.modified();
+    }
+
+    /**
+     * Moves the light; called by setPosition, which reports the change afterwards.
+     * @param position the new position of the light
+     */
+    protected abstract void updatePosition(Vertex position);
+
+    /**
+     * Allocation-free variant of intensityAt used by the render loop.
+     * Subclasses should override this; the default just delegates to the EuclideanVector version.
+     * @param position the position to evaluate the light at
+     * @param normal the surface normal at the position
+     * @return the intensity of the light at the given position
+     */
+    public double intensityAt(Vector3 position, Vector3 normal) {
+        return this.intensityAt(position.toEuclideanVector(), normal.toEuclideanVector());
+    }
+
+    /**
+     * Returns the sphere outside of which the light has no effect, i.e. intensityAt is zero. The scene uses it
+     * to evaluate only the lights which may reach a point (see LightGrid).
+     * By default, a light reaches everywhere, i.e. the radius is infinite.
+     * @param center the vector to write the center of the sphere to
+     * @return the radius of the sphere
+     */
+    public double getBounds(Vector3 center) {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Called by the scene before the lights are evaluated for a frame, so a light can update data depending
+     * on the geometry of the scene (e.g. its shadow map). By default, there is nothing to do.
+     * @param meshes the meshes of the scene
+     * @return whether a shadow map was rendered
+     */
+    boolean prepare(List<Mesh> meshes) {
+        return false;
+    }
+
+    /**
+     * Reports a change of the light, i.e. its intensities have to be evaluated again.
+     */
+    protected void modified() {
+        this.modificationCount++;
+    }
+
+    /**
+     * @return a counter which changes whenever the light reports a change (see modified)
+     */
+    public long getModificationCount() {
+        return this.modificationCount;
+    }
 }
@@ -0,0 +1,189 @@
+package render;
+
+import linalg.Vector3;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A uniform 3D grid over the world space which sorts the lights of a scene by the region they reach.
+ * Lights with a finite attenuation radius (see Light.getBounds) are added to every cell overlapped by the
+ * bounding box of their sphere, lights reaching everywhere are global and kept in a list of their own.
+ * Evaluating the lights at a point only touches the global lights and the lights of the cell containing
+ * the point, so a scene with hundreds of small lights costs about as much per face as the few lights which
+ * actually reach it.
+ * The cells are cubes with the average radius of the lights as edge length (but there are at most
+ * MAX_CELLS cells along each axis), so a light overlaps only a few cells. The lists of all cells are stored
+ * back to back in one array and the grid is rebuilt for every frame, reusing its arrays.
+ * The lights at a point are evaluated in the order in which they were added to the scene, global lights first.
+ */
+final class LightGrid {
+    private static final int MAX_CELLS = 32;
+
+    private Light[] global = new Light[4];
+    private int globalCount;
+    private Light[] bounded = new Light[16];
+    // the bounding spheres (x, y, z, radius) of the bounded lights
+    private double[] spheres = new double[4 * 16];
+    private int boundedCount;
+    // the corner of the grid with the smallest coordinates, the size of a cell and the number of cells per axis
+    private double minX;
+    private double minY;
+    private double minZ;
+    private double inverseCellSize;
+    private int cellsX;
+    private int cellsY;
+    private int cellsZ;
+    // the ids of the lights of cell c are cellLights[cellStart[c]], ..., cellLights[cellStart[c + 1] - 1]
+    private int[] cellStart = new int[1];
+    private int[] cellFill = new int[0];
+    private int[] cellLights = new int[16];
+    private final Vector3 center = new Vector3();
+
+    /**
+     * Sorts the given lights into the grid, replacing the lights sorted in before.
+     * @param lights the lights of the scene
+     */
+    void build(List<Light> lights) {
+        this.globalCount = 0;
+        this.boundedCount = 0;
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        double radii = 0;
+        for(int l = 0; l < lights.size(); l++) {
+            Light light = lights.get(l);
+            double radius = light.getBounds(this.center);
+            if(!(radius < Double.POSITIVE_INFINITY)) {
+                if(this.globalCount == this.global.length) {
+                    this.global = Arrays.copyOf(this.global, 2 * this.global.length);
+                }
+                this.global[this.globalCount++] = light;
+                continue;
+            }
+            if(this.boundedCount == this.bounded.length) {
+                this.bounded = Arrays.copyOf(this.bounded, 2 * this.bounded.length);
+                this.spheres = Arrays.copyOf(this.spheres, 4 * this.bounded.length);
+            }
+            int s = 4 * this.boundedCount;
+            this.spheres[s] = this.center.x();
+            this.spheres[s + 1] = this.center.y();
+            this.spheres[s + 2] = this.center.z();
+            this.spheres[s + 3] = radius;
+            this.bounded[this.boundedCount++] = light;
+            minX = Math.min(minX, this.center.x() - radius);
+            minY = Math.min(minY, this.center.y() - radius);
+            minZ = Math.min(minZ, this.center.z() - radius);
+            maxX = Math.max(maxX, this.center.x() + radius);
+            maxY = Math.max(maxY, this.center.y() + radius);
+            maxZ = Math.max(maxZ, this.center.z() + radius);
+            radii += radius;
+        }
+        if(this.boundedCount == 0) {
+            this.cellsX = this.cellsY = this.cellsZ = 0;
+            return;
+        }
+        double extent = Math.max(maxX - minX, Math.max(maxY - minY, maxZ - minZ));
+        double cellSize = Math.max(radii / this.boundedCount, extent / MAX_CELLS);
+        if(!(cellSize > 0)) {
+            cellSize = 1;
+        }
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.inverseCellSize = 1 / cellSize;
+        this.cellsX = Math.min(MAX_CELLS, (int) ((maxX - minX) * this.inverseCellSize) + 1);
+        this.cellsY = Math.min(MAX_CELLS, (int) ((maxY - minY) * this.inverseCellSize) + 1);
+        this.cellsZ = Math.min(MAX_CELLS, (int) ((maxZ - minZ) * this.inverseCellSize) + 1);
+        int cells = this.cellsX * this.cellsY * this.cellsZ;
+        if(cells + 1 > this.cellStart.length) {
+            this.cellStart = new int[Math.max(cells + 1, 2 * this.cellStart.length)];
+            this.cellFill = new int[this.cellStart.length];
+        }
+        // counting sort: first the number of lights per cell, then their ids
+        Arrays.fill(this.cellStart, 0, cells + 1, 0);
+        for(int l = 0; l < this.boundedCount; l++) {
+            this.forEachCell(l, false);
+        }
+        for(int c = 0; c < cells; c++) {
+            this.cellStart[c + 1] += this.cellStart[c];
+        }
+        if(this.cellStart[cells] > this.cellLights.length) {
+            this.cellLights = new int[Math.max(this.cellStart[cells], 2 * this.cellLights.length)];
+        }
+        System.arraycopy(this.cellStart, 0, this.cellFill, 0, cells);
+        for(int l = 0; l < this.boundedCount; l++) {
+            this.forEachCell(l, true);
+        }
+    }
+
+    /**
+     * Visits all cells overlapped by the bounding box of the sphere of the bounded light l and either
+     * counts the light (in cellStart[c + 1]) or stores its id in the list of the cell.
+     */
+    private void forEachCell(int l, boolean store) {
+        double[] s = this.spheres;
+        double x = s[4*l], y = s[4*l + 1], z = s[4*l + 2], radius = s[4*l + 3];
+        int x0 = this.cell(x - radius, this.minX, this.cellsX), x1 = this.cell(x + radius, this.minX, this.cellsX);
+        int y0 = this.cell(y - radius, this.minY, this.cellsY), y1 = this.cell(y + radius, this.minY, this.cellsY);
+        int z0 = this.cell(z - radius, this.minZ, this.cellsZ), z1 = this.cell(z + radius, this.minZ, this.cellsZ);
+        for(int k = z0; k <= z1; k++) {
+            for(int j = y0; j <= y1; j++) {
+                for(int i = x0; i <= x1; i++) {
+                    int c = (k * this.cellsY + j) * this.cellsX + i;
+                    if(store) {
+                        this.cellLights[this.cellFill[c]++] = l;
+                    } else {
+                        this.cellStart[c + 1]++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the index of the cell containing the given coordinate along one axis, clamped to the grid
+     */
+    private int cell(double value, double min, int cells) {
+        int index = (int) ((value - min) * this.inverseCellSize);
+        return Math.min(Math.max(index, 0), cells - 1);
+    }
+
+    /**
+     * Sums the intensities of all lights reaching the given position. Bounded lights whose sphere does not
+     * contain the position are skipped without evaluating them.
+     * @param position the position to evaluate the lights at
+     * @param normal the surface normal at the position
+     * @param statistics the statistics counting the evaluated lights
+     * @return the summed intensity of the lights
+     */
+    double intensityAt(Vector3 position, Vector3 normal, RenderStatistics statistics) {
+        double intensity = 0;
+        for(int l = 0; l < this.globalCount; l++) {
+            intensity += this.global[l].intensityAt(position, normal);
+        }
+        long evaluated = this.globalCount;
+        double x = position.x(), y = position.y(), z = position.z();
+        double fx = (x - this.minX) * this.inverseCellSize;
+        double fy = (y - this.minY) * this.inverseCellSize;
+        double fz = (z - this.minZ) * this.inverseCellSize;
+        // positions outside of the grid are not reached by any bounded light
+        if(this.boundedCount > 0 && fx >= 0 && fy >= 0 && fz >= 0) {
+            int i = Math.min((int) fx, this.cellsX - 1);
+            int j = Math.min((int) fy, this.cellsY - 1);
+            int k = Math.min((int) fz, this.cellsZ - 1);
+            int c = (k * this.cellsY + j) * this.cellsX + i;
+            double[] s = this.spheres;
+            for(int e = this.cellStart[c]; e < this.cellStart[c + 1]; e++) {
+                int l = this.cellLights[e];
+                double dx = x - s[4*l], dy = y - s[4*l + 1], dz = z - s[4*l + 2];
+                if(dx*dx + dy*dy + dz*dz >= s[4*l + 3] * s[4*l + 3]) {
+                    continue;
+                }
+                intensity += this.bounded[l].intensityAt(position, normal);
+                evaluated++;
+            }
+        }
+        statistics.lightsEvaluated += evaluated;
+        return intensity;
+    }
+}
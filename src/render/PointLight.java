@@ -1,25 +1,145 @@
 package render;
 
 import linalg.EuclideanVector;
+import linalg.Vector3;
+import mesh.Mesh;
 import mesh.Vertex;
 
+import java.util.List;
+
+/**
+ * A light shining from a single point in all directions. Its intensity falls off with the squared distance.
+ * Optionally, the light has an attenuation radius: the intensity is then faded out smoothly with the window
+ * (1 - (distance / radius)^2)^2 and the light has no effect beyond the radius, so many small lights only
+ * cost where they shine.
+ * A point light can cast shadows: the scene then renders a shadow map (see ShadowMap) around the light, which
+ * is kept until the light is moved or the geometry of the scene changes, and the intensity is scaled by
+ * how much of the light reaches a point.
+ */
 public class PointLight extends Light{
     private Vertex position;
     private double intensity;
+    private double radius;
+    private ShadowMap shadowMap;
 
     public PointLight(Vertex posistion, double intensity) {
-        this.position = posistion;
+        this(posistion, intensity, Double.POSITIVE_INFINITY);
+    }
+
+    /*@
+      @ requires radius > 0;
+      @*/
+    /**
+     * Constructor for a point light with an attenuation radius.
+     * @param position the position of the light
+     * @param intensity the intensity of the light
+     * @param radius the distance beyond which the light has no effect (infinite for no attenuation)
+     */
+    public PointLight(Vertex position, double intensity, double radius) {
+        if(!(radius > 0)) {
+            throw new IllegalArgumentException("The radius of the light has to be positive!");
+        }
+        this.position = position;
         this.intensity = intensity;
+        this.radius = radius;
     }
 
     @Override
     public double intensityAt(EuclideanVector position, EuclideanVector normal) {
         EuclideanVector d = position.subtract(this.position);
-        return d.dot(normal) * intensity/d.dot(d);
+        double[] p = position.getCoordinates();
+        return d.dot(normal) * intensity/d.dot(d) * this.attenuation(d.dot(d)) * this.visibility(p[0], p[1], p[2]);
     }
 
     @Override
-    public void setPosition(Vertex position) {
+    public double intensityAt(Vector3 position, Vector3 normal) {
+        double[] p = this.position.getCoordinates();
+        double dx = position.x() - p[0], dy = position.y() - p[1], dz = position.z() - p[2];
+        double squaredDistance = dx*dx + dy*dy + dz*dz;
+        return normal.dot(dx, dy, dz) * intensity/squaredDistance * this.attenuation(squaredDistance)
+                * this.visibility(position.x(), position.y(), position.z());
+    }
+
+    /**
+     * @return the factor by which the intensity is faded out at the given squared distance
+     */
+    private double attenuation(double squaredDistance) {
+        if(this.radius == Double.POSITIVE_INFINITY) {
+            return 1;
+        }
+        double window = 1 - squaredDistance / (this.radius * this.radius);
+        return window > 0 ? window * window : 0;
+    }
+
+    /**
+     * @return how much of the light reaches the given point according to the shadow map (1 without shadows)
+     */
+    private double visibility(double x, double y, double z) {
+        if(this.shadowMap == null) {
+            return 1;
+        }
+        double[] p = this.position.getCoordinates();
+        return this.shadowMap.visibility(p[0], p[1], p[2], x, y, z);
+    }
+
+    @Override
+    public double getBounds(Vector3 center) {
+        double[] p = this.position.getCoordinates();
+        center.set(p[0], p[1], p[2]);
+        return this.radius;
+    }
+
+    @Override
+    protected void updatePosition(Vertex position) {
         this.position = position;
+        if(this.shadowMap != null) {
+            this.shadowMap.invalidate();
+        }
+    }
+
+    @Override
+    boolean prepare(List<Mesh> meshes) {
+        if(this.shadowMap == null) {
+            return false;
+        }
+        double[] p = this.position.getCoordinates();
+        return this.shadowMap.update(p[0], p[1], p[2], meshes);
+    }
+
+    /*@
+      @ requires resolution >= 2;
+      @*/
+    /**
+     * Lets the light cast shadows. Each of the six faces of its shadow map has resolution x resolution pixels
+     * (rounded down to an even number), so the map takes 24 * resolution^2 bytes.
+     * @param resolution the resolution of the shadow map
+     */
+    public void enableShadows(int resolution) {
+        if(resolution < 2) {
+            throw new IllegalArgumentException("The resolution of the shadow map has to be at least 2!");
+        }
+        if(this.shadowMap == null || this.shadowMap.getSize() != resolution / 2 * 2) {
+            this.shadowMap = new ShadowMap(resolution);
+            this.modified();
+        }
+    }
+
+    public void disableShadows() {
+        if(this.shadowMap != null) {
+            this.shadowMap = null;
+            this.modified();
+        }
+    }
+
+    public boolean hasShadows() {
+        return this.shadowMap != null;
+    }
+
+    /**
+     * Getter method for the attenuation radius of the light.
+     * @return the radius beyond which the light has no effect (infinite if it is not attenuated)
+     */
+    public double getRadius() {
+        return this.radius;
     }
 }
@@ -0,0 +1,13 @@
+package render;
+
+/**
+ * Interface for objects which want to be notified about every frame rendered by a scene.
+ */
+public interface RenderListener {
+    /**
+     * Called at the end of Scene.render() on the rendering thread.
+     * @param scene the scene which rendered the frame
+     * @param statistics the statistics of the frame
+     */
+    void frameRendered(Scene scene, RenderStatistics statistics);
+}
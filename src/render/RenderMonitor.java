@@ -0,0 +1,146 @@
+package render;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * A render listener which keeps the statistics of the last frame and the totals of all frames of a
+ * scene, and exposes them as a JMX MBean (see register). A registered monitor stays registered until
+ * unregister is called, so the name can be used again afterwards.
+ */
+public class RenderMonitor implements RenderListener, RenderMonitorMBean {
+    private volatile RenderStatistics last = new RenderStatistics();
+    private volatile long frames;
+    private volatile long totalTime;
+    // the scene and the name the monitor was registered for, null if it is not registered
+    private Scene scene;
+    private ObjectName name;
+
+    /**
+     * Creates a monitor for the given scene and registers it with the platform MBean server
+     * under the name "vymir:type=Scene,name=[name]".
+     * @param scene the scene to monitor
+     * @param name the name of the scene in JMX
+     * @return the monitor
+     * @throws JMException if the MBean cannot be registered (e.g. the name is already taken)
+     */
+    public static RenderMonitor register(Scene scene, String name) throws JMException {
+        RenderMonitor monitor = new RenderMonitor();
+        ObjectName objectName = new ObjectName("vymir:type=Scene,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(monitor, objectName);
+        scene.addRenderListener(monitor);
+        monitor.scene = scene;
+        monitor.name = objectName;
+        return monitor;
+    }
+
+    /**
+     * Removes the monitor from the platform MBean server and from the scene it was registered for.
+     * Nothing happens if it is not registered (anymore).
+     * @throws JMException if the MBean cannot be unregistered
+     */
+    public synchronized void unregister() throws JMException {
+        if(this.name == null) {
+            return;
+        }
+        this.scene.removeRenderListener(this);
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.name);
+        this.scene = null;
+        this.name = null;
+    }
+
+    @Override
+    public void frameRendered(Scene scene, RenderStatistics statistics) {
+        this.totalTime += statistics.clearTime + statistics.transformTime + statistics.rasterTime;
+        this.frames++;
+        this.last = statistics;
+    }
+
+    public RenderStatistics getLastStatistics() {
+        return this.last;
+    }
+
+    @Override
+    public long getFrames() {
+        return this.frames;
+    }
+
+    /**
+     * @return the average time of clearing, transforming and rasterizing a frame
+     */
+    @Override
+    public double getAverageFrameTime() {
+        long frames = this.frames;
+        return frames == 0 ? 0 : this.totalTime / 1e6 / frames;
+    }
+
+    /**
+     * @return the time of clearing, transforming and rasterizing the last frame
+     */
+    @Override
+    public double getLastFrameTime() {
+        RenderStatistics last = this.last;
+        return (last.clearTime + last.transformTime + last.rasterTime) / 1e6;
+    }
+
+    @Override
+    public double getLastClearTime() {
+        return this.last.clearTime / 1e6;
+    }
+
+    @Override
+    public double getLastTransformTime() {
+        return this.last.transformTime / 1e6;
+    }
+
+    @Override
+    public double getLastRasterTime() {
+        return this.last.rasterTime / 1e6;
+    }
+
+    @Override
+    public double getLastExportTime() {
+        return this.last.exportTime / 1e6;
+    }
+
+    @Override
+    public long getLastFacesSubmitted() {
+        return this.last.facesSubmitted;
+    }
+
+    @Override
+    public long getLastFacesFrustumCulled() {
+        return this.last.facesFrustumCulled;
+    }
+
+    @Override
+    public long getLastFacesBackFaceCulled() {
+        return this.last.facesBackFaceCulled;
+    }
+
+    @Override
+    public long getLastTrianglesRasterized() {
+        return this.last.trianglesRasterized;
+    }
+
+    @Override
+    public long getLastTrianglesCulled() {
+        return this.last.trianglesCulled;
+    }
+
+    @Override
+    public long getLastTrianglesOccluded() {
+        return this.last.trianglesOccluded;
+    }
+
+    @Override
+    public long getLastPixelsTested() {
+        return this.last.pixelsTested;
+    }
+
+    @Override
+    public long getLastPixelsWritten() {
+        return this.last.pixelsWritten;
+    }
+}
@@ -0,0 +1,37 @@
+package render;
+
+/**
+ * The management interface of a RenderMonitor: statistics of the last frame and totals of all
+ * frames of a scene. Times are given in milliseconds.
+ */
+public interface RenderMonitorMBean {
+    long getFrames();
+
+    double getAverageFrameTime();
+
+    double getLastFrameTime();
+
+    double getLastClearTime();
+
+    double getLastTransformTime();
+
+    double getLastRasterTime();
+
+    double getLastExportTime();
+
+    long getLastFacesSubmitted();
+
+    long getLastFacesFrustumCulled();
+
+    long getLastFacesBackFaceCulled();
+
+    long getLastTrianglesRasterized();
+
+    long getLastTrianglesCulled();
+
+    long getLastTrianglesOccluded();
+
+    long getLastPixelsTested();
+
+    long getLastPixelsWritten();
+}
@@ -0,0 +1,179 @@
+package render;
+
+/**
+ * Statistics of one frame, collected by the scene while rendering.
+ * A frame starts with the call to Scene.render() and also includes everything drawn onto the
+ * scene afterwards (e.g. lines) until the next call to render().
+ *
+ * The vertices of a submitted mesh are projected once each, however many faces share them.
+ * The faces of all meshes are counted as follows: a face is either culled by the bounding volume
+ * hierarchy of its mesh (frustum culled), or it is submitted. Submitted faces facing away from the
+ * camera are back-face culled, the others are split into triangles. A triangle is either culled
+ * (it is outside of the view frustum, degenerate or too far off the screen) or it is set up for
+ * rasterization. Triangles crossing the near plane or leaving the guard band are clipped first and
+ * each triangle of the clipped polygon counts on its own. Triangles which are rejected as a whole by the hierarchical
+ * depth buffer are occluded.
+ * The lights are only evaluated where they may reach (see LightGrid), the evaluations are counted.
+ * The time to render outdated shadow maps is part of the transform time.
+ * A frame which did not change is skipped, a frame in which only the lights changed is reshaded: nothing is
+ * projected, submitted or rasterized, the triangles of the last frame and then the pixels are shaded again (and
+ * counted as written); its time is the shade time.
+ * The pixels covered by the rasterized triangles are tested against the depth buffer and the ones
+ * passing the test are written. With deferred shading, the lights are evaluated per pixel in a second pass
+ * over the visible pixels, which are counted as shaded; its time is the shade time.
+ *
+ * All times are measured in nanoseconds.
+ */
+public class RenderStatistics {
+    boolean skipped;
+    boolean reshaded;
+    long verticesProjected;
+    long facesSubmitted;
+    long facesFrustumCulled;
+    long facesBackFaceCulled;
+    long trianglesCulled;
+    long trianglesClipped;
+    long trianglesRasterized;
+    long trianglesOccluded;
+    long lightsEvaluated;
+    long shadowMapsRendered;
+    long pixelsTested;
+    long pixelsWritten;
+    long pixelsShaded;
+    long clearTime;
+    long transformTime;
+    long rasterTime;
+    long shadeTime;
+    volatile long exportTime;
+
+    /**
+     * @return whether nothing changed since the last frame, so it was kept as it is
+     */
+    public boolean isSkipped() {
+        return this.skipped;
+    }
+
+    /**
+     * @return whether only the lights changed since the last frame, so it was shaded again without rasterizing it
+     */
+    public boolean isReshaded() {
+        return this.reshaded;
+    }
+
+    /**
+     * @return the number of vertices transformed to screen coordinates
+     */
+    public long getVerticesProjected() {
+        return this.verticesProjected;
+    }
+
+    public long getFacesSubmitted() {
+        return this.facesSubmitted;
+    }
+
+    public long getFacesFrustumCulled() {
+        return this.facesFrustumCulled;
+    }
+
+    public long getFacesBackFaceCulled() {
+        return this.facesBackFaceCulled;
+    }
+
+    public long getTrianglesCulled() {
+        return this.trianglesCulled;
+    }
+
+    /**
+     * @return the number of triangles clipped against the near plane or the guard band
+     */
+    public long getTrianglesClipped() {
+        return this.trianglesClipped;
+    }
+
+    public long getTrianglesRasterized() {
+        return this.trianglesRasterized;
+    }
+
+    public long getTrianglesOccluded() {
+        return this.trianglesOccluded;
+    }
+
+    /**
+     * @return the number of times a light was evaluated for a face (a vertex with smooth shading, a pixel with
+     *         deferred shading)
+     */
+    public long getLightsEvaluated() {
+        return this.lightsEvaluated;
+    }
+
+    /**
+     * @return the number of shadow maps which were outdated and rendered again
+     */
+    public long getShadowMapsRendered() {
+        return this.shadowMapsRendered;
+    }
+
+    public long getPixelsTested() {
+        return this.pixelsTested;
+    }
+
+    public long getPixelsWritten() {
+        return this.pixelsWritten;
+    }
+
+    /**
+     * @return the number of pixels shaded by the second pass of deferred shading
+     */
+    public long getPixelsShaded() {
+        return this.pixelsShaded;
+    }
+
+    /**
+     * @return the time spent clearing the buffers
+     */
+    public long getClearTime() {
+        return this.clearTime;
+    }
+
+    /**
+     * @return the time spent culling, shading and projecting faces and setting up triangles
+     */
+    public long getTransformTime() {
+        return this.transformTime;
+    }
+
+    /**
+     * @return the time spent rasterizing triangles
+     */
+    public long getRasterTime() {
+        return this.rasterTime;
+    }
+
+    /**
+     * @return the time spent shading the pixels with deferred shading
+     */
+    public long getShadeTime() {
+        return this.shadeTime;
+    }
+
+    /**
+     * Returns the time spent copying the frame to images (toBufferedImage). Since a frame is exported
+     * after it was rendered, this time is not yet known when listeners are notified about the frame.
+     * @return the time spent exporting the frame
+     */
+    public long getExportTime() {
+        return this.exportTime;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("frame: %s; vertices: %d projected; faces: %d submitted, %d frustum culled, %d back-face culled; "
+                        + "triangles: %d rasterized, %d culled, %d clipped, %d occluded; lights: %d evaluated, %d shadow maps rendered; pixels: %d tested, %d written, %d shaded; "
+                        + "time: clear %.3fms, transform %.3fms, raster %.3fms, shade %.3fms, export %.3fms",
+                this.skipped ? "skipped" : this.reshaded ? "reshaded" : "rendered", this.verticesProjected,
+                this.facesSubmitted, this.facesFrustumCulled, this.facesBackFaceCulled,
+                this.trianglesRasterized, this.trianglesCulled, this.trianglesClipped, this.trianglesOccluded,
+                this.lightsEvaluated, this.shadowMapsRendered, this.pixelsTested, this.pixelsWritten, this.pixelsShaded,
+                this.clearTime / 1e6, this.transformTime / 1e6, this.rasterTime / 1e6, this.shadeTime / 1e6, this.exportTime / 1e6);
+    }
+}
@@ -1,29 +1,109 @@
 package render;
 
 import linalg.EuclideanVector;
+import linalg.Matrix4;
+import linalg.Vector3;
+import mesh.BoundingVolumeHierarchy;
 import mesh.Mesh;
 import mesh.Vertex;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 
 /**
  * A class to model a Scene for rendering.
  * A scene has a width/height. These are the width/height of the resulting
  * image.
- * The pixel-information (color) is stored in the 2-dim array frameBuffer.
- * The depth-information for each pixel is stored in the depthBuffer.
+ * The pixel-information (color) is stored in the flat, row-major array frameBuffer,
+ * i.e. the pixel (x, y) is found at index y * width + x.
+ * The depth-information for each pixel is stored in the same layout in the depthBuffer.
  */
 public class Scene {
-    private final int width;
-    private final int height;
+    private int width;
+    private int height;
     private final int backgroundColor;
-    private int[][] frameBuffer;
-    private double[][] depthBuffer;
+    private int[] frameBuffer;
+    private DepthBuffer depthBuffer;
+    // the triangle drawn at each pixel, to shade the frame again when only the lights changed
+    private final GBuffer gBuffer;
+    // what the last frame was rendered from
+    private final FrameState frameState = new FrameState();
+    private BufferedImage frameImage;
     private Camera camera;
     private ArrayList<Mesh> meshes;
     private ArrayList<Light> lights;
+    // the lights sorted by the region they reach, rebuilt for every frame
+    private final LightGrid lightGrid = new LightGrid();
+    // scratch vectors for the screen coordinates of the triangle currently rasterized
+    private final Vector3 aScreen = new Vector3();
+    private final Vector3 bScreen = new Vector3();
+    private final Vector3 cScreen = new Vector3();
+    // the screen coordinates (x, y, depth) of the vertices of the mesh currently submitted
+    private double[] projectedVertices = new double[3 * 256];
+    // the outcodes of these vertices (see Clipper)
+    private byte[] outcodes = new byte[256];
+    // the light intensities of these vertices for smooth shading
+    private double[] vertexIntensities = new double[256];
+    private boolean smoothShading;
+    private boolean deferredShading;
+    // the normals of the corners of the triangle currently submitted and of its clipped polygon (deferred shading)
+    private final double[] cornerNormals = new double[9];
+    private double[] polygonNormals = new double[3 * 12];
+    // the barycentric coordinates (beta, gamma) of the corners of the clipped polygon in the submitted triangle
+    private double[] polygonWeights = new double[2 * 12];
+    // the face and the corner of the face the submitted triangle is split off at (see TriangleBuffer.setSource)
+    private int sourceFace;
+    private int sourceCorner;
+    // the triangles of mesh i of the last frame are triangles meshTriangles[i], ..., meshTriangles[i + 1] - 1
+    private int[] meshTriangles = new int[9];
+    private final Clipper clipper;
+    // the scissor rectangle in screen coordinates (bounds inclusive), only pixels inside of it are drawn
+    private int scissorMinX;
+    private int scissorMinY;
+    private int scissorMaxX;
+    private int scissorMaxY;
+    // scratch vectors for the shading of the face currently rendered
+    private final Vector3 normal = new Vector3();
+    private final Vector3 midpoint = new Vector3();
+    // projected triangles waiting for rasterization and their screen tiles
+    private final TriangleBuffer triangles = new TriangleBuffer();
+    // buffer for single triangles drawn with rasterizeTriangle
+    private final TriangleBuffer single = new TriangleBuffer();
+    // coarse depth bounds for early rejection of occluded triangles
+    private final HierarchicalDepth hierarchicalDepth;
+    // the relative margin by which the depth range of a triangle is widened for the comparison with these bounds,
+    // to be safe against rounding of the interpolation and, with a float depth buffer, of the stored values
+    // (which are rounded by up to 6e-8 relative, see setFloatDepth)
+    private static final double DEPTH_EPSILON = 1e-9;
+    private static final double FLOAT_DEPTH_EPSILON = 1e-6;
+    // the colors of the smoothly shaded pixels for the intensities 0, 1/255, ..., 1, like the faces with flat shading
+    private static final int[] SHADES = new int[256];
+
+    static {
+        for(int k = 0; k < SHADES.length; k++) {
+            SHADES[k] = Color.fromRGB((byte) k, (byte) k, (byte) k) + Color.fromRGB((byte) 30, (byte) 30, (byte) 30);
+        }
+    }
+    // the statistics of the current frame and the pixels tested/written by the serial raster path
+    private RenderStatistics statistics = new RenderStatistics();
+    private final long[] pixelCounts = new long[2];
+    // the edge functions for the serial raster path, every tile task has its own
+    private final EdgeFunctions edges = new EdgeFunctions();
+    private final ArrayList<RenderListener> listeners = new ArrayList<>();
+    // scratch arrays for the frustum culling with bounding volume hierarchies
+    private int[] visibleFaces = new int[256];
+    private int[] nodeStack = new int[64];
+    private final TileBins bins;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private ForkJoinPool pool;
 
     /*@
       @ requires width > 0 && height > 0;
@@ -38,8 +118,13 @@ public class Scene {
         this.width = width;
         this.height = height;
         this.backgroundColor = Color.fromRGB((byte) 61, (byte) 61, (byte) 61);
-        this.frameBuffer = new int[width][height];
-        this.depthBuffer = new double[width][height];
+        this.frameBuffer = new int[width * height];
+        this.depthBuffer = new DepthBuffer(width * height, false);
+        this.gBuffer = new GBuffer(width * height);
+        this.bins = new TileBins(width, height);
+        this.hierarchicalDepth = new HierarchicalDepth(width, height);
+        this.clipper = new Clipper(width, height);
+        this.resetScissor();
         this.camera = new Camera(new EuclideanVector(1, 3.7, 2.7), new EuclideanVector(0,0,0.5),
                 new EuclideanVector(0, 0, -1), this);
         this.meshes = new ArrayList<>();
@@ -70,6 +155,42 @@ public class Scene {
         return this.height;
     }
 
+    /*@
+      @ requires width > 0 && height > 0;
+      @ ensures this.width == width && this.height == height;
+      @*/
+    /**
+     * Changes the size of the scene, e.g. to render a thumbnail and the full image of the same scene.
+     * The buffers only grow: they are reused as long as width * height fits into them, so switching
+     * between resolutions does not allocate. The zoom of the camera is adjusted to the new size, and the
+     * frame is cleared and the scissor rectangle is reset. Images from getFrameImage() of the old size
+     * are no longer updated.
+     * @param width the new width of the scene
+     * @param height the new height of the scene
+     */
+    public void setSize(int width, int height) {
+        if(width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("The size of the scene has to be positive!");
+        }
+        if(width == this.width && height == this.height) {
+            return;
+        }
+        this.width = width;
+        this.height = height;
+        if(width * height > this.frameBuffer.length) {
+            this.frameBuffer = new int[width * height];
+        }
+        this.depthBuffer.resize(width * height);
+        this.gBuffer.resize(width * height);
+        this.bins.resize(width, height);
+        this.hierarchicalDepth.resize(width, height);
+        this.frameImage = null;
+        this.resetScissor();
+        this.camera.update();
+        this.frameState.invalidate();
+        this.resetBuffers();
+    }
+
     /*@
       @ ensures \result == this.camera;
       @*/
@@ -81,26 +202,107 @@ public class Scene {
         return this.camera;
     }
 
+    /**
+     * Copies the frameBuffer (row by row) to the given array.
+     * @param dest the array to copy to, of length at least width * height
+     */
+    void copyFrameBuffer(int[] dest) {
+        System.arraycopy(this.frameBuffer, 0, dest, 0, this.width * this.height);
+    }
+
     /*@
-      @ ensures \forall 0 <= i < this.width, 0 <= j < this.height : result.getRBG(i, j) == this.frameBuffer[i][j];
+      @ ensures \forall 0 <= i < this.width, 0 <= j < this.height : result.getRBG(i, j) == this.frameBuffer[j * width + i];
       @*/
     /**
-     * Method to take the frameBuffer and write its content pixel by pixel to a BufferedImage.
+     * Method to copy the frameBuffer to a new BufferedImage.
+     * Since both share the same layout, the pixels are copied in bulk.
+     * The image is independent of the scene, i.e. it does not change with the next render.
      * @return a BufferedImage compiled from the frameBuffer
      */
     public BufferedImage toBufferedImage() {
+        long start = System.nanoTime();
         BufferedImage image = new BufferedImage(this.width, this.height, BufferedImage.TYPE_INT_RGB);
-        for(int x0 = 0; x0 < this.width; x0++) {
-            for(int y0 = 0; y0 < this.height; y0++) {
-                image.setRGB(x0, y0, this.frameBuffer[x0][y0]);
-            }
-        }
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        System.arraycopy(this.frameBuffer, 0, pixels, 0, pixels.length);
+        this.statistics.exportTime += System.nanoTime() - start;
         return image;
     }
 
+    /**
+     * Returns a BufferedImage which uses the frameBuffer itself as its DataBufferInt, so no
+     * pixels are copied at all. The image reflects every later change to the frame buffer,
+     * e.g. by the next call to render(). Use toBufferedImage() to get a snapshot instead.
+     * @return a BufferedImage backed by the frameBuffer
+     */
+    public BufferedImage getFrameImage() {
+        if(this.frameImage == null) {
+            DirectColorModel model = new DirectColorModel(24, 0xff0000, 0x00ff00, 0x0000ff);
+            WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(this.frameBuffer, this.width * this.height),
+                    this.width, this.height, this.width, model.getMasks(), null);
+            this.frameImage = new BufferedImage(model, raster, false, null);
+        }
+        return this.frameImage;
+    }
+
+    /**
+     * Chooses the precision of the depth buffer. Storing the depth as float halves the memory of
+     * the depth buffer, but depth values closer than float precision may no longer be told apart.
+     * The depth buffer is reallocated and cleared, so this should be called before rendering.
+     * @param floatPrecision whether to store the depth as float (true) or double (false)
+     */
+    public void setFloatDepth(boolean floatPrecision) {
+        if(floatPrecision != this.depthBuffer.isFloatPrecision()) {
+            this.depthBuffer = new DepthBuffer(this.width * this.height, floatPrecision);
+            this.depthBuffer.clear();
+            this.frameState.invalidate();
+        }
+    }
+
+    /**
+     * Chooses between flat shading (default), where the lights are evaluated once per face at its midpoint,
+     * and smooth (Gouraud) shading, where they are evaluated once per vertex with the vertex normals of the
+     * mesh and the intensities are interpolated over the faces.
+     * @param smooth whether to use smooth shading
+     */
+    public void setSmoothShading(boolean smooth) {
+        this.smoothShading = smooth;
+    }
+
+    /**
+     * @return whether smooth shading is used (see setSmoothShading)
+     */
+    public boolean isSmoothShading() {
+        return this.smoothShading;
+    }
+
+    /**
+     * Chooses between forward shading (default), where the lights are evaluated for the faces (or vertices)
+     * before they are rasterized, and deferred shading. With deferred shading, rendering takes two passes:
+     * the first rasterizes the faces without any lighting and only writes the depth, the surface normal and
+     * the triangle of every pixel (see GBuffer). The second evaluates the lights once for every visible pixel,
+     * at its position and with its normal, in parallel over the rows. So faces which end up hidden are never
+     * shaded and the cost of lighting depends on the resolution instead of the number of faces. The normals
+     * are the surface normals of the faces, or the vertex normals interpolated over them with smooth shading.
+     * If only the lights change between frames, only the second pass runs again.
+     * @param deferred whether to use deferred shading
+     */
+    public void setDeferredShading(boolean deferred) {
+        if(deferred) {
+            this.gBuffer.allocateNormals();
+        }
+        this.deferredShading = deferred;
+    }
+
+    /**
+     * @return whether deferred shading is used (see setDeferredShading)
+     */
+    public boolean isDeferredShading() {
+        return this.deferredShading;
+    }
+
     /*@
       @ requires x >= 0 && x < this.width && y >= 0 && y < this.height;
-      @ ensures \result this.frameBuffer[x][y] == color;
+      @ ensures \result this.frameBuffer[y * width + x] == color;
       @*/
     /**
      * Method to set the pixel at (x,y) to the given color in the frame buffer.
@@ -114,7 +316,7 @@ public class Scene {
         if(x < 0 || x >= this.width || y < 0 || y >= this.height) {
             return;
         }
-        this.frameBuffer[x][y] = color;
+        this.frameBuffer[y * this.width + x] = color;
     }
 
     /**
@@ -143,6 +345,7 @@ public class Scene {
      * @param color the color of the line
      */
     public void rasterizeLine(Vertex a, Vertex b, int color) {
+        this.frameState.invalidate();
         // We first take the screen coordinates of the vertices
         EuclideanVector aScreen = this.camera.project(a);
         if(aScreen == null) {
@@ -168,11 +371,17 @@ public class Scene {
             if (bScreen.x() - aScreen.x() == 0) t = (y0 - aScreen.y()) / (bScreen.y() - aScreen.y());
             else t = (x0 - aScreen.x()) / (bScreen.x() - aScreen.x());
             double depth = aScreen.z() * (1 - t) + bScreen.z() * t;
-            if(x0 >= -width/2 && y0 >= -height/2 && x0 < width/2 && y0 < height/2) {
-                if (depth < this.depthBuffer[x0 + width / 2][y0 + height / 2]) {
-                    this.setPixel(x0 + width / 2, y0 + height / 2, color);
-                    // we now update the depth buffer
-                    depthBuffer[x0 + width / 2][y0 + height / 2] = depth;
+            if(x0 >= this.scissorMinX && y0 >= this.scissorMinY && x0 <= this.scissorMaxX && y0 <= this.scissorMaxY) {
+                int i = (y0 + height / 2) * width + x0 + width / 2;
+                this.statistics.pixelsTested++;
+                if (depth < this.depthBuffer.get(i)) {
+                    this.statistics.pixelsWritten++;
+                    this.frameBuffer[i] = color;
+                    // we now update the depth buffer and its coarse bounds
+                    this.depthBuffer.set(i, depth);
+                    this.gBuffer.getTriangles()[i] = -1;
+                    this.hierarchicalDepth.update(x0 + width / 2, y0 + height / 2, x0 + width / 2, y0 + height / 2,
+                            1, depth, this.depthBuffer);
                 }
             }
             if (x0==x1 && y0==y1) break;
@@ -182,49 +391,322 @@ public class Scene {
         }
     }
 
-    private EuclideanVector[] getBoundingBox(EuclideanVector a, EuclideanVector b, EuclideanVector c) {
-        EuclideanVector[] box = new EuclideanVector[2];
-        box[0] = new EuclideanVector(Math.min(a.x(), Math.min(b.x(), c.x())), Math.min(a.y(), Math.min(b.y(), c.y())));
-        box[1] = new EuclideanVector(Math.max(a.x(), Math.max(b.x(), c.x())), Math.max(a.y(), Math.max(b.y(), c.y())));
-        return box;
+    /**
+     * Method to draw a filled triangle between the three given vertices.
+     * The triangle is projected and set up (see TriangleBuffer), then we step its edge functions
+     * over the pixels of its bounding box and interpolate the depth perspective-correctly to
+     * update the depth buffer.
+     * @param a the first vertex of the triangle
+     * @param b the second vertex of the triangle
+     * @param c the third vertex of the triangle
+     * @param color the color of the triangle
+     */
+    public void rasterizeTriangle(Vertex a, Vertex b, Vertex c, int color) {
+        double[] pa = a.getCoordinates(), pb = b.getCoordinates(), pc = c.getCoordinates();
+        this.rasterizeTriangle(pa[0], pa[1], pa[2], pb[0], pb[1], pb[2], pc[0], pc[1], pc[2], color);
     }
 
-    private EuclideanVector getBaryCentric(EuclideanVector[] verts, int x, int y) {
-        EuclideanVector vs1 = new EuclideanVector(verts[1].x() - verts[0].x(), verts[1].y() - verts[0].y());
-        EuclideanVector vs2 = new EuclideanVector(verts[2].x() - verts[0].x(), verts[2].y() - verts[0].y());
-        EuclideanVector p = new EuclideanVector(x - verts[0].x(), y - verts[0].y());
-        double a = vs2.cross(vs1).x();
-        double beta = vs2.cross(p).x() / a;
-        double gamma = p.cross(vs1).x() / a;
-        return new EuclideanVector(1 - beta - gamma, beta, gamma);
+    /**
+     * Primitive version of rasterizeTriangle(Vertex, Vertex, Vertex, int) which takes the
+     * coordinates of the three vertices directly, e.g. from the packed arrays of a mesh.
+     */
+    public void rasterizeTriangle(double ax0, double ay0, double az0, double bx0, double by0, double bz0,
+                                  double cx0, double cy0, double cz0, int color) {
+        this.frameState.invalidate();
+        Matrix4 view = this.camera.getViewMatrix();
+        view.transformPoint(ax0, ay0, az0, this.aScreen);
+        view.transformPoint(bx0, by0, bz0, this.bScreen);
+        view.transformPoint(cx0, cy0, cz0, this.cScreen);
+        this.single.clear();
+        this.submitTriangle(this.single, this.aScreen.x(), this.aScreen.y(), this.aScreen.z(), 0,
+                this.bScreen.x(), this.bScreen.y(), this.bScreen.z(), 0, this.cScreen.x(), this.cScreen.y(), this.cScreen.z(), 0,
+                this.clipper.outcode(this.aScreen.x(), this.aScreen.y(), this.aScreen.z()),
+                this.clipper.outcode(this.bScreen.x(), this.bScreen.y(), this.bScreen.z()),
+                this.clipper.outcode(this.cScreen.x(), this.cScreen.y(), this.cScreen.z()), color, false);
+        for(int t = 0; t < this.single.size(); t++) {
+            if(this.rasterizeTriangle(this.single, t, this.scissorMinX, this.scissorMinY, this.scissorMaxX, this.scissorMaxY,
+                    this.edges, this.pixelCounts)) {
+                this.statistics.trianglesOccluded++;
+            }
+        }
+        this.addPixelCounts(this.pixelCounts);
     }
 
-    public void rasterizeTriangle(Vertex a, Vertex b, Vertex c, int color) {
-        EuclideanVector aScreen = this.camera.project(a);
-        EuclideanVector bScreen = this.camera.project(b);
-        EuclideanVector cScreen = this.camera.project(c);
-        EuclideanVector[] boundingBox = this.getBoundingBox(aScreen.getScaled(1/aScreen.z()),
-                bScreen.getScaled(1/bScreen.z()), cScreen.getScaled(1/cScreen.z()));
-        EuclideanVector[] pts = {aScreen.getScaled(1/aScreen.z()),
-                bScreen.getScaled(1/bScreen.z()), cScreen.getScaled(1/cScreen.z())};
-        for(int x = (int) boundingBox[0].x(); x <= boundingBox[1].x(); x++)
-            for (int y = (int) boundingBox[0].y(); y <= boundingBox[1].y(); y++) {
-                EuclideanVector baryCentric = getBaryCentric(pts, x, y);
-                boolean inTriangle = baryCentric.x() > 0 && baryCentric.y() > 0 && baryCentric.z() > 0 &&
-                        baryCentric.x() < 1 && baryCentric.y() < 1 && baryCentric.z() < 1;
-                if(!inTriangle || x < -this.width/2 || x >= this.width/2 || y < -this.height/2 || y >= this.height/2) {
-                    continue;
-                }
+    /**
+     * Clipping stage: appends the projected triangle (a, b, c) with the given outcodes to the buffer.
+     * The triangle is rejected if it lies outside of the near plane or a side of the scissor rectangle,
+     * accepted as it is if it lies in front of the near plane and inside of the guard band and otherwise
+     * clipped (see Clipper). The clipped polygon is split into a fan of triangles around its first corner.
+     * With deferred shading, triangles for the triangle buffer of the frame carry the normals in cornerNormals
+     * instead of a color or intensities.
+     * @param ai the light intensity of the corner a (bi, ci for b, c respectively), only used if smooth
+     * @param color the color of the triangle, only used if not smooth
+     * @param smooth whether the intensities are interpolated over the triangle (smooth shading)
+     */
+    private void submitTriangle(TriangleBuffer buffer, double ax, double ay, double az, double ai,
+                                double bx, double by, double bz, double bi, double cx, double cy, double cz, double ci,
+                                int codeA, int codeB, int codeC, int color, boolean smooth) {
+        if((codeA & codeB & codeC & Clipper.REJECTED) != 0) {
+            this.statistics.trianglesCulled++;
+            return;
+        }
+        if(((codeA | codeB | codeC) & Clipper.CLIPPED) == 0) {
+            if(buffer == this.triangles && this.deferredShading) {
+                this.addTriangle(buffer, ax, ay, az, bx, by, bz, cx, cy, cz, smooth, this.cornerNormals, 0, 3, 6);
+            } else {
+                this.addTriangle(buffer, ax, ay, az, ai, bx, by, bz, bi, cx, cy, cz, ci, color, smooth, -1, -1, -1);
+            }
+            return;
+        }
+        this.statistics.trianglesClipped++;
+        int n = this.clipper.clip(ax, ay, az, ai, bx, by, bz, bi, cx, cy, cz, ci, codeA | codeB | codeC);
+        double[] p = this.clipper.getPolygon();
+        boolean deferred = buffer == this.triangles && this.deferredShading;
+        // the intensities of smooth triangles are interpolated like in reshade, instead of taking the ones of the clipper
+        boolean weighted = buffer == this.triangles && smooth;
+        if(deferred || weighted) {
+            this.interpolateWeights(p, n, ax, ay, az, bx, by, bz, cx, cy, cz);
+        }
+        if(deferred) {
+            this.interpolateNormals(n);
+        } else if(weighted) {
+            double[] w = this.polygonWeights;
+            for(int k = 0; k < n; k++) {
+                p[4*k + 3] = interpolate(ai, bi, ci, w[2*k], w[2*k + 1]);
+            }
+        }
+        for(int k = 2; k < n; k++) {
+            int i = 4 * (k - 1), j = 4 * k;
+            if(deferred) {
+                this.addTriangle(buffer, p[0], p[1], p[2], p[i], p[i + 1], p[i + 2], p[j], p[j + 1], p[j + 2],
+                        smooth, this.polygonNormals, 0, 3 * (k - 1), 3 * k);
+            } else if(weighted) {
+                this.addTriangle(buffer, p[0], p[1], p[2], p[3], p[i], p[i + 1], p[i + 2], p[i + 3],
+                        p[j], p[j + 1], p[j + 2], p[j + 3], color, smooth, 0, 2 * (k - 1), 2 * k);
+            } else {
+                this.addTriangle(buffer, p[0], p[1], p[2], p[3], p[i], p[i + 1], p[i + 2], p[i + 3],
+                        p[j], p[j + 1], p[j + 2], p[j + 3], color, smooth, -1, -1, -1);
+            }
+        }
+    }
+
+    /**
+     * @return the value at the barycentric coordinates (beta, gamma) of a triangle with the values a, b, c at
+     *         its corners
+     */
+    private static double interpolate(double a, double b, double c, double beta, double gamma) {
+        return a + beta * (b - a) + gamma * (c - a);
+    }
+
+    /**
+     * Calculates the normals of the n corners of the clipped polygon from cornerNormals, the normals of the
+     * corners of the triangle, and the weights of the corners (see interpolateWeights) and writes them to
+     * polygonNormals.
+     */
+    private void interpolateNormals(int n) {
+        if(3 * n > this.polygonNormals.length) {
+            this.polygonNormals = new double[3 * n];
+        }
+        double[] normals = this.cornerNormals, w = this.polygonWeights;
+        for(int k = 0; k < n; k++) {
+            for(int c = 0; c < 3; c++) {
+                this.polygonNormals[3*k + c] = interpolate(normals[c], normals[3 + c], normals[6 + c], w[2*k], w[2*k + 1]);
+            }
+        }
+    }
+
+    /**
+     * Calculates the barycentric coordinates (beta, gamma) with respect to the triangle (a, b, c) of the n corners
+     * of its clipped polygon (packed as by Clipper) and writes them to polygonWeights. The projection before the
+     * perspective division is affine, so a corner has the same barycentric coordinates with respect to (a, b, c)
+     * in these coordinates as on the face itself.
+     */
+    private void interpolateWeights(double[] polygon, int n, double ax, double ay, double az,
+                                    double bx, double by, double bz, double cx, double cy, double cz) {
+        if(2 * n > this.polygonWeights.length) {
+            this.polygonWeights = new double[2 * n];
+        }
+        // the normal of the triangle (a, b, c) in these coordinates
+        double e1x = bx - ax, e1y = by - ay, e1z = bz - az, e2x = cx - ax, e2y = cy - ay, e2z = cz - az;
+        double nx = e1y * e2z - e1z * e2y, ny = e1z * e2x - e1x * e2z, nz = e1x * e2y - e1y * e2x;
+        double squaredArea = nx * nx + ny * ny + nz * nz;
+        for(int k = 0; k < n; k++) {
+            double dx = polygon[4*k] - ax, dy = polygon[4*k + 1] - ay, dz = polygon[4*k + 2] - az;
+            double beta = 0, gamma = 0;
+            if(squaredArea > 0) {
+                // beta = ((d x e2) . n) / |n|^2, gamma = ((e1 x d) . n) / |n|^2
+                beta = ((dy * e2z - dz * e2y) * nx + (dz * e2x - dx * e2z) * ny + (dx * e2y - dy * e2x) * nz) / squaredArea;
+                gamma = ((e1y * dz - e1z * dy) * nx + (e1z * dx - e1x * dz) * ny + (e1x * dy - e1y * dx) * nz) / squaredArea;
+            }
+            this.polygonWeights[2*k] = beta;
+            this.polygonWeights[2*k + 1] = gamma;
+        }
+    }
 
-                EuclideanVector clipped = new EuclideanVector(baryCentric.x()/aScreen.z(),
-                        baryCentric.y()/bScreen.z(), baryCentric.z()/cScreen.z());
-                double depth = 1/clipped.dot(new EuclideanVector(1,1,1));
+    /**
+     * Adds a triangle for deferred shading, with the normals of its corners at the given offsets into normals.
+     */
+    private void addTriangle(TriangleBuffer buffer, double ax, double ay, double az, double bx, double by, double bz,
+                             double cx, double cy, double cz, boolean smooth, double[] normals, int na, int nb, int nc) {
+        if(buffer.addDeferred(ax, ay, az, bx, by, bz, cx, cy, cz, smooth, normals, na, nb, nc)) {
+            this.statistics.trianglesRasterized++;
+        } else {
+            this.statistics.trianglesCulled++;
+        }
+    }
 
-                if(0 < depth && depth <= this.depthBuffer[x + width / 2][y + height / 2]) {
-                    this.setPixel(x + this.width / 2, y + this.height / 2, color + Color.fromRGB((byte) 30, (byte) 30, (byte) 30));
-                    this.depthBuffer[x + width / 2][y + height / 2] = depth;
+    /**
+     * Adds a shaded triangle. Triangles of the frame keep the face they were submitted for as their source and,
+     * if the offsets are not negative, the weights of their corners at these offsets into polygonWeights.
+     */
+    private void addTriangle(TriangleBuffer buffer, double ax, double ay, double az, double ai,
+                             double bx, double by, double bz, double bi, double cx, double cy, double cz, double ci,
+                             int color, boolean smooth, int wa, int wb, int wc) {
+        boolean added = smooth ? buffer.addSmooth(ax, ay, az, bx, by, bz, cx, cy, cz, ai, bi, ci)
+                : buffer.add(ax, ay, az, bx, by, bz, cx, cy, cz, color);
+        if(added) {
+            this.statistics.trianglesRasterized++;
+            if(buffer == this.triangles && wa < 0) {
+                buffer.setSource(this.sourceFace, this.sourceCorner);
+            } else if(buffer == this.triangles) {
+                buffer.setSource(this.sourceFace, this.sourceCorner, this.polygonWeights, wa, wb, wc);
+            }
+        } else {
+            this.statistics.trianglesCulled++;
+        }
+    }
+
+    /**
+     * Rasterizes the triangle t of the given buffer, but only touches the pixels inside the given
+     * rectangle (in screen coordinates, bounds inclusive).
+     * We use the edge functions of the fixed-point corners (see EdgeFunctions): they are evaluated once at
+     * the first pixel and then stepped incrementally along rows and columns. A pixel is covered if it lies
+     * inside all three edges, where pixels exactly on an edge only count for top or left edges (top-left fill
+     * rule). Since the edge functions are exact integers, the result for a pixel does not depend on where
+     * the stepping started, i.e. rasterizing a triangle tile by tile gives the same result as a whole.
+     *
+     * Before any per-pixel work, the triangle is tested against the blocks of the hierarchical depth
+     * buffer covered by its bounding box: if it is behind all of them, it is rejected right away, if it
+     * is in front of all of them, the per-pixel depth test is skipped.
+     *
+     * The method only works on local variables, the given edge functions and the pixels of the rectangle,
+     * so disjoint rectangles may be rasterized concurrently (with edge functions of their own).
+     * @param edges the edge functions to set up the triangle in
+     * @param pixelCounts the number of pixels tested against and written to the depth buffer are added to
+     *                    the first and second entry
+     * @return true if the triangle overlaps the rectangle, but was rejected as occluded
+     */
+    private boolean rasterizeTriangle(TriangleBuffer buffer, int t, int rectMinX, int rectMinY, int rectMaxX, int rectMaxY,
+                                      EdgeFunctions edges, long[] pixelCounts) {
+        // the bounding box of the triangle, clipped to the rectangle
+        int minX = Math.max(buffer.getMinX(t), rectMinX), maxX = Math.min(buffer.getMaxX(t), rectMaxX);
+        int minY = Math.max(buffer.getMinY(t), rectMinY), maxY = Math.min(buffer.getMaxY(t), rectMaxY);
+        if(minX > maxX || minY > maxY) {
+            return false;
+        }
+        int offsetX = this.width / 2, offsetY = this.height / 2;
+        // the depth range of the triangle, widened slightly to be safe against rounding (see DEPTH_EPSILON)
+        double epsilon = this.depthBuffer.isFloatPrecision() ? FLOAT_DEPTH_EPSILON : DEPTH_EPSILON;
+        double nearest = buffer.getNearest(t) * (1 - epsilon);
+        double farthest = buffer.getFarthest(t) * (1 + epsilon);
+        boolean occluded = true, depthTest = nearest <= 0;
+        for(int blockY = (minY + offsetY) >> HierarchicalDepth.BLOCK_SHIFT;
+            blockY <= (maxY + offsetY) >> HierarchicalDepth.BLOCK_SHIFT; blockY++) {
+            for(int blockX = (minX + offsetX) >> HierarchicalDepth.BLOCK_SHIFT;
+                blockX <= (maxX + offsetX) >> HierarchicalDepth.BLOCK_SHIFT; blockX++) {
+                int block = this.hierarchicalDepth.getBlock(blockX << HierarchicalDepth.BLOCK_SHIFT,
+                        blockY << HierarchicalDepth.BLOCK_SHIFT);
+                occluded &= nearest > this.hierarchicalDepth.getMaxDepth(block);
+                depthTest |= farthest >= this.hierarchicalDepth.getMinDepth(block);
+            }
+        }
+        if(occluded) {
+            return true;
+        }
+
+        edges.setUp(buffer, t, minX, minY);
+        double area = edges.area, iz0 = edges.iz0, iz1 = edges.iz1, iz2 = edges.iz2;
+        int shade = buffer.getColors()[t] + Color.fromRGB((byte) 30, (byte) 30, (byte) 30);
+        // for smooth shading, intensity / depth is interpolated linearly like 1 / depth
+        boolean smooth = buffer.isSmooth(t);
+        double[] intensities = buffer.getIntensities();
+        double ii0 = iz0 * intensities[3 * t], ii1 = iz1 * intensities[3 * t + 1], ii2 = iz2 * intensities[3 * t + 2];
+        // for deferred shading, the normal is written instead of a color; interpolated ones are divided by depth
+        boolean deferred = buffer.isDeferred(t);
+        float[] gNormals = deferred ? this.gBuffer.getNormals() : null;
+        double n0x = 0, n0y = 0, n0z = 0, n1x = 0, n1y = 0, n1z = 0, n2x = 0, n2y = 0, n2z = 0;
+        if(deferred) {
+            double[] n = buffer.getNormals();
+            int c = 9 * t;
+            double s0 = smooth ? iz0 : 1, s1 = smooth ? iz1 : 0, s2 = smooth ? iz2 : 0;
+            n0x = s0 * n[c]; n0y = s0 * n[c + 1]; n0z = s0 * n[c + 2];
+            n1x = s1 * n[c + 3]; n1y = s1 * n[c + 4]; n1z = s1 * n[c + 5];
+            n2x = s2 * n[c + 6]; n2y = s2 * n[c + 7]; n2z = s2 * n[c + 8];
+        }
+        // single triangles drawn with rasterizeTriangle keep their color in a deferred frame
+        int id = buffer == this.single ? -1 : t;
+
+        long bias0 = edges.bias0, bias1 = edges.bias1, bias2 = edges.bias2;
+        long stepX0 = edges.stepX0, stepX1 = edges.stepX1, stepX2 = edges.stepX2;
+
+        int[] ids = this.gBuffer.getTriangles();
+        int tested = 0, written = 0;
+        double nearestWritten = Double.POSITIVE_INFINITY;
+        for(int y = minY; y <= maxY; y++) {
+            long w0 = edges.w0, w1 = edges.w1, w2 = edges.w2;
+            int row = (y + offsetY) * this.width + offsetX;
+            for (int x = minX; x <= maxX; x++) {
+                if((w0 | w1 | w2) >= 0) {
+                    tested++;
+                    // the barycentric coordinates are w_k / area; we interpolate 1/depth linearly
+                    double inverseDepth = edges.inverseDepth(w0, w1, w2);
+                    double depth = area / inverseDepth;
+                    if(!depthTest || (0 < depth && depth <= this.depthBuffer.get(row + x))) {
+                        if(deferred) {
+                            // the normal is only normalized when the pixel is shaded, so its length does not matter
+                            double b0 = smooth ? w0 - bias0 : 1, b1 = w1 - bias1, b2 = w2 - bias2;
+                            int k = 3 * (row + x);
+                            gNormals[k] = (float) (b0 * n0x + b1 * n1x + b2 * n2x);
+                            gNormals[k + 1] = (float) (b0 * n0y + b1 * n1y + b2 * n2y);
+                            gNormals[k + 2] = (float) (b0 * n0z + b1 * n1z + b2 * n2z);
+                        } else {
+                            if(smooth) {
+                                double intensity = ((w0 - bias0) * ii0 + (w1 - bias1) * ii1 + (w2 - bias2) * ii2) / inverseDepth;
+                                shade = SHADES[Math.min((int) (255 * intensity), 255)];
+                            }
+                            this.frameBuffer[row + x] = shade;
+                        }
+                        this.depthBuffer.set(row + x, depth);
+                        ids[row + x] = id;
+                        written++;
+                        nearestWritten = Math.min(nearestWritten, depth);
+                    }
                 }
+                w0 += stepX0;
+                w1 += stepX1;
+                w2 += stepX2;
             }
+            edges.nextRow();
+        }
+        if(written > 0) {
+            this.hierarchicalDepth.update(minX + offsetX, minY + offsetY, maxX + offsetX, maxY + offsetY,
+                    written, nearestWritten, this.depthBuffer);
+        }
+        pixelCounts[0] += tested;
+        pixelCounts[1] += written;
+        return false;
+    }
+
+    /**
+     * Adds the pixel counts (see rasterizeTriangle) to the statistics of the frame and resets them.
+     */
+    private void addPixelCounts(long[] pixelCounts) {
+        synchronized(this.pixelCounts) {
+            this.statistics.pixelsTested += pixelCounts[0];
+            this.statistics.pixelsWritten += pixelCounts[1];
+        }
+        pixelCounts[0] = 0;
+        pixelCounts[1] = 0;
     }
 
     public void rasterizeFace(int color, Vertex ... vertices) {
@@ -255,22 +737,684 @@ public class Scene {
         return this.lights;
     }
 
+    ArrayList<Mesh> getMeshes() {
+        return this.meshes;
+    }
+
     private void resetBuffers() {
-        for(int i = 0; i < this.width; i++)
-            for (int j = 0; j < this.height; j++) {
-                this.frameBuffer[i][j] = this.backgroundColor;
-                this.depthBuffer[i][j] = Double.POSITIVE_INFINITY;
+        if(this.isScissorFull()) {
+            Arrays.fill(this.frameBuffer, 0, this.width * this.height, this.backgroundColor);
+            this.depthBuffer.clear();
+            this.hierarchicalDepth.clear();
+            return;
+        }
+        // only the scissor rectangle is cleared, the rest of the last frame stays
+        int x0 = this.scissorMinX + this.width / 2, x1 = this.scissorMaxX + this.width / 2;
+        int y0 = this.scissorMinY + this.height / 2, y1 = this.scissorMaxY + this.height / 2;
+        for(int y = y0; y <= y1; y++) {
+            Arrays.fill(this.frameBuffer, y * this.width + x0, y * this.width + x1 + 1, this.backgroundColor);
+            this.depthBuffer.clear(y * this.width + x0, y * this.width + x1 + 1);
+        }
+        this.hierarchicalDepth.clear(x0, y0, x1, y1);
+    }
+
+    /**
+     * @return whether the scissor rectangle covers the whole screen
+     */
+    private boolean isScissorFull() {
+        return this.scissorMinX == -this.width / 2 && this.scissorMinY == -this.height / 2
+                && this.scissorMaxX == this.width / 2 - 1 && this.scissorMaxY == this.height / 2 - 1;
+    }
+
+    /*@
+      @ requires 0 <= x && 0 <= y && width > 0 && height > 0;
+      @ requires x + width <= this.width && y + height <= this.height;
+      @*/
+    /**
+     * Sets the scissor rectangle: from now on, rendering and drawing only touches the pixels inside of the
+     * given rectangle (in pixel coordinates of the image, i.e. (0, 0) is the top left corner). A call to
+     * render() only clears and redraws this part of the frame, the rest of the last frame stays as it is.
+     * Geometry outside of the rectangle is rejected before it is rasterized.
+     * @param x the left column of the rectangle
+     * @param y the top row of the rectangle
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     */
+    public void setScissor(int x, int y, int width, int height) {
+        // the last column (row) of a scene with odd width (height) is never drawn to
+        if(x < 0 || y < 0 || width <= 0 || height <= 0 || x + width > this.width / 2 * 2 || y + height > this.height / 2 * 2) {
+            throw new IllegalArgumentException("The scissor rectangle has to be a non-empty part of the scene!");
+        }
+        this.scissorMinX = x - this.width / 2;
+        this.scissorMinY = y - this.height / 2;
+        this.scissorMaxX = this.scissorMinX + width - 1;
+        this.scissorMaxY = this.scissorMinY + height - 1;
+        this.clipper.setScissor(this.scissorMinX, this.scissorMinY, this.scissorMaxX, this.scissorMaxY);
+    }
+
+    /**
+     * Resets the scissor rectangle to the whole scene.
+     */
+    public void resetScissor() {
+        this.setScissor(0, 0, this.width / 2 * 2, this.height / 2 * 2);
+    }
+
+    /*@
+      @ requires threads > 0;
+      @*/
+    /**
+     * Sets the number of threads used to rasterize the scene.
+     * With one thread, all triangles are rasterized one after another on the calling thread.
+     * Otherwise the triangles are sorted into screen tiles which are rasterized in parallel.
+     * Both ways produce exactly the same image.
+     * @param threads the number of threads to use
+     */
+    public void setThreadCount(int threads) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("The number of threads has to be positive!");
+        }
+        if(threads == this.threadCount) {
+            return;
+        }
+        this.threadCount = threads;
+        if(this.pool != null) {
+            this.pool.shutdown();
+            this.pool = null;
+        }
+    }
+
+    public int getThreadCount() {
+        return this.threadCount;
+    }
+
+    /**
+     * Returns the number of triangles since the last render() which were rejected by the
+     * hierarchical depth buffer, i.e. which were on screen but completely behind what was
+     * drawn before them.
+     * @return the number of rejected triangles
+     */
+    public int getRejectedTriangles() {
+        return (int) this.statistics.trianglesOccluded;
+    }
+
+    /**
+     * Returns the statistics of the current frame, i.e. of everything drawn since the last call to render().
+     * @return the statistics of the current frame
+     */
+    public RenderStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * Adds a listener which is notified at the end of every call to render().
+     * @param listener the listener to add
+     */
+    public void addRenderListener(RenderListener listener) {
+        this.listeners.add(listener);
+    }
+
+    public void removeRenderListener(RenderListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Method to render the (shaded) faces of the given mesh to the frame buffer.
+     * @param mesh the mesh to render
+     */
+    public void renderMesh(Mesh mesh) {
+        this.frameState.invalidate();
+        long start = System.nanoTime();
+        this.prepareLights();
+        this.triangles.clear();
+        this.submitMesh(mesh);
+        long submitted = System.nanoTime();
+        this.flush();
+        long rasterized = System.nanoTime();
+        if(this.deferredShading) {
+            this.shadePixels();
+        }
+        this.statistics.transformTime += submitted - start;
+        this.statistics.rasterTime += rasterized - submitted;
+        this.statistics.shadeTime += System.nanoTime() - rasterized;
+    }
+
+    /**
+     * Prepares the lights for evaluating them: the shadow maps which are outdated are rendered from the meshes
+     * of the scene and the lights are sorted into the light grid.
+     */
+    private void prepareLights() {
+        for(int l = 0; l < this.lights.size(); l++) {
+            if(this.lights.get(l).prepare(this.meshes)) {
+                this.statistics.shadowMapsRendered++;
             }
+        }
+        this.lightGrid.build(this.lights);
     }
 
     /**
-     * Method to render all meshes from the scene to the frame buffer
-     * For now, only wireframe rendering is possible
+     * Projects the (shaded) faces of the given mesh and appends them to the triangle buffer.
+     * If the mesh has a bounding volume hierarchy, we walk it and skip all subtrees outside of the
+     * view frustum of the camera. The remaining faces are submitted in their original order, so the
+     * result is the same as without culling.
+     * @param mesh the mesh to submit
      */
-    public void render() throws Exception {
-        this.resetBuffers();
-        for(Mesh mesh : this.meshes) {
-            mesh.render(this);
+    private void submitMesh(Mesh mesh) {
+        this.projectVertices(mesh);
+        BoundingVolumeHierarchy hierarchy = mesh.getBoundingVolumeHierarchy();
+        if(hierarchy == null) {
+            for(int f = 0; f < mesh.getFaceCount(); f++) {
+                this.submitFace(mesh, f);
+            }
+            return;
+        }
+        int visible = this.collectVisibleFaces(hierarchy);
+        this.statistics.facesFrustumCulled += mesh.getFaceCount() - visible;
+        Arrays.sort(this.visibleFaces, 0, visible);
+        for(int k = 0; k < visible; k++) {
+            this.submitFace(mesh, this.visibleFaces[k]);
+        }
+    }
+
+    /**
+     * Vertex stage: transforms all vertices of the mesh to screen coordinates in one pass.
+     * A vertex shared by several faces is projected only once per frame, the faces index into
+     * projectedVertices. The outcodes for the clipping stage are calculated along with it and, with
+     * smooth (forward) shading, the lighting of the vertices.
+     */
+    private void projectVertices(Mesh mesh) {
+        int count = mesh.getVertexCount();
+        if(3 * count > this.projectedVertices.length) {
+            this.projectedVertices = new double[Math.max(3 * count, 2 * this.projectedVertices.length)];
+        }
+        if(count > this.outcodes.length) {
+            this.outcodes = new byte[Math.max(count, 2 * this.outcodes.length)];
+        }
+        this.camera.projectVertices(mesh.getCoordinates(), count, this.projectedVertices);
+        this.statistics.verticesProjected += count;
+        this.clipper.outcodes(this.projectedVertices, count, this.outcodes);
+        if(count > this.vertexIntensities.length) {
+            this.vertexIntensities = new double[Math.max(count, 2 * this.vertexIntensities.length)];
+        }
+        if(this.smoothShading && !this.deferredShading) {
+            this.shadeVertices(mesh);
+        }
+    }
+
+    /**
+     * Evaluates the lights once for every vertex of the mesh (at its position with its vertex normal) and
+     * stores the intensities in vertexIntensities. They are clamped to [0, 1], so they can be interpolated.
+     */
+    private void shadeVertices(Mesh mesh) {
+        double[] c = mesh.getCoordinates();
+        double[] normals = mesh.getVertexNormals();
+        double[] intensities = this.vertexIntensities;
+        for(int v = 0; v < mesh.getVertexCount(); v++) {
+            this.midpoint.set(c[3*v], c[3*v + 1], c[3*v + 2]);
+            this.normal.set(normals[3*v], normals[3*v + 1], normals[3*v + 2]);
+            double intensity = this.lightGrid.intensityAt(this.midpoint, this.normal, this.statistics);
+            intensities[v] = Math.min(Math.max(intensity, 0), 1);
+        }
+    }
+
+    /**
+     * Collects the ids of all faces in nodes of the hierarchy which are not outside of the view frustum
+     * into visibleFaces.
+     * @return the number of collected faces
+     */
+    private int collectVisibleFaces(BoundingVolumeHierarchy hierarchy) {
+        Frustum frustum = this.camera.getFrustum();
+        double[] bounds = hierarchy.getBounds();
+        int[] faceIds = hierarchy.getFaceIds();
+        int visible = 0, top = 0;
+        if(hierarchy.getRoot() >= 0) {
+            this.nodeStack[top++] = hierarchy.getRoot();
+        }
+        while(top > 0) {
+            int node = this.nodeStack[--top];
+            int classification = frustum.classify(bounds, node);
+            if(classification == Frustum.OUTSIDE) {
+                continue;
+            }
+            if(classification == Frustum.INSIDE || hierarchy.isLeaf(node)) {
+                int count = hierarchy.getCount(node);
+                if(visible + count > this.visibleFaces.length) {
+                    this.visibleFaces = Arrays.copyOf(this.visibleFaces, Math.max(visible + count, 2 * this.visibleFaces.length));
+                }
+                System.arraycopy(faceIds, hierarchy.getStart(node), this.visibleFaces, visible, count);
+                visible += count;
+                continue;
+            }
+            if(top + 2 > this.nodeStack.length) {
+                this.nodeStack = Arrays.copyOf(this.nodeStack, 2 * this.nodeStack.length);
+            }
+            this.nodeStack[top++] = hierarchy.getRight(node);
+            this.nodeStack[top++] = hierarchy.getLeft(node);
+        }
+        return visible;
+    }
+
+    /**
+     * Assembles the (shaded) face f of the given mesh from the projected vertices and appends it to the
+     * triangle buffer. We work directly on the packed arrays of the mesh: back-faces are culled using the
+     * precomputed surface normals. With flat shading, the lights are evaluated once per face at its midpoint,
+     * with smooth shading the intensities of the vertices are used. With deferred shading, the face is not
+     * shaded at all, its triangles carry the normals of their corners instead. Quads are split into two triangles.
+     */
+    private void submitFace(Mesh mesh, int f) {
+        double[] p = this.projectedVertices;
+        double[] normals = mesh.getNormals();
+        int[] indices = mesh.getIndices();
+        int[] offsets = mesh.getFaceOffsets();
+        RenderStatistics statistics = this.statistics;
+        statistics.facesSubmitted++;
+        this.normal.set(normals[3*f], normals[3*f + 1], normals[3*f + 2]);
+        if(this.normal.dot(this.camera.getLookVector()) <= 0) {
+            statistics.facesBackFaceCulled++;
+            return;
+        }
+        if(this.deferredShading) {
+            this.submitDeferredFace(mesh, f);
+            return;
+        }
+        int color = this.smoothShading ? 0 : this.shadeFace(mesh, f);
+        double[] intensities = this.vertexIntensities;
+        int o = offsets[f], n = offsets[f + 1] - o;
+        int a = indices[o], d = indices[o + 2];
+        byte[] codes = this.outcodes;
+        this.sourceFace = f;
+        for(int k = 1; k < n; k += 2) {
+            int b = indices[o + k];
+            this.sourceCorner = k;
+            this.submitTriangle(this.triangles, p[3*a], p[3*a + 1], p[3*a + 2], intensities[a],
+                    p[3*b], p[3*b + 1], p[3*b + 2], intensities[b], p[3*d], p[3*d + 1], p[3*d + 2], intensities[d],
+                    codes[a], codes[b], codes[d], color, this.smoothShading);
+        }
+    }
+
+    /**
+     * Evaluates the lights for the face f of the mesh with flat shading, i.e. once at its midpoint with its
+     * surface normal.
+     * @return the color of the face
+     */
+    private int shadeFace(Mesh mesh, int f) {
+        double[] normals = mesh.getNormals();
+        this.normal.set(normals[3*f], normals[3*f + 1], normals[3*f + 2]);
+        mesh.getMidpoint(f, this.midpoint);
+        double intensity = this.lightGrid.intensityAt(this.midpoint, this.normal, this.statistics);
+        if(intensity <= 0) intensity = 0;
+        return Color.fromRGB((byte) (255*intensity), (byte) (255*intensity), (byte) (255*intensity));
+    }
+
+    /**
+     * Appends the unshaded triangles of the face f for deferred shading. Their corners get the surface normal
+     * of the face (in this.normal) or, with smooth shading, the normals of their vertices.
+     */
+    private void submitDeferredFace(Mesh mesh, int f) {
+        double[] p = this.projectedVertices;
+        double[] corners = this.cornerNormals;
+        double[] vertexNormals = this.smoothShading ? mesh.getVertexNormals() : null;
+        int[] indices = mesh.getIndices();
+        int[] offsets = mesh.getFaceOffsets();
+        int o = offsets[f], n = offsets[f + 1] - o;
+        int a = indices[o], d = indices[o + 2];
+        byte[] codes = this.outcodes;
+        for(int k = 1; k < n; k += 2) {
+            int b = indices[o + k];
+            if(vertexNormals == null) {
+                for(int c = 0; c < 9; c += 3) {
+                    corners[c] = this.normal.x();
+                    corners[c + 1] = this.normal.y();
+                    corners[c + 2] = this.normal.z();
+                }
+            } else {
+                System.arraycopy(vertexNormals, 3*a, corners, 0, 3);
+                System.arraycopy(vertexNormals, 3*b, corners, 3, 3);
+                System.arraycopy(vertexNormals, 3*d, corners, 6, 3);
+            }
+            this.submitTriangle(this.triangles, p[3*a], p[3*a + 1], p[3*a + 2], 0, p[3*b], p[3*b + 1], p[3*b + 2], 0,
+                    p[3*d], p[3*d + 1], p[3*d + 2], 0, codes[a], codes[b], codes[d], 0, this.smoothShading);
+        }
+    }
+
+    /**
+     * Rasterizes all triangles in the triangle buffer. They are kept until the next frame is submitted, so the
+     * ids in the geometry buffer refer to them (see reshade).
+     * With more than one thread, the triangles are binned into tiles first and the tiles are
+     * rasterized in parallel. Each tile processes its triangles in submission order, so the
+     * result is identical to the serial path.
+     */
+    private void flush() {
+        int n = this.triangles.size();
+        if(this.threadCount == 1) {
+            for(int t = 0; t < n; t++) {
+                if(this.rasterizeTriangle(this.triangles, t, this.scissorMinX, this.scissorMinY, this.scissorMaxX, this.scissorMaxY,
+                        this.edges, this.pixelCounts)) {
+                    this.statistics.trianglesOccluded++;
+                }
+            }
+            this.addPixelCounts(this.pixelCounts);
+        } else {
+            this.bins.clear();
+            for(int t = 0; t < n; t++) {
+                // a binned triangle counts as occluded until one of its tiles draws it
+                this.triangles.setOccluded(t, this.bins.bin(this.triangles, t, this.scissorMinX, this.scissorMinY,
+                        this.scissorMaxX, this.scissorMaxY));
+            }
+            if(this.pool == null) {
+                this.pool = new ForkJoinPool(this.threadCount);
+            }
+            this.pool.invoke(new TileTask(0, this.bins.getTileCount()));
+            for(int t = 0; t < n; t++) {
+                if(this.triangles.isOccluded(t)) {
+                    this.statistics.trianglesOccluded++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Shades the frame again from the geometry buffer when only the lights changed. The triangle buffer still
+     * holds the triangles of the last frame, so only their colors (flat shading) or the intensities of their
+     * corners (smooth shading) are updated from the faces and vertices they came from (see TriangleBuffer.setSource),
+     * exactly like submitFace calculates them; nothing is projected, clipped or set up again. Then every pixel in
+     * the scissor rectangle at which a triangle was drawn takes the new shade of this triangle, without
+     * rasterizing and depth testing the triangles again.
+     */
+    private void reshade() {
+        TriangleBuffer triangles = this.triangles;
+        int[] colors = triangles.getColors();
+        double[] weights = triangles.getWeights();
+        for(int m = 0; m < this.meshes.size(); m++) {
+            Mesh mesh = this.meshes.get(m);
+            int start = this.meshTriangles[m], end = this.meshTriangles[m + 1];
+            if(!this.smoothShading) {
+                // the triangles of a face follow each other
+                int face = -1, color = 0;
+                for(int t = start; t < end; t++) {
+                    if(triangles.getFace(t) != face) {
+                        face = triangles.getFace(t);
+                        color = this.shadeFace(mesh, face);
+                    }
+                    colors[t] = color;
+                }
+                continue;
+            }
+            if(start == end) {
+                continue;
+            }
+            this.shadeVertices(mesh);
+            double[] intensities = this.vertexIntensities;
+            int[] indices = mesh.getIndices();
+            int[] offsets = mesh.getFaceOffsets();
+            for(int t = start; t < end; t++) {
+                int o = offsets[triangles.getFace(t)];
+                double ia = intensities[indices[o]], ib = intensities[indices[o + triangles.getFaceCorner(t)]];
+                double ic = intensities[indices[o + 2]];
+                if(triangles.isClipped(t)) {
+                    int w = 6 * t;
+                    triangles.setIntensities(t, interpolate(ia, ib, ic, weights[w], weights[w + 1]),
+                            interpolate(ia, ib, ic, weights[w + 2], weights[w + 3]),
+                            interpolate(ia, ib, ic, weights[w + 4], weights[w + 5]));
+                } else {
+                    triangles.setIntensities(t, ia, ib, ic);
+                }
+            }
+        }
+        int[] ids = this.gBuffer.getTriangles();
+        int offsetX = this.width / 2, offsetY = this.height / 2;
+        long written = 0;
+        for(int y = this.scissorMinY; y <= this.scissorMaxY; y++) {
+            int row = (y + offsetY) * this.width + offsetX;
+            for(int x = this.scissorMinX; x <= this.scissorMaxX; x++) {
+                // pixels of lines and single triangles keep their color
+                if(this.depthBuffer.get(row + x) < Double.POSITIVE_INFINITY && ids[row + x] >= 0) {
+                    this.frameBuffer[row + x] = shade(triangles, ids[row + x], x, y);
+                    written++;
+                }
+            }
+        }
+        this.statistics.pixelsWritten += written;
+    }
+
+    /**
+     * Second pass of deferred shading: evaluates the lights for every pixel in the scissor rectangle at which
+     * a triangle was drawn, at the point reconstructed from its depth and with its normal from the geometry
+     * buffer. With more than one thread, bands of rows are shaded in parallel.
+     */
+    private void shadePixels() {
+        if(this.threadCount == 1) {
+            this.shadeRows(this.scissorMinY, this.scissorMaxY + 1, this.statistics);
+            return;
+        }
+        if(this.pool == null) {
+            this.pool = new ForkJoinPool(this.threadCount);
+        }
+        this.pool.invoke(new ShadeTask(this.scissorMinY, this.scissorMaxY + 1));
+    }
+
+    /**
+     * Shades the pixels of the rows from start up to end (exclusive) in the scissor rectangle and counts the
+     * shaded pixels and evaluated lights in the given statistics.
+     */
+    private void shadeRows(int start, int end, RenderStatistics statistics) {
+        int[] ids = this.gBuffer.getTriangles();
+        float[] normals = this.gBuffer.getNormals();
+        Vector3 position = new Vector3(), normal = new Vector3();
+        int offsetX = this.width / 2, offsetY = this.height / 2;
+        long shaded = 0;
+        for(int y = start; y < end; y++) {
+            int row = (y + offsetY) * this.width + offsetX;
+            for(int x = this.scissorMinX; x <= this.scissorMaxX; x++) {
+                double depth = this.depthBuffer.get(row + x);
+                // pixels of lines and single triangles keep their color
+                if(!(depth < Double.POSITIVE_INFINITY) || ids[row + x] < 0) {
+                    continue;
+                }
+                int k = 3 * (row + x);
+                double nx = normals[k], ny = normals[k + 1], nz = normals[k + 2];
+                double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+                if(length > 0) {
+                    normal.set(nx / length, ny / length, nz / length);
+                } else {
+                    normal.set(0, 0, 0);
+                }
+                this.camera.unproject(x, y, depth, position);
+                double intensity = this.lightGrid.intensityAt(position, normal, statistics);
+                this.frameBuffer[row + x] = SHADES[Math.min((int) (255 * Math.max(intensity, 0)), 255)];
+                shaded++;
+            }
+        }
+        statistics.pixelsShaded += shaded;
+    }
+
+    /**
+     * Returns the color of the triangle t of the buffer at the pixel (x, y), calculated exactly like in
+     * rasterizeTriangle: the edge functions are evaluated at the pixel directly instead of being stepped to it,
+     * which gives the same integers.
+     */
+    private static int shade(TriangleBuffer buffer, int t, int x, int y) {
+        if(!buffer.isSmooth(t)) {
+            return buffer.getColors()[t] + Color.fromRGB((byte) 30, (byte) 30, (byte) 30);
+        }
+        long[] p = buffer.getPoints();
+        int i = 6 * t;
+        long x0 = p[i], y0 = p[i + 1], x1 = p[i + 2], y1 = p[i + 3], x2 = p[i + 4], y2 = p[i + 5];
+        double[] inverseDepths = buffer.getInverseDepths();
+        double iz0 = inverseDepths[3 * t], iz1 = inverseDepths[3 * t + 1], iz2 = inverseDepths[3 * t + 2];
+        double[] intensities = buffer.getIntensities();
+        double ii0 = iz0 * intensities[3 * t], ii1 = iz1 * intensities[3 * t + 1], ii2 = iz2 * intensities[3 * t + 2];
+        // the edge functions without the bias of the fill rule, i.e. (w_k - bias_k) of rasterizeTriangle
+        long px = (long) x << TriangleBuffer.SUBPIXEL_BITS, py = (long) y << TriangleBuffer.SUBPIXEL_BITS;
+        long w0 = (x2 - x1) * (py - y1) - (y2 - y1) * (px - x1);
+        long w1 = (x0 - x2) * (py - y2) - (y0 - y2) * (px - x2);
+        long w2 = (x1 - x0) * (py - y0) - (y1 - y0) * (px - x0);
+        double inverseDepth = w0 * iz0 + w1 * iz1 + w2 * iz2;
+        double intensity = (w0 * ii0 + w1 * ii1 + w2 * ii2) / inverseDepth;
+        return SHADES[Math.min((int) (255 * intensity), 255)];
+    }
+
+    /**
+     * Marks the last frame as outdated, so the next call to render() renders it completely. This is needed
+     * after changes the scene cannot notice, e.g. drawing into the image of getFrameImage() or changing the
+     * packed arrays of a mesh without calling Mesh.invalidateNormals().
+     */
+    public void invalidate() {
+        this.frameState.invalidate();
+    }
+
+    /**
+     * Task to rasterize the tiles from start up to end (exclusive).
+     * Ranges are split in half until they are small enough.
+     */
+    private class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 4;
+        private final int start;
+        private final int end;
+
+        TileTask(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if(this.end - this.start > THRESHOLD) {
+                int middle = (this.start + this.end) >>> 1;
+                invokeAll(new TileTask(this.start, middle), new TileTask(middle, this.end));
+                return;
+            }
+            long[] pixelCounts = new long[2];
+            EdgeFunctions edges = new EdgeFunctions();
+            for(int tile = this.start; tile < this.end; tile++) {
+                int[] ids = bins.getTriangles(tile);
+                int minX = Math.max(bins.getMinX(tile), scissorMinX), minY = Math.max(bins.getMinY(tile), scissorMinY);
+                int maxX = Math.min(bins.getMaxX(tile), scissorMaxX), maxY = Math.min(bins.getMaxY(tile), scissorMaxY);
+                for(int k = 0; k < bins.getCount(tile); k++) {
+                    if(!rasterizeTriangle(triangles, ids[k], minX, minY, maxX, maxY, edges, pixelCounts)) {
+                        triangles.setOccluded(ids[k], false);
+                    }
+                }
+            }
+            addPixelCounts(pixelCounts);
+        }
+    }
+
+    /**
+     * Task to shade the rows from start up to end (exclusive) for deferred shading.
+     * Ranges are split in half until they are small enough.
+     */
+    private class ShadeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 16;
+        private final int start;
+        private final int end;
+
+        ShadeTask(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if(this.end - this.start > THRESHOLD) {
+                // rows are centered, so start may be negative
+                int middle = (this.start + this.end) >> 1;
+                invokeAll(new ShadeTask(this.start, middle), new ShadeTask(middle, this.end));
+                return;
+            }
+            RenderStatistics counts = new RenderStatistics();
+            shadeRows(this.start, this.end, counts);
+            synchronized(pixelCounts) {
+                statistics.pixelsShaded += counts.pixelsShaded;
+                statistics.lightsEvaluated += counts.lightsEvaluated;
+            }
+        }
+    }
+
+    /*@
+      @ requires 0 <= x && 0 <= y && width > 0 && height > 0;
+      @ requires x + width <= this.width && y + height <= this.height;
+      @*/
+    /**
+     * Method to render only the given region of the scene (in pixel coordinates of the image), e.g. to
+     * refine a frame progressively or to redraw the part of the frame which changed. The rest of the
+     * frame buffer keeps the last frame. The scissor rectangle is restored afterwards.
+     * @param x the left column of the region
+     * @param y the top row of the region
+     * @param width the width of the region
+     * @param height the height of the region
+     */
+    public void render(int x, int y, int width, int height) {
+        int minX = this.scissorMinX, minY = this.scissorMinY, maxX = this.scissorMaxX, maxY = this.scissorMaxY;
+        this.setScissor(x, y, width, height);
+        try {
+            this.render();
+        } finally {
+            this.setScissor(minX + this.width / 2, minY + this.height / 2, maxX - minX + 1, maxY - minY + 1);
+        }
+    }
+
+    /**
+     * Method to render all meshes from the scene to the frame buffer.
+     * A new RenderStatistics object is started for the frame and the render listeners are
+     * notified about it at the end.
+     *
+     * Only the work needed since the last frame is done: if neither the camera, the meshes, the lights nor
+     * the settings of the scene changed (see FrameState), the last frame is kept as it is. If only the lights
+     * changed, nothing is submitted or rasterized again: the triangles of the last frame are shaded again from
+     * the faces they came from and each pixel takes the new shade of the triangle drawn at it (see GBuffer);
+     * with deferred shading, only the second pass runs again (see setDeferredShading). Drawing onto the
+     * scene in between (e.g. with rasterizeLine or renderMesh) makes the next frame render completely, so does
+     * invalidate().
+     */
+    public void render() {
+        RenderStatistics statistics = new RenderStatistics();
+        this.statistics = statistics;
+        long start = System.nanoTime();
+        int change = this.frameState.compare(this.camera, this.meshes, this.lights, this.smoothShading,
+                this.deferredShading, this.scissorMinX, this.scissorMinY, this.scissorMaxX, this.scissorMaxY);
+        if(change == FrameState.GEOMETRY) {
+            // until the frame is complete, it cannot be reused
+            this.frameState.invalidate();
+            this.resetBuffers();
+        }
+        long cleared = System.nanoTime();
+        if(change != FrameState.UNCHANGED) {
+            this.prepareLights();
+        }
+        // the geometry buffer and the triangles it refers to do not depend on the lights
+        if(change == FrameState.GEOMETRY) {
+            this.triangles.clear();
+            if(this.meshes.size() + 1 > this.meshTriangles.length) {
+                this.meshTriangles = new int[Math.max(this.meshes.size() + 1, 2 * this.meshTriangles.length)];
+            }
+            for(int m = 0; m < this.meshes.size(); m++) {
+                this.meshTriangles[m] = this.triangles.size();
+                this.submitMesh(this.meshes.get(m));
+            }
+            this.meshTriangles[this.meshes.size()] = this.triangles.size();
+        }
+        long submitted = System.nanoTime();
+        if(change == FrameState.GEOMETRY) {
+            this.flush();
+        }
+        long rasterized = System.nanoTime();
+        if(change == FrameState.LIGHTING && !this.deferredShading) {
+            this.reshade();
+        } else if(change != FrameState.UNCHANGED && this.deferredShading) {
+            this.shadePixels();
+        }
+        this.frameState.record(this.camera, this.meshes, this.lights, this.smoothShading,
+                this.deferredShading, this.scissorMinX, this.scissorMinY, this.scissorMaxX, this.scissorMaxY);
+        statistics.skipped = change == FrameState.UNCHANGED;
+        statistics.reshaded = change == FrameState.LIGHTING;
+        statistics.clearTime = cleared - start;
+        statistics.transformTime = submitted - cleared;
+        statistics.rasterTime = rasterized - submitted;
+        statistics.shadeTime = System.nanoTime() - rasterized;
+        for(int l = 0; l < this.listeners.size(); l++) {
+            this.listeners.get(l).frameRendered(this, statistics);
         }
     }
 }
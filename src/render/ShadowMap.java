@@ -0,0 +1,242 @@
+package render;
+
+import mesh.Mesh;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An omnidirectional shadow map of a point light: a cube map of six square depth images around the light.
+ * Face 2 * axis (+ 1) looks along the positive (negative) axis, where axis 0, 1, 2 is x, y, z. For a point
+ * whose offset d from the light is largest along this axis, its depth on the face is |d_axis| and its
+ * screen coordinates are (d_u, d_v) * size / 2 / |d_axis|, where u and v are the other two axes in order.
+ * So every face is a square view with a field of view of 90 degrees and each pixel stores the depth of the
+ * nearest surface seen from the light.
+ *
+ * The map is rendered by a depth-only pass: the triangles of all meshes are projected onto every face,
+ * clipped like in the main pass (see Clipper), set up in a TriangleBuffer and rasterized with the same edge
+ * functions as the main pass (see EdgeFunctions), but only the depth is written - there are no colors, no lighting
+ * and no back-face culling. A point is lit if its depth is not (much) farther than the depth stored at its
+ * pixel; we average the test over the 3x3 pixels around it (percentage closer filtering), which softens the
+ * edges of the shadows and hides the pixels of the map on faces shaded as a whole.
+ *
+ * The map is kept until the light moves or the geometry changes: it remembers the position of the light
+ * and the meshes it was rendered from along with their modification counters.
+ */
+final class ShadowMap {
+    // a point is in shadow if its depth exceeds the stored one by more than this fraction
+    private static final double BIAS = 0.02;
+
+    private final int size;
+    private final int half;
+    private final float[] depths;
+    private final Clipper clipper;
+    private final TriangleBuffer triangles = new TriangleBuffer();
+    private final EdgeFunctions edges = new EdgeFunctions();
+    private double[] projected = new double[3 * 256];
+    private byte[] outcodes = new byte[256];
+    // the key of the rendered map: the position of the light and the meshes with their modification counters
+    private boolean valid;
+    private double lightX;
+    private double lightY;
+    private double lightZ;
+    private Mesh[] meshes = new Mesh[0];
+    private long[] modificationCounts = new long[0];
+
+    /*@
+      @ requires size >= 2;
+      @*/
+    /**
+     * Constructor for a shadow map whose faces have size x size pixels.
+     * @param size the resolution of each face of the cube
+     */
+    ShadowMap(int size) {
+        this.size = size / 2 * 2;
+        this.half = this.size / 2;
+        this.depths = new float[6 * this.size * this.size];
+        this.clipper = new Clipper(this.size, this.size);
+    }
+
+    int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Marks the map as outdated, so it is rendered again by the next call to update.
+     */
+    synchronized void invalidate() {
+        this.valid = false;
+    }
+
+    /**
+     * Renders the map for the light at (x, y, z) and the given meshes, unless it is still up to date.
+     * @return whether the map was rendered
+     */
+    synchronized boolean update(double x, double y, double z, List<Mesh> meshes) {
+        if(this.isUpToDate(x, y, z, meshes)) {
+            return false;
+        }
+        Arrays.fill(this.depths, Float.POSITIVE_INFINITY);
+        for(int face = 0; face < 6; face++) {
+            for(int m = 0; m < meshes.size(); m++) {
+                this.render(meshes.get(m), x, y, z, face);
+            }
+        }
+        if(this.meshes.length != meshes.size()) {
+            this.meshes = new Mesh[meshes.size()];
+            this.modificationCounts = new long[meshes.size()];
+        }
+        for(int m = 0; m < meshes.size(); m++) {
+            this.meshes[m] = meshes.get(m);
+            this.modificationCounts[m] = meshes.get(m).getModificationCount();
+        }
+        this.lightX = x;
+        this.lightY = y;
+        this.lightZ = z;
+        this.valid = true;
+        return true;
+    }
+
+    private boolean isUpToDate(double x, double y, double z, List<Mesh> meshes) {
+        if(!this.valid || x != this.lightX || y != this.lightY || z != this.lightZ || meshes.size() != this.meshes.length) {
+            return false;
+        }
+        for(int m = 0; m < meshes.size(); m++) {
+            if(meshes.get(m) != this.meshes[m] || meshes.get(m).getModificationCount() != this.modificationCounts[m]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Depth-only pass of the given mesh onto one face of the cube.
+     */
+    private void render(Mesh mesh, double x, double y, double z, int face) {
+        int count = mesh.getVertexCount();
+        if(3 * count > this.projected.length) {
+            this.projected = new double[Math.max(3 * count, 2 * this.projected.length)];
+            this.outcodes = new byte[this.projected.length / 3];
+        }
+        int axis = face / 2, u = axis == 0 ? 1 : 0, v = axis == 2 ? 1 : 2;
+        double sign = face % 2 == 0 ? 1 : -1;
+        double[] c = mesh.getCoordinates();
+        double[] p = this.projected;
+        double[] light = {x, y, z};
+        for(int k = 0; k < count; k++) {
+            p[3*k] = this.half * (c[3*k + u] - light[u]);
+            p[3*k + 1] = this.half * (c[3*k + v] - light[v]);
+            p[3*k + 2] = sign * (c[3*k + axis] - light[axis]);
+        }
+        this.clipper.outcodes(p, count, this.outcodes);
+
+        this.triangles.clear();
+        int[] indices = mesh.getIndices();
+        int[] offsets = mesh.getFaceOffsets();
+        byte[] codes = this.outcodes;
+        for(int f = 0; f < mesh.getFaceCount(); f++) {
+            int o = offsets[f], n = offsets[f + 1] - o;
+            int a = indices[o], d = indices[o + 2];
+            for(int k = 1; k < n; k += 2) {
+                int b = indices[o + k];
+                int codeA = codes[a], codeB = codes[b], codeD = codes[d];
+                if((codeA & codeB & codeD & Clipper.REJECTED) != 0) {
+                    continue;
+                }
+                if(((codeA | codeB | codeD) & Clipper.CLIPPED) == 0) {
+                    this.triangles.add(p[3*a], p[3*a + 1], p[3*a + 2], p[3*b], p[3*b + 1], p[3*b + 2],
+                            p[3*d], p[3*d + 1], p[3*d + 2], 0);
+                    continue;
+                }
+                int corners = this.clipper.clip(p[3*a], p[3*a + 1], p[3*a + 2], 0, p[3*b], p[3*b + 1], p[3*b + 2], 0,
+                        p[3*d], p[3*d + 1], p[3*d + 2], 0, codeA | codeB | codeD);
+                double[] polygon = this.clipper.getPolygon();
+                for(int j = 2; j < corners; j++) {
+                    int i0 = 4 * (j - 1), i1 = 4 * j;
+                    this.triangles.add(polygon[0], polygon[1], polygon[2], polygon[i0], polygon[i0 + 1], polygon[i0 + 2],
+                            polygon[i1], polygon[i1 + 1], polygon[i1 + 2], 0);
+                }
+            }
+        }
+        for(int t = 0; t < this.triangles.size(); t++) {
+            this.rasterize(t, face * this.size * this.size);
+        }
+    }
+
+    /**
+     * Writes the depth of the triangle t of the triangle buffer into the face starting at the given offset.
+     * See EdgeFunctions for the coverage test and the fill rule.
+     */
+    private void rasterize(int t, int offset) {
+        TriangleBuffer buffer = this.triangles;
+        int minX = Math.max(buffer.getMinX(t), -this.half), maxX = Math.min(buffer.getMaxX(t), this.half - 1);
+        int minY = Math.max(buffer.getMinY(t), -this.half), maxY = Math.min(buffer.getMaxY(t), this.half - 1);
+        if(minX > maxX || minY > maxY) {
+            return;
+        }
+        EdgeFunctions edges = this.edges;
+        edges.setUp(buffer, t, minX, minY);
+        double area = edges.area;
+        long stepX0 = edges.stepX0, stepX1 = edges.stepX1, stepX2 = edges.stepX2;
+        float[] depths = this.depths;
+        for(int y = minY; y <= maxY; y++) {
+            long w0 = edges.w0, w1 = edges.w1, w2 = edges.w2;
+            int row = offset + (y + this.half) * this.size + this.half;
+            for(int x = minX; x <= maxX; x++) {
+                if((w0 | w1 | w2) >= 0) {
+                    double depth = area / edges.inverseDepth(w0, w1, w2);
+                    if(0 < depth && depth < depths[row + x]) {
+                        depths[row + x] = (float) depth;
+                    }
+                }
+                w0 += stepX0;
+                w1 += stepX1;
+                w2 += stepX2;
+            }
+            edges.nextRow();
+        }
+    }
+
+    /**
+     * Returns how much of the light at (lightX, lightY, lightZ) reaches the point (x, y, z), i.e. the fraction
+     * of the 3x3 pixels around the point in the map which do not hide it.
+     * @return the visibility of the point, between 0 (in shadow) and 1 (lit)
+     */
+    double visibility(double lightX, double lightY, double lightZ, double x, double y, double z) {
+        double dx = x - lightX, dy = y - lightY, dz = z - lightZ;
+        double ax = Math.abs(dx), ay = Math.abs(dy), az = Math.abs(dz);
+        int face;
+        double depth, u, v;
+        if(ax >= ay && ax >= az) {
+            face = dx >= 0 ? 0 : 1;
+            depth = ax;
+            u = dy;
+            v = dz;
+        } else if(ay >= az) {
+            face = dy >= 0 ? 2 : 3;
+            depth = ay;
+            u = dx;
+            v = dz;
+        } else {
+            face = dz >= 0 ? 4 : 5;
+            depth = az;
+            u = dx;
+            v = dy;
+        }
+        if(!(depth > 0)) {
+            return 1;
+        }
+        int px = (int) Math.round(this.half * u / depth), py = (int) Math.round(this.half * v / depth);
+        double limit = depth * (1 - BIAS);
+        int offset = face * this.size * this.size, lit = 0;
+        for(int j = py - 1; j <= py + 1; j++) {
+            int row = offset + (Math.min(Math.max(j, -this.half), this.half - 1) + this.half) * this.size + this.half;
+            for(int i = px - 1; i <= px + 1; i++) {
+                if(this.depths[row + Math.min(Math.max(i, -this.half), this.half - 1)] >= limit) {
+                    lit++;
+                }
+            }
+        }
+        return lit / 9.0;
+    }
+}
@@ -0,0 +1,126 @@
+package render;
+
+import java.util.Arrays;
+
+/**
+ * Sorts projected triangles into square screen tiles.
+ * Every tile keeps the ids of the triangles whose bounding box overlaps it, in the
+ * order in which they were submitted. Since tiles do not share pixels, they can be
+ * rasterized independently of each other - and the result is the same as rasterizing
+ * all triangles one after another.
+ * Tiles are given in screen coordinates, i.e. x runs from -width/2 to width/2 - 1.
+ * When the screen is resized, the tiles (and their lists of ids) are kept and reused.
+ */
+final class TileBins {
+    static final int TILE_SIZE = 64;
+
+    private int width;
+    private int height;
+    private int columns;
+    private int rows;
+    private int[][] triangles = new int[0][];
+    private int[] counts = new int[0];
+
+    TileBins(int width, int height) {
+        this.resize(width, height);
+    }
+
+    /**
+     * Changes the size of the screen. The tiles only grow in number, the lists of existing tiles are kept.
+     * All tiles are empty afterwards.
+     */
+    void resize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        this.rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        int tiles = this.columns * this.rows;
+        if(tiles > this.counts.length) {
+            int old = this.counts.length;
+            this.triangles = Arrays.copyOf(this.triangles, tiles);
+            for(int tile = old; tile < tiles; tile++) {
+                this.triangles[tile] = new int[16];
+            }
+            this.counts = new int[tiles];
+        }
+        this.clear();
+    }
+
+    /**
+     * Empties all tiles.
+     */
+    void clear() {
+        Arrays.fill(this.counts, 0, this.getTileCount(), 0);
+    }
+
+    /**
+     * Adds the triangle t of the buffer to every tile its bounding box overlaps within the given
+     * rectangle (in screen coordinates, bounds inclusive).
+     * @param buffer the buffer holding the triangle
+     * @param t the id of the triangle in the buffer
+     * @return whether the triangle was added to any tile
+     */
+    boolean bin(TriangleBuffer buffer, int t, int minX, int minY, int maxX, int maxY) {
+        // the same pixel bounds as used by the rasterizer, shifted to tile coordinates
+        int x0 = Math.max(buffer.getMinX(t), minX) + this.width / 2;
+        int y0 = Math.max(buffer.getMinY(t), minY) + this.height / 2;
+        int x1 = Math.min(buffer.getMaxX(t), maxX) + this.width / 2;
+        int y1 = Math.min(buffer.getMaxY(t), maxY) + this.height / 2;
+        if(x0 > x1 || y0 > y1) {
+            return false;
+        }
+        for(int row = y0 / TILE_SIZE; row <= y1 / TILE_SIZE; row++) {
+            for(int column = x0 / TILE_SIZE; column <= x1 / TILE_SIZE; column++) {
+                int tile = row * this.columns + column;
+                if(this.counts[tile] == this.triangles[tile].length) {
+                    this.triangles[tile] = Arrays.copyOf(this.triangles[tile], 2 * this.counts[tile]);
+                }
+                this.triangles[tile][this.counts[tile]++] = t;
+            }
+        }
+        return true;
+    }
+
+    int getTileCount() {
+        return this.columns * this.rows;
+    }
+
+    int getCount(int tile) {
+        return this.counts[tile];
+    }
+
+    /**
+     * Returns the ids of the triangles in the given tile. Only the first getCount(tile) entries are valid.
+     */
+    int[] getTriangles(int tile) {
+        return this.triangles[tile];
+    }
+
+    /**
+     * @return the smallest screen x coordinate of the tile
+     */
+    int getMinX(int tile) {
+        return (tile % this.columns) * TILE_SIZE - this.width / 2;
+    }
+
+    /**
+     * @return the smallest screen y coordinate of the tile
+     */
+    int getMinY(int tile) {
+        return (tile / this.columns) * TILE_SIZE - this.height / 2;
+    }
+
+    /**
+     * @return the largest screen x coordinate of the tile
+     */
+    int getMaxX(int tile) {
+        return Math.min(this.getMinX(tile) + TILE_SIZE - 1, this.width / 2 - 1);
+    }
+
+    /**
+     * @return the largest screen y coordinate of the tile
+     */
+    int getMaxY(int tile) {
+        return Math.min(this.getMinY(tile) + TILE_SIZE - 1, this.height / 2 - 1);
+    }
+}
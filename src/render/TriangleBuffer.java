@@ -0,0 +1,339 @@
+package render;
+
+import linalg.Vector3;
+
+import java.util.Arrays;
+
+/**
+ * A growable, packed list of projected triangles waiting to be rasterized.
+ * Adding a triangle performs its setup: the screen coordinates of the corners are snapped
+ * to a fixed-point grid with SUBPIXEL_BITS bits of subpixel precision and the corners are
+ * ordered such that the triangle has positive area. From these integer coordinates, the
+ * rasterizer derives exact edge functions, so pixels on shared edges are decided the same
+ * way for both triangles.
+ * For each triangle we store the snapped corners (6 longs), the inverse depth of its corners
+ * (3 doubles) and its color. Smoothly shaded triangles store the light intensity of their corners
+ * (3 doubles) instead of a color. Triangles for deferred shading store the normals of their corners
+ * (9 doubles) instead, which are written to the geometry buffer of the scene. The order in which triangles
+ * are added is the order in which they are rasterized.
+ * Triangles of the faces of meshes also keep their source (see setSource): the face and the corner of the face
+ * they were split at and, if they were clipped, the barycentric coordinates of their corners in the triangle of
+ * the face. The scene uses it to shade the triangles again without projecting and clipping the face again.
+ */
+final class TriangleBuffer {
+    static final int SUBPIXEL_BITS = 8;
+    static final long SUBPIXEL_ONE = 1L << SUBPIXEL_BITS;
+    // screen coordinates must stay within +-MAX_COORDINATE, so that edge functions fit into a long
+    static final double MAX_COORDINATE = 1 << 20;
+
+    private long[] points = new long[6 * 256];
+    private double[] inverseDepths = new double[3 * 256];
+    private double[] depthBounds = new double[2 * 256];
+    private int[] colors = new int[256];
+    private double[] intensities = new double[3 * 256];
+    private boolean[] smooth = new boolean[256];
+    private double[] normals = new double[9 * 256];
+    private boolean[] deferred = new boolean[256];
+    private boolean[] occluded = new boolean[256];
+    private boolean[] swapped = new boolean[256];
+    private int[] faces = new int[256];
+    private int[] faceCorners = new int[256];
+    private boolean[] clipped = new boolean[256];
+    private double[] weights = new double[6 * 256];
+    private int size;
+
+    /**
+     * Sets up the triangle given by the results of Camera.project for its corners and adds it.
+     * Degenerate triangles (zero area after snapping) are not added, neither are triangles
+     * with a corner outside of +-MAX_COORDINATE (the clipping stage keeps the corners within
+     * a guard band inside of this range, see Clipper).
+     * @param a the projected first corner
+     * @param b the projected second corner
+     * @param c the projected third corner
+     * @param color the color of the triangle
+     * @return whether the triangle was added
+     */
+    boolean add(Vector3 a, Vector3 b, Vector3 c, int color) {
+        return this.add(a.x(), a.y(), a.z(), b.x(), b.y(), b.z(), c.x(), c.y(), c.z(), color);
+    }
+
+    /**
+     * Primitive version of add(Vector3, Vector3, Vector3, int) which takes the projected
+     * corners (x, y, depth) directly, e.g. from the vertex buffer of a mesh.
+     */
+    boolean add(double ax0, double ay0, double az, double bx0, double by0, double bz,
+                double cx0, double cy0, double cz, int color) {
+        return this.add(ax0, ay0, az, bx0, by0, bz, cx0, cy0, cz, color, false, 0, 0, 0, null, 0, 0, 0);
+    }
+
+    /**
+     * Like add(double, ..., int), but for a smoothly shaded triangle with the given light intensities of
+     * its corners, which are interpolated over the triangle.
+     */
+    boolean addSmooth(double ax0, double ay0, double az, double bx0, double by0, double bz,
+                      double cx0, double cy0, double cz, double ia, double ib, double ic) {
+        return this.add(ax0, ay0, az, bx0, by0, bz, cx0, cy0, cz, 0, true, ia, ib, ic, null, 0, 0, 0);
+    }
+
+    /**
+     * Like add(double, ..., int), but for a triangle which is shaded later (deferred shading). The normals of its
+     * corners start at the given offsets into the normals array. If interpolated is false, the normal of the
+     * first corner is used for the whole triangle.
+     */
+    boolean addDeferred(double ax0, double ay0, double az, double bx0, double by0, double bz,
+                        double cx0, double cy0, double cz, boolean interpolated, double[] normals, int na, int nb, int nc) {
+        return this.add(ax0, ay0, az, bx0, by0, bz, cx0, cy0, cz, 0, interpolated, 0, 0, 0, normals, na, nb, nc);
+    }
+
+    private boolean add(double ax0, double ay0, double az, double bx0, double by0, double bz,
+                        double cx0, double cy0, double cz, int color, boolean smooth, double ia, double ib, double ic,
+                        double[] normals, int na, int nb, int nc) {
+        double ax = ax0 / az, ay = ay0 / az;
+        double bx = bx0 / bz, by = by0 / bz;
+        double cx = cx0 / cz, cy = cy0 / cz;
+        // the negated comparison also rejects NaN
+        if(!(Math.max(Math.max(Math.abs(ax), Math.abs(ay)), Math.max(Math.max(Math.abs(bx), Math.abs(by)),
+                Math.max(Math.abs(cx), Math.abs(cy)))) <= MAX_COORDINATE)) {
+            return false;
+        }
+        long x0 = Math.round(ax * SUBPIXEL_ONE), y0 = Math.round(ay * SUBPIXEL_ONE);
+        long x1 = Math.round(bx * SUBPIXEL_ONE), y1 = Math.round(by * SUBPIXEL_ONE);
+        long x2 = Math.round(cx * SUBPIXEL_ONE), y2 = Math.round(cy * SUBPIXEL_ONE);
+        long area = (x1 - x0) * (y2 - y0) - (y1 - y0) * (x2 - x0);
+        if(area == 0) {
+            return false;
+        }
+
+        if(this.size == this.colors.length) {
+            this.colors = Arrays.copyOf(this.colors, 2 * this.colors.length);
+            this.points = Arrays.copyOf(this.points, 6 * this.colors.length);
+            this.inverseDepths = Arrays.copyOf(this.inverseDepths, 3 * this.colors.length);
+            this.depthBounds = Arrays.copyOf(this.depthBounds, 2 * this.colors.length);
+            this.occluded = Arrays.copyOf(this.occluded, this.colors.length);
+            this.intensities = Arrays.copyOf(this.intensities, 3 * this.colors.length);
+            this.smooth = Arrays.copyOf(this.smooth, this.colors.length);
+            this.normals = Arrays.copyOf(this.normals, 9 * this.colors.length);
+            this.deferred = Arrays.copyOf(this.deferred, this.colors.length);
+            this.swapped = Arrays.copyOf(this.swapped, this.colors.length);
+            this.faces = Arrays.copyOf(this.faces, this.colors.length);
+            this.faceCorners = Arrays.copyOf(this.faceCorners, this.colors.length);
+            this.clipped = Arrays.copyOf(this.clipped, this.colors.length);
+            this.weights = Arrays.copyOf(this.weights, 6 * this.colors.length);
+        }
+        int i = 6 * this.size, j = 3 * this.size;
+        this.points[i] = x0;
+        this.points[i + 1] = y0;
+        this.inverseDepths[j] = 1 / az;
+        this.intensities[j] = ia;
+        // we swap the second and third corner if needed to get a positive area
+        int second = area > 0 ? 1 : 2, third = area > 0 ? 2 : 1;
+        this.points[i + 2 * second] = x1;
+        this.points[i + 2 * second + 1] = y1;
+        this.inverseDepths[j + second] = 1 / bz;
+        this.intensities[j + second] = ib;
+        this.points[i + 2 * third] = x2;
+        this.points[i + 2 * third + 1] = y2;
+        this.inverseDepths[j + third] = 1 / cz;
+        this.intensities[j + third] = ic;
+        this.depthBounds[2 * this.size] = Math.min(az, Math.min(bz, cz));
+        this.depthBounds[2 * this.size + 1] = Math.max(az, Math.max(bz, cz));
+        this.colors[this.size] = color;
+        this.smooth[this.size] = smooth;
+        this.deferred[this.size] = normals != null;
+        if(normals != null) {
+            int k = 9 * this.size;
+            System.arraycopy(normals, na, this.normals, k, 3);
+            System.arraycopy(normals, nb, this.normals, k + 3 * second, 3);
+            System.arraycopy(normals, nc, this.normals, k + 3 * third, 3);
+        }
+        this.occluded[this.size] = false;
+        this.swapped[this.size] = area < 0;
+        this.faces[this.size] = -1;
+        this.size++;
+        return true;
+    }
+
+    /**
+     * Sets the source of the triangle added last: it is the triangle (a, b, d) of the face, where a and d are
+     * the first and third corner of the face and b is the given corner (1 or 3), and it was not clipped.
+     * @param face the id of the face in its mesh
+     * @param corner the index of the corner b in the face
+     */
+    void setSource(int face, int corner) {
+        this.faces[this.size - 1] = face;
+        this.faceCorners[this.size - 1] = corner;
+        this.clipped[this.size - 1] = false;
+    }
+
+    /**
+     * Like setSource(int, int), but for a triangle cut from the clipped triangle (a, b, d): its corners have the
+     * barycentric coordinates (beta, gamma) at the offsets wa, wb, wc into the given weights with respect to b, d.
+     */
+    void setSource(int face, int corner, double[] weights, int wa, int wb, int wc) {
+        int t = this.size - 1;
+        this.setSource(face, corner);
+        this.clipped[t] = true;
+        System.arraycopy(weights, wa, this.weights, 6 * t, 2);
+        System.arraycopy(weights, wb, this.weights, 6 * t + 2, 2);
+        System.arraycopy(weights, wc, this.weights, 6 * t + 4, 2);
+    }
+
+    /**
+     * @return the face of triangle t (see setSource), or -1 if it has no source
+     */
+    int getFace(int t) {
+        return this.faces[t];
+    }
+
+    /**
+     * @return the corner of the face at which triangle t was split off (see setSource)
+     */
+    int getFaceCorner(int t) {
+        return this.faceCorners[t];
+    }
+
+    /**
+     * @return whether triangle t was cut from a clipped triangle of its face (see setSource)
+     */
+    boolean isClipped(int t) {
+        return this.clipped[t];
+    }
+
+    /**
+     * Returns the barycentric coordinates (beta, gamma) of the corners of all clipped triangles, in the order in
+     * which the corners were added (unlike the other attributes). The values of triangle t start at index 6 * t.
+     */
+    double[] getWeights() {
+        return this.weights;
+    }
+
+    /**
+     * Replaces the light intensities of the corners of the smoothly shaded triangle t, given in the order in
+     * which the corners were added.
+     */
+    void setIntensities(int t, double ia, double ib, double ic) {
+        int j = 3 * t, second = this.swapped[t] ? 2 : 1, third = this.swapped[t] ? 1 : 2;
+        this.intensities[j] = ia;
+        this.intensities[j + second] = ib;
+        this.intensities[j + third] = ic;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Returns the snapped corners (x0, y0, x1, y1, x2, y2 in fixed-point) of all triangles.
+     * The corners of triangle t start at index 6 * t.
+     */
+    long[] getPoints() {
+        return this.points;
+    }
+
+    /**
+     * Returns the inverse depth of the corners of all triangles. The values of triangle t start at index 3 * t.
+     */
+    double[] getInverseDepths() {
+        return this.inverseDepths;
+    }
+
+    int[] getColors() {
+        return this.colors;
+    }
+
+    /**
+     * @return whether triangle t is smoothly shaded, i.e. has intensities instead of a color (or interpolates
+     * the normals of its corners if it is deferred)
+     */
+    boolean isSmooth(int t) {
+        return this.smooth[t];
+    }
+
+    /**
+     * @return whether triangle t is shaded later, i.e. has normals instead of a color
+     */
+    boolean isDeferred(int t) {
+        return this.deferred[t];
+    }
+
+    /**
+     * Returns the normals of the corners of all triangles for deferred shading, in the same order as the
+     * inverse depths. The normals of triangle t start at index 9 * t.
+     */
+    double[] getNormals() {
+        return this.normals;
+    }
+
+    /**
+     * Returns the light intensities of the corners of all smoothly shaded triangles, in the same order
+     * as the inverse depths. The values of triangle t start at index 3 * t.
+     */
+    double[] getIntensities() {
+        return this.intensities;
+    }
+
+    /**
+     * @return the smallest depth of the corners of triangle t
+     */
+    double getNearest(int t) {
+        return this.depthBounds[2 * t];
+    }
+
+    /**
+     * @return the largest depth of the corners of triangle t
+     */
+    double getFarthest(int t) {
+        return this.depthBounds[2 * t + 1];
+    }
+
+    /**
+     * Marks whether triangle t was rejected by the hierarchical depth buffer.
+     */
+    void setOccluded(int t, boolean occluded) {
+        this.occluded[t] = occluded;
+    }
+
+    boolean isOccluded(int t) {
+        return this.occluded[t];
+    }
+
+    /**
+     * @return the smallest pixel x coordinate which may be covered by triangle t
+     */
+    int getMinX(int t) {
+        int i = 6 * t;
+        return ceilToPixel(Math.min(this.points[i], Math.min(this.points[i + 2], this.points[i + 4])));
+    }
+
+    /**
+     * @return the smallest pixel y coordinate which may be covered by triangle t
+     */
+    int getMinY(int t) {
+        int i = 6 * t;
+        return ceilToPixel(Math.min(this.points[i + 1], Math.min(this.points[i + 3], this.points[i + 5])));
+    }
+
+    /**
+     * @return the largest pixel x coordinate which may be covered by triangle t
+     */
+    int getMaxX(int t) {
+        int i = 6 * t;
+        return (int) (Math.max(this.points[i], Math.max(this.points[i + 2], this.points[i + 4])) >> SUBPIXEL_BITS);
+    }
+
+    /**
+     * @return the largest pixel y coordinate which may be covered by triangle t
+     */
+    int getMaxY(int t) {
+        int i = 6 * t;
+        return (int) (Math.max(this.points[i + 1], Math.max(this.points[i + 3], this.points[i + 5])) >> SUBPIXEL_BITS);
+    }
+
+    private static int ceilToPixel(long fixed) {
+        return (int) -((-fixed) >> SUBPIXEL_BITS);
+    }
+}
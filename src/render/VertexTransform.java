@@ -0,0 +1,26 @@
+package render;
+
+import linalg.Matrix4;
+
+/**
+ * A batched version of the vertex transform of Camera.projectVertices. The only implementation is
+ * VectorProjection in the optional source set vector/, which needs the module jdk.incubator.vector; Camera
+ * loads it by name, so src/ compiles and runs without that module.
+ */
+interface VertexTransform {
+    /**
+     * @return the number of vertices transformed at once
+     */
+    int getBatchSize();
+
+    /*@
+      @ requires from >= 1 && to < count of vertices in coordinates;
+      @*/
+    /**
+     * Transforms whole batches of vertices, starting at vertex from and ending before vertex to,
+     * with the view matrix and writes the results to dest, see Camera.projectVertices.
+     * The loads may reach into the vertices before from and at to, so these have to exist.
+     * @return the vertex after the last batch, the remaining vertices are left to the caller
+     */
+    int project(Matrix4 m, double[] coordinates, int from, int to, double[] dest);
+}
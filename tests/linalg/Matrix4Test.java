@@ -0,0 +1,59 @@
+package linalg;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class Matrix4Test {
+
+    private static Matrix4 random(Random random) {
+        Matrix4 matrix = new Matrix4();
+        for(int i = 0; i < 4; i++) {
+            for(int j = 0; j < 4; j++) {
+                matrix.set(i, j, random.nextGaussian());
+            }
+        }
+        return matrix;
+    }
+
+    private static void assertSameEntries(Matrix4 expected, Matrix4 actual) {
+        for(int i = 0; i < 4; i++) {
+            for(int j = 0; j < 4; j++) {
+                assertEquals(i + ", " + j, expected.get(i, j), actual.get(i, j), 0);
+            }
+        }
+    }
+
+    @Test
+    public void multiply() {
+        Matrix4 a = new Matrix4().setRow(0, 1, 2, 0, 0).setRow(1, 0, 1, 0, 3);
+        Matrix4 b = new Matrix4().setRow(0, 0, 1, 0, 0).setRow(1, 1, 0, 0, 0).setRow(3, 0, 0, 2, 1);
+        Matrix4 dest = a.multiply(b, new Matrix4());
+        assertEquals(2, dest.get(0, 0), 0);
+        assertEquals(1, dest.get(0, 1), 0);
+        assertEquals(1, dest.get(1, 0), 0);
+        assertEquals(6, dest.get(1, 2), 0);
+        assertEquals(3, dest.get(1, 3), 0);
+        assertEquals(2, dest.get(3, 2), 0);
+    }
+
+    @Test
+    public void multiplyAliased() {
+        Random random = new Random(3);
+        for(int run = 0; run < 20; run++) {
+            Matrix4 a = random(random), b = random(random);
+            Matrix4 expected = a.multiply(b, new Matrix4());
+            Matrix4 left = new Matrix4().set(a);
+            assertSame(left, left.multiply(b, left));
+            assertSameEntries(expected, left);
+            Matrix4 right = new Matrix4().set(b);
+            assertSame(right, a.multiply(right, right));
+            assertSameEntries(expected, right);
+            Matrix4 square = a.multiply(a, new Matrix4()), both = new Matrix4().set(a);
+            both.multiply(both, both);
+            assertSameEntries(square, both);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package linalg;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class Vector3Test {
+    @Test
+    public void addInPlace() {
+        Vector3 v = new Vector3(1, 2, 3);
+        Vector3 result = v.add(new Vector3(4, 5, 6));
+        assertSame(v, result);
+        assertEquals(5, v.x(), 0.001);
+        assertEquals(7, v.y(), 0.001);
+        assertEquals(9, v.z(), 0.001);
+    }
+
+    @Test
+    public void subtractToDest() {
+        Vector3 v = new Vector3(1, 2, 3);
+        Vector3 dest = new Vector3();
+        v.subtract(new Vector3(3, 2, 1), dest);
+        assertEquals(-2, dest.x(), 0.001);
+        assertEquals(0, dest.y(), 0.001);
+        assertEquals(2, dest.z(), 0.001);
+        assertEquals(1, v.x(), 0.001);
+    }
+
+    @Test
+    public void crossAliased() {
+        Vector3 v = new Vector3(1, 0, 0);
+        v.cross(new Vector3(0, 1, 0), v);
+        assertEquals(0, v.x(), 0.001);
+        assertEquals(0, v.y(), 0.001);
+        assertEquals(1, v.z(), 0.001);
+    }
+
+    @Test
+    public void normalize() {
+        Vector3 v = new Vector3(2, 3, 4).normalize();
+        assertEquals(1, v.getMagnitude(), 0.001);
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void normalizeFail() {
+        new Vector3().normalize();
+    }
+
+    @Test
+    public void matrixTransformPoint() {
+        Matrix4 m = new Matrix4().set(0, 3, 1).set(1, 1, 2);
+        Vector3 p = m.transformPoint(1, 1, 1, new Vector3());
+        assertEquals(2, p.x(), 0.001);
+        assertEquals(2, p.y(), 0.001);
+        assertEquals(1, p.z(), 0.001);
+    }
+}
@@ -0,0 +1,185 @@
+package mesh;
+
+import linalg.EuclideanVector;
+import linalg.Vector3;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MeshTest {
+
+    @Test
+    public void packedStorage() throws Exception {
+        Mesh mesh = new Mesh();
+        mesh.addVertex(0, 0, 0);
+        mesh.addVertex(1, 0, 0);
+        mesh.addVertex(0, 1, 0);
+        mesh.addVertex(1, 1, 0);
+        mesh.addFace(0, 1, 2);
+        mesh.addFace(new Face(1, 3, 2));
+        assertEquals(4, mesh.getVertexCount());
+        assertEquals(2, mesh.getFaceCount());
+        assertEquals(3, mesh.getFaceOffsets()[1]);
+        assertEquals(3, mesh.getIndices()[4]);
+        assertEquals(1, mesh.getCoordinates()[9], 0.001);
+    }
+
+    @Test
+    public void views() throws Exception {
+        Mesh mesh = new Cube(2);
+        assertEquals(8, mesh.getVertices().size());
+        assertEquals(6, mesh.getFaces().size());
+        assertEquals(4, mesh.getFaces().get(0).getNumberOfVertices());
+        assertEquals(1, mesh.getVertex(0).x(), 0.001);
+        assertNotNull(mesh.getFaces().get(2).getSurfaceNormal());
+    }
+
+    @Test
+    public void vertexViewWritesThrough() throws Exception {
+        Mesh mesh = new Cube(2);
+        long count = mesh.getModificationCount();
+        double x = mesh.getVertex(0).x();
+        mesh.getVertices().get(0).getCoordinates()[0] = 5;
+        assertEquals(x, mesh.getVertex(0).x(), 0.001);
+        Vertex old = mesh.getVertices().set(0, new Vertex(5, 1, 1));
+        assertEquals(x, old.x(), 0.001);
+        assertEquals(5, mesh.getVertex(0).x(), 0.001);
+        assertTrue(mesh.getModificationCount() > count);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void faceViewReadOnly() throws Exception {
+        Mesh mesh = new Cube(2);
+        mesh.getFaces().set(0, new Face(0, 1, 2));
+    }
+
+    @Test
+    public void normalVectorFollowsVertices() throws Exception {
+        Mesh mesh = new Mesh();
+        mesh.addVertex(0, 0, 0);
+        mesh.addVertex(1, 0, 0);
+        mesh.addVertex(0, 1, 0);
+        mesh.addFace(0, 1, 2);
+        Face face = mesh.getFace(0);
+        EuclideanVector stored = face.getSurfaceNormal();
+        assertEquals(1, Math.abs(mesh.getNormalVector(face).getCoordinate(2)), 0.001);
+        // tilt the triangle into the x-z plane: the normal stored at the face is outdated now
+        mesh.setVertex(2, 0, 0, 1);
+        assertEquals(1, Math.abs(mesh.getNormalVector(face).getCoordinate(1)), 0.001);
+        assertEquals(0, mesh.getNormalVector(face, new Vector3()).z(), 0.001);
+        assertEquals(mesh.getNormals()[1], mesh.getNormalVector(face).getCoordinate(1), 0);
+        // a normal given with a face is neither used nor modified
+        Face other = new Face(0, 1, 2);
+        other.setSurfaceNormal(new EuclideanVector(1, 0, 0));
+        assertEquals(0, mesh.getNormalVector(other).x(), 0.001);
+        assertSame(stored, face.getSurfaceNormal());
+        assertEquals(1, other.getSurfaceNormal().x(), 0);
+    }
+
+    @Test
+    public void normalsOfFacesAddedBeforeTheirVertices() throws Exception {
+        Mesh mesh = new Mesh();
+        mesh.addVertex(0, 0, 0);
+        mesh.addVertex(1, 0, 0);
+        mesh.addVertex(0, 1, 0);
+        mesh.addFace(0, 1, 2);
+        mesh.addFace(0, 1, 3);
+        mesh.addFace(0, 2, 1);
+        // the second face refers to a missing vertex, so its normal is zero for now
+        double[] normals = mesh.getNormals();
+        assertEquals(1, normals[2], 0);
+        assertEquals(0, normals[3] * normals[3] + normals[4] * normals[4] + normals[5] * normals[5], 0);
+        assertEquals(-1, normals[8], 0);
+        mesh.addVertex(0, 0, 1);
+        normals = mesh.getNormals();
+        assertEquals(-1, normals[4], 0);
+        assertEquals(1, normals[2], 0);
+        assertEquals(-1, normals[8], 0);
+        // the normals stay up to date when more vertices and faces are added
+        mesh.addVertex(5, 5, 5);
+        mesh.addFace(0, 2, 3);
+        normals = mesh.getNormals();
+        assertEquals(-1, normals[4], 0);
+        assertEquals(1, normals[9], 0);
+    }
+
+    @Test(expected = Exception.class)
+    public void addFaceFail() throws Exception {
+        new Mesh().addFace(0, 1);
+    }
+
+    @Test
+    public void boundingVolumeHierarchy() throws Exception {
+        Mesh mesh = new Mesh();
+        for(int i = 0; i < 100; i++) {
+            mesh.addVertex(i, 0, 0);
+            mesh.addVertex(i, 1, 0);
+            mesh.addVertex(i + 1, 0, 0);
+            mesh.addFace(3 * i, 3 * i + 1, 3 * i + 2);
+        }
+        mesh.enableBoundingVolumeHierarchy();
+        BoundingVolumeHierarchy hierarchy = mesh.getBoundingVolumeHierarchy();
+        int root = hierarchy.getRoot();
+        assertEquals(100, hierarchy.getCount(root));
+        assertEquals(0, hierarchy.getBounds()[6 * root], 0.001);
+        assertEquals(100, hierarchy.getBounds()[6 * root + 3], 0.001);
+
+        mesh.addVertex(500, 0, 0);
+        mesh.addFace(0, 1, 300);
+        root = mesh.getBoundingVolumeHierarchy().getRoot();
+        assertEquals(101, hierarchy.getCount(root));
+        assertEquals(500, hierarchy.getBounds()[6 * root + 3], 0.001);
+    }
+
+    @Test
+    public void deferredNormals() throws Exception {
+        Mesh mesh = new Mesh();
+        mesh.addVertex(0, 0, 0);
+        mesh.addVertex(1, 0, 0);
+        mesh.addVertex(0, 1, 0);
+        mesh.addFace(0, 1, 2);
+        assertEquals(1, mesh.getNormals()[2], 0.001);
+
+        mesh.setVertex(2, 0, 0, 1);
+        assertEquals(0, mesh.getNormals()[2], 0.001);
+        assertEquals(-1, mesh.getNormals()[1], 0.001);
+    }
+
+    @Test
+    public void vertexNormals() throws Exception {
+        Mesh mesh = new Mesh();
+        mesh.addVertex(0, 0, 0);
+        mesh.addVertex(1, 0, 0);
+        mesh.addVertex(0, 1, 0);
+        mesh.addVertex(0, 0, 1);
+        mesh.addFace(0, 1, 2);
+        mesh.addFace(0, 3, 1);
+        double[] normals = mesh.getVertexNormals();
+        assertEquals(Math.sqrt(0.5), normals[1], 0.001);
+        assertEquals(Math.sqrt(0.5), normals[2], 0.001);
+        assertEquals(1, normals[8], 0.001);
+        assertEquals(1, normals[10], 0.001);
+
+        mesh.addVertex(5, 5, 5);
+        assertEquals(0, mesh.getVertexNormals()[13], 0.001);
+    }
+
+    @Test
+    public void modificationCount() throws Exception {
+        Mesh mesh = new Mesh();
+        long count = mesh.getModificationCount();
+        mesh.addVertex(0, 0, 0);
+        mesh.addVertex(1, 0, 0);
+        mesh.addVertex(0, 1, 0);
+        assertNotEquals(count, mesh.getModificationCount());
+        count = mesh.getModificationCount();
+        mesh.addFace(0, 1, 2);
+        assertNotEquals(count, mesh.getModificationCount());
+        count = mesh.getModificationCount();
+        mesh.getNormals();
+        mesh.getVertexNormals();
+        assertEquals(count, mesh.getModificationCount());
+        mesh.setVertex(2, 0, 0, 1);
+        assertNotEquals(count, mesh.getModificationCount());
+    }
+}
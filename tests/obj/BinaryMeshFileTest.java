@@ -0,0 +1,144 @@
+package obj;
+
+import mesh.Mesh;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BinaryMeshFileTest {
+    private static final FileTime MODIFIED = FileTime.fromMillis(1_600_000_000_000L);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A mesh which does not fit into the write buffer, with triangles and quads.
+     */
+    private static Mesh randomMesh() throws Exception {
+        Random random = new Random(11);
+        Mesh mesh = new Mesh();
+        for(int i = 0; i < 5000; i++) {
+            mesh.addVertex(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+        }
+        for(int i = 0; i < 8000; i++) {
+            if(random.nextBoolean()) {
+                mesh.addFace(random.nextInt(5000), random.nextInt(5000), random.nextInt(5000));
+            } else {
+                mesh.addFace(random.nextInt(5000), random.nextInt(5000), random.nextInt(5000), random.nextInt(5000));
+            }
+        }
+        return mesh;
+    }
+
+    private Path writeObj(String content) throws Exception {
+        Path path = this.folder.getRoot().toPath().resolve("mesh.obj");
+        Files.writeString(path, content);
+        Files.setLastModifiedTime(path, MODIFIED);
+        return path;
+    }
+
+    /**
+     * Overwrites the first coordinate stored in the cache, so we can tell whether a mesh was loaded from it.
+     */
+    private static void markCache(Path cache, double x) throws Exception {
+        try(FileChannel channel = FileChannel.open(cache, StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(Double.BYTES).order(ByteOrder.LITTLE_ENDIAN).putDouble(x).flip();
+            channel.write(value, 48);
+        }
+    }
+
+    private static long cachedModificationTime(Path cache) throws Exception {
+        return ByteBuffer.wrap(Files.readAllBytes(cache)).order(ByteOrder.LITTLE_ENDIAN).getLong(32);
+    }
+
+    private static double firstX(Mesh mesh) throws Exception {
+        return mesh.getVertex(0).x();
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        Mesh mesh = randomMesh();
+        for(boolean withNormals : new boolean[] {false, true}) {
+            File file = this.folder.newFile();
+            BinaryMeshFile.write(mesh, file.getPath(), withNormals);
+            Mesh read = BinaryMeshFile.read(file.getPath());
+            OBJParserTest.assertSameMesh(mesh, read);
+            assertArrayEquals(Arrays.copyOf(mesh.getNormals(), 3 * mesh.getFaceCount()),
+                    Arrays.copyOf(read.getNormals(), 3 * read.getFaceCount()), 0);
+        }
+    }
+
+    @Test
+    public void staleCache() throws Exception {
+        Path obj = this.writeObj("v 1 0 0\nv 0 1 0\nv 0 0 1\nf 1 2 3\n");
+        Path cache = Path.of(obj + ".vmesh");
+        assertEquals(1, firstX(BinaryMeshFile.readCached(obj.toString())), 0);
+        assertTrue(Files.exists(cache));
+        assertEquals(MODIFIED.toMillis(), cachedModificationTime(cache));
+        try(var files = Files.list(this.folder.getRoot().toPath())) {
+            assertEquals(2, files.count());
+        }
+
+        // same size and modification time: the cache is used
+        markCache(cache, 42);
+        assertEquals(42, firstX(BinaryMeshFile.readCached(obj.toString())), 0);
+        // only the modification time differs, but the content hash matches: the cache takes the new time
+        Files.setLastModifiedTime(obj, FileTime.fromMillis(MODIFIED.toMillis() + 5000));
+        assertEquals(42, firstX(BinaryMeshFile.readCached(obj.toString())), 0);
+        assertEquals(MODIFIED.toMillis() + 5000, cachedModificationTime(cache));
+        // same size, different modification time and content: the hash does not match
+        Files.writeString(obj, "v 3 0 0\nv 0 1 0\nv 0 0 1\nf 1 2 3\n");
+        Files.setLastModifiedTime(obj, FileTime.fromMillis(MODIFIED.toMillis() + 10000));
+        assertEquals(3, firstX(BinaryMeshFile.readCached(obj.toString())), 0);
+        // the size differs
+        markCache(cache, 42);
+        Files.writeString(obj, "v 5 0 0\nv 0 1 0\nv 0 0 1\nv 1 1 1\nf 1 2 3\n");
+        Files.setLastModifiedTime(obj, FileTime.fromMillis(MODIFIED.toMillis() + 10000));
+        Mesh mesh = BinaryMeshFile.readCached(obj.toString());
+        assertEquals(5, firstX(mesh), 0);
+        assertEquals(4, mesh.getVertexCount());
+        // the rewritten cache is used again
+        markCache(cache, 42);
+        assertEquals(42, firstX(BinaryMeshFile.readCached(obj.toString())), 0);
+    }
+
+    @Test
+    public void brokenCache() throws Exception {
+        Path obj = this.writeObj("v 1 0 0\nv 0 1 0\nv 0 0 1\nf 1 2 3\nf 3 2 1\n");
+        Path cache = Path.of(obj + ".vmesh");
+        Mesh expected = BinaryMeshFile.readCached(obj.toString());
+        byte[] valid = Files.readAllBytes(cache);
+        // truncated after the header, truncated inside the header, and a face referring to a missing vertex
+        byte[] brokenIndex = valid.clone();
+        ByteBuffer.wrap(brokenIndex).order(ByteOrder.LITTLE_ENDIAN).putInt(48 + 24 * 3 + 4 * 3, 7);
+        byte[][] broken = {Arrays.copyOf(valid, valid.length - 1), Arrays.copyOf(valid, 60),
+                Arrays.copyOf(valid, 20), brokenIndex, new byte[0]};
+        for(byte[] content : broken) {
+            Files.write(cache, content);
+            try {
+                BinaryMeshFile.read(cache.toString());
+                fail("Read a broken mesh file.");
+            } catch (RuntimeException e) {
+                throw new AssertionError("Reading a broken mesh file crashed.", e);
+            } catch (Exception e) {
+                // expected
+            }
+            OBJParserTest.assertSameMesh(expected, BinaryMeshFile.readCached(obj.toString()));
+            // the cache was written again
+            assertArrayEquals(valid, Files.readAllBytes(cache));
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package obj;
+
+import mesh.Mesh;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OBJParserTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Mesh parse(String content) throws Exception {
+        File file = this.folder.newFile();
+        Files.writeString(file.toPath(), content, StandardCharsets.US_ASCII);
+        return OBJParser.read(file.toPath(), 1);
+    }
+
+    static void assertSameMesh(Mesh expected, Mesh actual) {
+        assertEquals(expected.getVertexCount(), actual.getVertexCount());
+        assertEquals(expected.getFaceCount(), actual.getFaceCount());
+        int indexCount = expected.getFaceOffsets()[expected.getFaceCount()];
+        assertArrayEquals(Arrays.copyOf(expected.getCoordinates(), 3 * expected.getVertexCount()),
+                Arrays.copyOf(actual.getCoordinates(), 3 * actual.getVertexCount()), 0);
+        assertArrayEquals(Arrays.copyOf(expected.getFaceOffsets(), expected.getFaceCount() + 1),
+                Arrays.copyOf(actual.getFaceOffsets(), actual.getFaceCount() + 1));
+        assertArrayEquals(Arrays.copyOf(expected.getIndices(), indexCount),
+                Arrays.copyOf(actual.getIndices(), indexCount));
+    }
+
+    /**
+     * Parses every number as all three coordinates of a vertex and compares the bits with Double.parseDouble.
+     */
+    private void assertExact(String... numbers) throws Exception {
+        StringBuilder content = new StringBuilder();
+        for(String number : numbers) {
+            content.append("v ").append(number).append(' ').append(number).append(' ').append(number).append('\n');
+        }
+        double[] coordinates = this.parse(content.toString()).getCoordinates();
+        for(int i = 0; i < numbers.length; i++) {
+            long expected = Double.doubleToRawLongBits(Double.parseDouble(numbers[i]));
+            for(int k = 0; k < 3; k++) {
+                assertEquals(numbers[i], expected, Double.doubleToRawLongBits(coordinates[3 * i + k]));
+            }
+        }
+    }
+
+    @Test
+    public void parseDoubleExact() throws Exception {
+        this.assertExact(
+                // mantissas around 2^53
+                "9007199254740991", "9007199254740992", "9007199254740993", "9007199254740995",
+                "900719925474099.3", "0.9007199254740993", "9007199254740993e-3", "9007199254740993e3",
+                // 18 and 19 significant digits
+                "123456789012345678", "1234567890123456789", "0.123456789012345678", "0.1234567890123456789",
+                "999999999999999999", "9999999999999999999", "0.30000000000000004", "000000000000000000123.5",
+                // exponents at the end of the exact powers of ten and beyond
+                "1e22", "1e23", "1e-22", "1e-23", "1E5", "1e+5", "123.456e-7", "7e-22", "3e22", "5e-324",
+                "4.9e-324", "2.2250738585072014E-308", "1.7976931348623157e308", "1e400", "1e-400",
+                // signs and incomplete numbers
+                "+1.5", "-2.5", "-0", "+0", "-0.0", ".5", "5.", "-.5", "+5.", "0", "1000000000000000000000",
+                // negative zero in every spelling, on the fast and the slow path
+                "-0.", "-.0", "-000.000", "-0e5", "-0.0E-7", "-0e400", "-1e-400", "-0.00000000000000000000000");
+        // the coordinates are read in the order x, z, y
+        double[] zeros = this.parse("v -0.0 -0 0\n").getCoordinates();
+        for(int k = 0; k < 3; k++) {
+            assertEquals(Double.doubleToRawLongBits(k == 1 ? 0.0 : -0.0), Double.doubleToRawLongBits(zeros[k]));
+        }
+    }
+
+    @Test
+    public void parseDoubleRandom() throws Exception {
+        Random random = new Random(8);
+        String[] numbers = new String[3000];
+        for(int i = 0; i < 1000; i++) {
+            numbers[i] = Double.toString(random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20));
+            numbers[1000 + i] = String.format("%.6f", 200 * random.nextDouble() - 100);
+            StringBuilder digits = new StringBuilder(random.nextBoolean() ? "-" : "");
+            int length = 1 + random.nextInt(20);
+            for(int k = 0; k < length; k++) {
+                digits.append((char) ('0' + random.nextInt(10)));
+            }
+            digits.insert(digits.length() - random.nextInt(length), '.');
+            numbers[2000 + i] = digits.append('e').append(random.nextInt(60) - 30).toString();
+        }
+        this.assertExact(numbers);
+    }
+
+    @Test
+    public void faces() throws Exception {
+        Mesh mesh = this.parse("""
+                # a comment
+                v 0 0 0
+                v 1 0 0
+                v 1 1 0
+                f 1/2/3 2/3/1 3//2
+                v 0 1 0
+                vt 0.5 0.5
+                vn 0 0 1
+                f -1 -2 -3
+                f -4/1 2/2/2 -2 4
+                """);
+        assertEquals(4, mesh.getVertexCount());
+        assertEquals(3, mesh.getFaceCount());
+        assertArrayEquals(new int[] {0, 3, 6, 10}, Arrays.copyOf(mesh.getFaceOffsets(), 4));
+        assertArrayEquals(new int[] {0, 1, 2, 3, 2, 1, 0, 1, 2, 3}, Arrays.copyOf(mesh.getIndices(), 10));
+        // the last coordinate is the "up"-direction
+        assertEquals(1, mesh.getVertex(3).z(), 0);
+    }
+
+    @Test
+    public void lineEndings() throws Exception {
+        String content = "v 1.5 -2 3e-2\nv .5 5. -0\nv 7 8 9\n\nf 1/1/1 2/2/2 3/3/3\nf -3 -2 -1\n";
+        Mesh unix = this.parse(content);
+        assertSameMesh(unix, this.parse(content.replace("\n", "\r\n")));
+        assertSameMesh(unix, this.parse(content.replace(" ", " \t ").replace("\n", " \r\n")));
+        // without a line break at the end of the file
+        assertSameMesh(unix, this.parse(content.strip()));
+    }
+
+    @Test
+    public void chunksMatchSingleThread() throws Exception {
+        // every face refers to the vertices before it, mostly with relative ids
+        Random random = new Random(9);
+        StringBuilder content = new StringBuilder("v 0 0 0\nv 1 0 0\n");
+        int vertexCount = 2;
+        for(int i = 0; i < 2000; i++) {
+            content.append(String.format("v %.4f %.4f %.4f\n", random.nextDouble(), random.nextDouble(), random.nextDouble()));
+            vertexCount++;
+            if(random.nextInt(4) == 0) {
+                content.append("f 1 2 ").append(vertexCount).append('\n');
+            } else {
+                content.append(random.nextBoolean() ? "f -1 -2 -3\n" : "f -3/1/1 -2//2 -1/3\n");
+            }
+        }
+        File file = this.folder.newFile();
+        Path path = file.toPath();
+        Files.writeString(path, content, StandardCharsets.US_ASCII);
+        Mesh expected = OBJParser.read(path, 1);
+        assertEquals(vertexCount, expected.getVertexCount());
+        assertEquals(2000, expected.getFaceCount());
+        int relativeAfterBoundary = 0;
+        for(int threads : new int[] {2, 3, 7, 16}) {
+            try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long[] bounds = OBJParser.split(channel, threads);
+                for(int i = 1; i < threads; i++) {
+                    ByteBuffer bytes = ByteBuffer.allocate(3);
+                    channel.read(bytes, bounds[i] - 1);
+                    assertEquals('\n', bytes.get(0));
+                    if(bytes.get(1) == 'f' && bytes.get(2) == ' ' && content.charAt((int) bounds[i] + 2) == '-') {
+                        relativeAfterBoundary++;
+                    }
+                }
+            }
+            assertSameMesh(expected, OBJParser.read(path, threads, 1));
+            // the chunks are parsed in parallel only if they are large enough
+            assertSameMesh(expected, OBJParser.read(path, threads, file.length() / 2));
+        }
+        assertTrue(relativeAfterBoundary > 0);
+    }
+
+    @Test
+    public void malformedLines() throws Exception {
+        String vertices = "v 0 0 0\nv 1 0 0\nv 0 1 0\n";
+        String[] lines = {
+                "v 1 2", "v 1 2 x", "v 1.2.3 0 0", "v 1e 0 0", "v 1e+ 0 0", "v . 0 0", "v - 0 0", "v 1-2 0 0",
+                "f 1 2", "f 1 2 3 1 2", "f 1 2 x", "f 1 2 -", "f 1 2 3-", "f 1 2 /3", "f 0 1 2", "f 1 2 4",
+                "f -1 -2 -4", "f -0 1 2", "f 1 2 99999999999", "f 1 2 3\r\nf 1 2"};
+        for(String line : lines) {
+            try {
+                this.parse(vertices + line + "\n");
+                fail("Parsed the malformed line '" + line + "'.");
+            } catch (RuntimeException e) {
+                throw new AssertionError("Parsing '" + line + "' crashed.", e);
+            } catch (Exception e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package obj;
+
+import mesh.Mesh;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OBJWriterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Locale locale;
+
+    // Vertex.exportToObj formats with the default locale, the writer always with a decimal point
+    @Before
+    public void setLocale() {
+        this.locale = Locale.getDefault();
+        Locale.setDefault(Locale.ROOT);
+    }
+
+    @After
+    public void restoreLocale() {
+        Locale.setDefault(this.locale);
+    }
+
+    /**
+     * Writes every value as all coordinates of a vertex and compares each line with Vertex.exportToObj.
+     */
+    private void assertSameAsExport(List<Double> values) throws Exception {
+        Mesh mesh = new Mesh();
+        for(int i = 0; i < values.size(); i++) {
+            double value = values.get(i);
+            // the coordinates are written in a different order, so one of them differs
+            mesh.addVertex(value, -value, value);
+        }
+        mesh.addFace(0, 1, 2);
+        File file = this.folder.newFile();
+        try(OBJWriter writer = new OBJWriter(file.toPath())) {
+            writer.write(mesh);
+        }
+        List<String> lines = Files.readAllLines(file.toPath());
+        assertEquals(values.size() + 1, lines.size());
+        for(int i = 0; i < values.size(); i++) {
+            assertEquals(values.get(i).toString(), mesh.getVertex(i).exportToObj(), lines.get(i) + "\n");
+        }
+        assertEquals(mesh.getFace(0).exportToObj(), lines.get(values.size()) + "\n");
+    }
+
+    @Test
+    public void specialValues() throws Exception {
+        List<Double> values = new ArrayList<>(List.of(
+                // ties which are exact doubles and ties which are not
+                0.015625, 1.015625, 1234.015625, 0.000005, 0.123455, 2.500005, 0.999995, 999999.999995,
+                // negative zero, negative values rounded to zero, tiny and large magnitudes
+                0.0, -0.0, -0.000001, -0.000004999, 1e-300, Double.MIN_VALUE, 1e5, 999999.5, 1e6 - 1e-6, 1e6,
+                1e6 + 0.5, 1e15, 1e300, Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY));
+        for(double tie : new double[] {0.015625, 0.123455, 2.500005, 0.000005, 999999.999995, 99999.999995}) {
+            // the neighbours of a tie round differently than the tie itself
+            values.add(Math.nextUp(tie));
+            values.add(Math.nextDown(tie));
+            values.add(Math.nextDown(Math.nextDown(tie)));
+            values.add(tie + 1e-12);
+            values.add(tie - 1e-12);
+        }
+        int size = values.size();
+        for(int i = 0; i < size; i++) {
+            values.add(-values.get(i));
+        }
+        this.assertSameAsExport(values);
+    }
+
+    @Test
+    public void randomValues() throws Exception {
+        Random random = new Random(12);
+        List<Double> values = new ArrayList<>();
+        for(int i = 0; i < 3000; i++) {
+            values.add(random.nextGaussian() * Math.pow(10, random.nextInt(16) - 8));
+            // numbers read from a file with six (or seven) decimal places are often close to a tie
+            values.add(Double.parseDouble(String.format(Locale.ROOT, "%.6f", 2000 * random.nextDouble() - 1000)));
+            values.add(Double.parseDouble(String.format(Locale.ROOT, "%.7f", 20 * random.nextDouble() - 10)));
+        }
+        this.assertSameAsExport(values);
+    }
+}
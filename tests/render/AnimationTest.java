@@ -0,0 +1,110 @@
+package render;
+
+import mesh.Cube;
+import mesh.Mesh;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AnimationTest {
+    private static final int FRAMES = 10;
+
+    /**
+     * Collects copies of all frames and records whether it was closed.
+     */
+    private static class Recorder implements Animation.FrameWriter {
+        final List<int[]> frames = new ArrayList<>();
+        boolean closed;
+
+        @Override
+        public void write(int frame, BufferedImage image) {
+            assertEquals(this.frames.size(), frame);
+            this.frames.add(((DataBufferInt) image.getRaster().getDataBuffer()).getData().clone());
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void framesMatchScene() throws Exception {
+        Mesh triangles = SceneTest.randomTriangles(13, 200), cube = new Cube(1.5);
+        for(boolean smooth : new boolean[] {false, true}) {
+            Scene scene = SceneTest.scene(4, smooth, triangles, cube);
+            Animation.FrameTransform transform = Animation.orbit(FRAMES);
+            Animation animation = new Animation(scene, FRAMES, transform);
+            animation.setThreadCount(3);
+            // fewer slots than frames, so the ring is reused
+            animation.setQueueCapacity(2);
+            Recorder recorder = new Recorder();
+            animation.render(recorder);
+            assertTrue(recorder.closed);
+            assertEquals(FRAMES, recorder.frames.size());
+
+            Scene reference = SceneTest.scene(1, smooth, triangles, cube);
+            for(int frame = 0; frame < FRAMES; frame++) {
+                reference.getCamera().set(scene.getCamera());
+                transform.apply(frame, reference.getCamera());
+                assertArrayEquals("frame " + frame, SceneTest.render(reference), recorder.frames.get(frame));
+            }
+            // the camera moved
+            assertFalse(Arrays.equals(recorder.frames.get(0), recorder.frames.get(FRAMES / 2)));
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void failuresAreRethrown() throws Exception {
+        Scene scene = SceneTest.scene(1, false, new Cube(1.5));
+        Throwable[] failures = {new StackOverflowError("transform"), new IllegalStateException("transform")};
+        for(Throwable failure : failures) {
+            Animation animation = new Animation(scene, 50, (frame, camera) -> {
+                if(frame == 7) {
+                    if(failure instanceof Error) {
+                        throw (Error) failure;
+                    }
+                    throw (RuntimeException) failure;
+                }
+            });
+            animation.setThreadCount(3);
+            animation.setQueueCapacity(4);
+            Recorder recorder = new Recorder();
+            try {
+                animation.render(recorder);
+                fail("The failure of the transform was not rethrown.");
+            } catch (Throwable e) {
+                assertSame(failure, e);
+            }
+            assertTrue(recorder.closed);
+            assertTrue(recorder.frames.size() <= 7);
+        }
+
+        // a failing writer stops the rendering threads
+        Animation animation = new Animation(scene, 50, (frame, camera) -> {});
+        animation.setThreadCount(2);
+        Animation.FrameWriter failing = new Animation.FrameWriter() {
+            @Override
+            public void write(int frame, BufferedImage image) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try {
+            animation.render(failing);
+            fail("The failure of the writer was not rethrown.");
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+    }
+}
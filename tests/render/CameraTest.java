@@ -0,0 +1,59 @@
+package render;
+
+import linalg.EuclideanVector;
+import linalg.Vector3;
+import mesh.Cube;
+import mesh.Mesh;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CameraTest {
+
+    @Test
+    public void projectVerticesMatchesProject() {
+        Random random = new Random(5);
+        Camera camera = new Scene(320, 240).getCamera();
+        Vector3 screen = new Vector3();
+        for(int run = 0; run < 50; run++) {
+            camera.setPosition(new EuclideanVector(10 * random.nextGaussian(), 10 * random.nextGaussian(),
+                    10 * random.nextGaussian()));
+            int count = 1 + random.nextInt(100);
+            double[] coordinates = new double[3 * count], projected = new double[3 * count];
+            for(int i = 0; i < coordinates.length; i++) {
+                coordinates[i] = 5 * random.nextGaussian();
+            }
+            camera.projectVertices(coordinates, count, projected);
+            int inSight = 0;
+            for(int k = 0; k < count; k++) {
+                if(!camera.project(coordinates[3*k], coordinates[3*k + 1], coordinates[3*k + 2], screen)) {
+                    // vertices out of sight are projected all the same, the clipper deals with them
+                    continue;
+                }
+                inSight++;
+                assertEquals(screen.x(), projected[3*k], 0);
+                assertEquals(screen.y(), projected[3*k + 1], 0);
+                assertEquals(screen.z(), projected[3*k + 2], 0);
+            }
+            assertTrue(inSight > 0 || count < 10);
+        }
+    }
+
+    @Test
+    public void sharedVerticesAreProjectedOnce() throws Exception {
+        Mesh cube = new Cube(1.5), triangles = SceneTest.randomTriangles(59, 50);
+        Scene scene = SceneTest.scene(1, false, cube, triangles);
+        scene.render();
+        // the six quads of the cube share its eight vertices
+        assertEquals(6 * 4, cube.getFaceOffsets()[cube.getFaceCount()]);
+        assertEquals(8 + triangles.getVertexCount(), scene.getStatistics().getVerticesProjected());
+        scene.render();
+        assertTrue(scene.getStatistics().isSkipped());
+        assertEquals(0, scene.getStatistics().getVerticesProjected());
+        scene.getCamera().setPosition(new EuclideanVector(2, 4, 3));
+        scene.render();
+        assertEquals(8 + triangles.getVertexCount(), scene.getStatistics().getVerticesProjected());
+    }
+}
@@ -0,0 +1,101 @@
+package render;
+
+import mesh.Mesh;
+import mesh.Vertex;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ClipperTest {
+
+    /**
+     * @return the number of drawn pixels in the given row (in screen coordinates) of the frame
+     */
+    private static int drawnInRow(Scene scene, int[] pixels, int y) {
+        int width = scene.getWidth(), row = (y + scene.getHeight() / 2) * width, count = 0;
+        for(int x = 0; x < width; x++) {
+            if(pixels[row + x] != pixels[0]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void nearPlaneCrossingTriangleIsDrawn() {
+        // a triangle on the floor (1 below the camera) whose tip lies 5 behind the camera: at the depth d its half
+        // width is (d + 5) / 10, which is projected to the row y = 180 / d with a half width of 18 + y / 2 pixels
+        Vertex tip = new Vertex(0, -10, -1);
+        Scene scene = SceneTest.axisAlignedScene();
+        scene.render();
+        scene.rasterizeTriangle(new Vertex(1, 0, -1), new Vertex(-1, 0, -1), tip, Color.fromRGB((byte) 200, (byte) 100, (byte) 0));
+        assertEquals(1, scene.getStatistics().getTrianglesClipped());
+        int[] pixels = SceneTest.frame(scene);
+        for(int y = -scene.getHeight() / 2; y < scene.getHeight() / 2; y++) {
+            int count = drawnInRow(scene, pixels, y);
+            if(y < 36) {
+                assertEquals("row " + y, 0, count);
+            } else if(y > 36) {
+                assertEquals("row " + y, 2 * (18 + y / 2.0) + 1, count, 1.5);
+            }
+        }
+
+        // nothing is left of a triangle behind the camera
+        scene.rasterizeTriangle(new Vertex(1, -6, -1), new Vertex(-1, -6, -1), tip, Color.fromRGB((byte) 0, (byte) 0, (byte) 200));
+        assertArrayEquals(pixels, SceneTest.frame(scene));
+    }
+
+    @Test
+    public void nearPlaneCrossingFaceIsDrawn() throws Exception {
+        // like above, but tilted towards the camera, so the face is not culled as a back-face
+        Vertex left = new Vertex(1, 0, -2), right = new Vertex(-1, 0, -2), tip = new Vertex(0, -10, -0.5);
+        Mesh mesh = new Mesh();
+        mesh.addVertex(left);
+        mesh.addVertex(right);
+        mesh.addVertex(tip);
+        mesh.addFace(0, 1, 2);
+        mesh.addFace(0, 2, 1);
+        Scene scene = SceneTest.axisAlignedScene();
+        scene.addLight(new PointLight(new Vertex(0, -5, 5), 2));
+        scene.addMesh(mesh);
+        int[] rendered = SceneTest.render(scene);
+        assertEquals(1, scene.getStatistics().getFacesBackFaceCulled());
+        assertEquals(1, scene.getStatistics().getTrianglesClipped());
+
+        Scene single = SceneTest.axisAlignedScene();
+        single.render();
+        single.rasterizeTriangle(left, right, tip, Color.fromRGB((byte) 200, (byte) 100, (byte) 0));
+        int[] rasterized = SceneTest.frame(single);
+        assertTrue(SceneTest.drawn(rasterized) > 3000);
+        // both cover the same pixels
+        for(int i = 0; i < rendered.length; i++) {
+            assertEquals("pixel " + i, rasterized[i] != rasterized[0], rendered[i] != rendered[0]);
+        }
+    }
+
+    @Test
+    public void trianglesBeyondGuardBandAreDrawn() {
+        int color = Color.fromRGB((byte) 200, (byte) 100, (byte) 0);
+        // a floor reaching far beyond the guard band to the sides covers everything below the horizon
+        Scene scene = SceneTest.axisAlignedScene();
+        scene.render();
+        scene.rasterizeTriangle(new Vertex(1e7, -4, -1), new Vertex(-1e7, -4, -1), new Vertex(0, 1e7, -1), color);
+        assertEquals(1, scene.getStatistics().getTrianglesClipped());
+        int[] pixels = SceneTest.frame(scene);
+        int height = scene.getHeight();
+        for(int y = -height / 2; y < height / 2; y++) {
+            if(y != 0) {
+                assertEquals("row " + y, y < 0 ? 0 : scene.getWidth(), drawnInRow(scene, pixels, y));
+            }
+        }
+        assertEquals(SceneTest.drawn(pixels), scene.getStatistics().getPixelsWritten());
+
+        // a wall whose corners are beyond the guard band in both directions covers the whole screen (in one color)
+        scene = SceneTest.axisAlignedScene();
+        scene.render();
+        scene.rasterizeTriangle(new Vertex(1e6, 0, -1e6), new Vertex(-1e6, 0, -1e6), new Vertex(0, 0, 1e6), color);
+        assertEquals(1, scene.getStatistics().getTrianglesClipped());
+        assertEquals(scene.getWidth() * height, scene.getStatistics().getPixelsWritten());
+        assertEquals(0, SceneTest.drawn(SceneTest.frame(scene)));
+    }
+}
@@ -0,0 +1,80 @@
+package render;
+
+import linalg.Vector3;
+import mesh.Vertex;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LightGridTest {
+
+    @Test
+    public void attenuatedLightEndsAtRadius() {
+        PointLight light = new PointLight(new Vertex(1, 2, 3), 2, 1.5);
+        Vector3 normal = new Vector3(1, 0, 0), center = new Vector3();
+        assertEquals(1.5, light.getBounds(center), 0);
+        assertEquals(1, center.x(), 0);
+        assertEquals(2, center.y(), 0);
+        assertEquals(3, center.z(), 0);
+        assertTrue(light.intensityAt(new Vector3(2, 2, 3), normal) > 0);
+        // the window fades the light out before the radius, so there is no jump at it
+        assertTrue(light.intensityAt(new Vector3(2.49, 2, 3), normal) < 1e-3);
+        assertEquals(0, light.intensityAt(new Vector3(2.5, 2, 3), normal), 0);
+        assertEquals(0, light.intensityAt(new Vector3(3, 2, 3), normal), 0);
+        assertEquals(0, light.intensityAt(new Vector3(2, 3.5, 4), normal), 0);
+        assertEquals(0, light.intensityAt(new Vertex(4, 2, 3), new Vertex(1, 0, 0)), 0);
+        // without a radius, the light reaches everywhere
+        PointLight global = new PointLight(new Vertex(1, 2, 3), 2);
+        assertEquals(Double.POSITIVE_INFINITY, global.getBounds(center), 0);
+        assertEquals(2 * 2.0 / 4, global.intensityAt(new Vector3(3, 2, 3), normal), 1e-15);
+    }
+
+    @Test
+    public void gridMatchesAllLights() {
+        Random random = new Random(17);
+        List<Light> lights = new ArrayList<>();
+        lights.add(new PointLight(new Vertex(0, 8, 3), 5));
+        for(int l = 0; l < 40; l++) {
+            lights.add(new PointLight(new Vertex(10 * random.nextDouble() - 5, 10 * random.nextDouble() - 5,
+                    4 * random.nextDouble() - 2), 0.5 + random.nextDouble(), 0.5 + 2 * random.nextDouble()));
+        }
+        LightGrid grid = new LightGrid();
+        grid.build(lights);
+        RenderStatistics statistics = new RenderStatistics();
+        Vector3 position = new Vector3(), normal = new Vector3();
+        int lit = 0;
+        for(int run = 0; run < 5000; run++) {
+            // including points outside of the grid
+            position.set(14 * random.nextDouble() - 7, 14 * random.nextDouble() - 7, 8 * random.nextDouble() - 4);
+            normal.set(random.nextGaussian(), random.nextGaussian(), random.nextGaussian()).normalize();
+            double expected = 0;
+            int reaching = 0;
+            for(Light light : lights) {
+                double intensity = light.intensityAt(position, normal);
+                expected += intensity;
+                if(intensity != 0) {
+                    reaching++;
+                }
+            }
+            if(reaching > 1) {
+                lit++;
+            }
+            // the lights are summed in another order
+            assertEquals(position.toString(), expected, grid.intensityAt(position, normal, statistics), 1e-12);
+        }
+        assertTrue(lit > 500);
+        // only the global light and the few lights around each point are evaluated
+        assertTrue(statistics.getLightsEvaluated() < 5000 * 5);
+        assertTrue(statistics.getLightsEvaluated() >= 5000);
+
+        // rebuilding with only the global light empties the cells
+        grid.build(lights.subList(0, 1));
+        position.set(0, 0, 0);
+        normal.set(0, 1, 0);
+        assertEquals(lights.get(0).intensityAt(position, normal), grid.intensityAt(position, normal, statistics), 0);
+    }
+}
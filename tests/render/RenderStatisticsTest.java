@@ -0,0 +1,130 @@
+package render;
+
+import linalg.EuclideanVector;
+import mesh.Cube;
+import mesh.Mesh;
+import org.junit.Test;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RenderStatisticsTest {
+
+    @Test
+    public void cubeCounts() {
+        for(int threads : new int[] {1, 3}) {
+            Scene scene = SceneTest.scene(threads, false, new Cube(1.5));
+            int[] pixels = SceneTest.render(scene);
+            RenderStatistics statistics = scene.getStatistics();
+            // the camera sees three of the six quads, each split into two triangles
+            assertEquals(6, statistics.getFacesSubmitted());
+            assertEquals(0, statistics.getFacesFrustumCulled());
+            assertEquals(3, statistics.getFacesBackFaceCulled());
+            assertEquals(6, statistics.getTrianglesRasterized());
+            assertEquals(0, statistics.getTrianglesCulled());
+            assertEquals(0, statistics.getTrianglesClipped());
+            assertEquals(0, statistics.getTrianglesOccluded());
+            // the visible faces of a convex mesh do not overlap, so every pixel is written once
+            assertEquals(SceneTest.drawn(pixels), statistics.getPixelsWritten());
+            assertEquals(statistics.getPixelsWritten(), statistics.getPixelsTested());
+            assertFalse(statistics.isSkipped());
+        }
+    }
+
+    @Test
+    public void serialAndTiledTotalsAgree() throws Exception {
+        Mesh triangles = SceneTest.randomTriangles(53, 400), cube = new Cube(1.5);
+        for(boolean smooth : new boolean[] {false, true}) {
+            Scene serial = SceneTest.scene(1, smooth, triangles, cube);
+            serial.render();
+            RenderStatistics expected = serial.getStatistics();
+            assertTrue(expected.getPixelsWritten() > 0);
+            // overlapping triangles are tested at pixels which are already covered by nearer ones
+            assertTrue(expected.getPixelsTested() > expected.getPixelsWritten());
+            assertEquals(expected.getFacesSubmitted(), triangles.getFaceCount() + cube.getFaceCount());
+            for(int threads : new int[] {2, 3, 8}) {
+                Scene tiled = SceneTest.scene(threads, smooth, triangles, cube);
+                tiled.render();
+                RenderStatistics actual = tiled.getStatistics();
+                String message = "smooth " + smooth + ", " + threads + " threads";
+                assertEquals(message, expected.getFacesSubmitted(), actual.getFacesSubmitted());
+                assertEquals(message, expected.getFacesBackFaceCulled(), actual.getFacesBackFaceCulled());
+                assertEquals(message, expected.getTrianglesRasterized(), actual.getTrianglesRasterized());
+                assertEquals(message, expected.getTrianglesCulled(), actual.getTrianglesCulled());
+                assertEquals(message, expected.getPixelsWritten(), actual.getPixelsWritten());
+                assertTrue(message, actual.getPixelsTested() >= actual.getPixelsWritten());
+            }
+        }
+    }
+
+    @Test
+    public void listenerIsCalledOncePerFrame() {
+        Scene scene = SceneTest.scene(2, false, new Cube(1.5));
+        List<RenderStatistics> frames = new ArrayList<>();
+        RenderListener listener = (rendered, statistics) -> {
+            assertSame(scene, rendered);
+            assertSame(scene.getStatistics(), statistics);
+            frames.add(statistics);
+        };
+        scene.addRenderListener(listener);
+        scene.render();
+        assertEquals(1, frames.size());
+        // a skipped frame is a frame as well
+        scene.render();
+        assertEquals(2, frames.size());
+        assertTrue(frames.get(1).isSkipped());
+        scene.getCamera().setPosition(new EuclideanVector(2, 4, 3));
+        scene.render();
+        assertEquals(3, frames.size());
+        assertEquals(6, frames.get(2).getFacesSubmitted());
+        scene.removeRenderListener(listener);
+        scene.render();
+        assertEquals(3, frames.size());
+    }
+
+    @Test
+    public void monitorIsExportedViaJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("vymir:type=Scene,name=" + ObjectName.quote("statistics test"));
+        Scene scene = SceneTest.scene(1, false, new Cube(1.5));
+        RenderMonitor monitor = RenderMonitor.register(scene, "statistics test");
+        try {
+            assertTrue(server.isRegistered(name));
+            scene.render();
+            scene.getCamera().setPosition(new EuclideanVector(2, 4, 3));
+            scene.render();
+            assertEquals(2L, server.getAttribute(name, "Frames"));
+            assertEquals(6L, server.getAttribute(name, "LastFacesSubmitted"));
+            assertEquals(3L, server.getAttribute(name, "LastFacesBackFaceCulled"));
+            assertEquals(scene.getStatistics().getPixelsWritten(), server.getAttribute(name, "LastPixelsWritten"));
+            assertTrue((Double) server.getAttribute(name, "AverageFrameTime") > 0);
+            assertSame(scene.getStatistics(), monitor.getLastStatistics());
+            try {
+                RenderMonitor.register(scene, "statistics test");
+                fail("Registered two monitors under the same name.");
+            } catch (InstanceAlreadyExistsException e) {
+                // expected
+            }
+        } finally {
+            monitor.unregister();
+        }
+        assertFalse(server.isRegistered(name));
+        // the monitor does not follow the scene anymore and the name can be used again
+        scene.invalidate();
+        scene.render();
+        assertEquals(2, monitor.getFrames());
+        RenderMonitor again = RenderMonitor.register(scene, "statistics test");
+        scene.invalidate();
+        scene.render();
+        assertEquals(1L, server.getAttribute(name, "Frames"));
+        again.unregister();
+        again.unregister();
+        assertFalse(server.isRegistered(name));
+    }
+}
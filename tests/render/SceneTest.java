@@ -0,0 +1,549 @@
+package render;
+
+import linalg.EuclideanVector;
+import linalg.Vector3;
+import mesh.Cube;
+import mesh.Mesh;
+import mesh.Vertex;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SceneTest {
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+
+    /**
+     * Returns a mesh of count random, overlapping triangles around the lock point of the default camera,
+     * which cover most of the frame.
+     */
+    static Mesh randomTriangles(long seed, int count) throws Exception {
+        Random random = new Random(seed);
+        Mesh mesh = new Mesh();
+        for(int t = 0; t < count; t++) {
+            double x = 4 * random.nextDouble() - 2, y = 4 * random.nextDouble() - 2, z = 3 * random.nextDouble() - 1;
+            for(int k = 0; k < 3; k++) {
+                mesh.addVertex(x + 1.5 * random.nextDouble() - 0.75, y + 1.5 * random.nextDouble() - 0.75,
+                        z + 1.5 * random.nextDouble() - 0.75);
+            }
+            mesh.addFace(3 * t, 3 * t + 1, 3 * t + 2);
+        }
+        return mesh;
+    }
+
+    static Scene scene(int threads, boolean smooth, Mesh ... meshes) {
+        Scene scene = new Scene(WIDTH, HEIGHT);
+        scene.setThreadCount(threads);
+        scene.setSmoothShading(smooth);
+        scene.addLight(new PointLight(new Vertex(-1, 5, 2), 2));
+        for(Mesh mesh : meshes) {
+            scene.addMesh(mesh);
+        }
+        return scene;
+    }
+
+    static int[] frame(Scene scene) {
+        int[] pixels = new int[scene.getWidth() * scene.getHeight()];
+        scene.copyFrameBuffer(pixels);
+        return pixels;
+    }
+
+    /**
+     * @return the number of pixels which differ from the background (the top left pixel)
+     */
+    static int drawn(int[] pixels) {
+        int count = 0;
+        for(int pixel : pixels) {
+            if(pixel != pixels[0]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static int[] render(Scene scene) {
+        scene.render();
+        return frame(scene);
+    }
+
+    @Test
+    public void tiledMatchesSerial() throws Exception {
+        Mesh triangles = randomTriangles(1, 400), cube = new Cube(1.5);
+        for(boolean smooth : new boolean[] {false, true}) {
+            int[] serial = render(scene(1, smooth, triangles, cube));
+            assertTrue(drawn(serial) > WIDTH * HEIGHT / 4);
+            for(int threads : new int[] {2, 3, 8}) {
+                assertArrayEquals("smooth " + smooth + ", " + threads + " threads", serial,
+                        render(scene(threads, smooth, triangles, cube)));
+            }
+        }
+    }
+
+    /**
+     * Returns a scene whose camera looks along the y axis, so the point (x, 0, z) is projected exactly onto the
+     * pixel (-36 x, -36 z) relative to the center of the image.
+     */
+    static Scene axisAlignedScene() {
+        Scene scene = new Scene(WIDTH, HEIGHT);
+        scene.getCamera().setLock(new EuclideanVector(0, 0, 0));
+        scene.getCamera().setPosition(new EuclideanVector(0, -5, 0));
+        return scene;
+    }
+
+    /**
+     * @return the point which is projected onto the pixel (x, y) in an axisAlignedScene
+     */
+    static Vertex pixel(int x, int y) {
+        return new Vertex(-x / 36.0, 0, -y / 36.0);
+    }
+
+    /**
+     * @return the point with the given depth which is projected onto the pixel (x, y) in an axisAlignedScene
+     */
+    static Vertex pixel(int x, int y, double depth) {
+        return new Vertex(-x * depth / 180, depth - 5, -y * depth / 180);
+    }
+
+    static void rasterizeRectangle(Scene scene, int x0, int y0, int x1, int y1, double depth, int color) {
+        scene.rasterizeTriangle(pixel(x0, y0, depth), pixel(x1, y0, depth), pixel(x1, y1, depth), color);
+        scene.rasterizeTriangle(pixel(x0, y0, depth), pixel(x1, y1, depth), pixel(x0, y1, depth), color);
+    }
+
+    @Test
+    public void sharedEdgesAreDrawnOnce() {
+        // convex polygons split into a fan around the center; the corners lie on pixels, so the shared edges run
+        // through many pixels (horizontally, vertically and diagonally)
+        int[][] polygons = {
+                {40, 40, 0, 40, -40, 40, -40, 0, -40, -40, 0, -40, 40, -40, 40, 0},
+                {40, 0, 20, 36, -20, 36, -40, 0, -20, -36, 20, -36},
+                {50, -10, 30, 50, -30, 30, -50, -50},
+        };
+        for(int[] polygon : polygons) {
+            for(boolean reversed : new boolean[] {false, true}) {
+                Scene scene = axisAlignedScene();
+                scene.render();
+                int n = polygon.length / 2;
+                for(int k = 0; k < n; k++) {
+                    int j = (k + 1) % n;
+                    Vertex p0 = pixel(polygon[2*k], polygon[2*k + 1]), p1 = pixel(polygon[2*j], polygon[2*j + 1]);
+                    int color = Color.fromRGB((byte) (20 * k), (byte) 200, (byte) 100);
+                    if(reversed) {
+                        scene.rasterizeTriangle(pixel(0, 0), p1, p0, color);
+                    } else {
+                        scene.rasterizeTriangle(pixel(0, 0), p0, p1, color);
+                    }
+                }
+                int[] pixels = frame(scene);
+                int covered = drawn(pixels);
+                assertTrue(covered > 1000);
+                // no pixel on a shared edge is written twice ...
+                assertEquals(n + " corners", covered, scene.getStatistics().getPixelsWritten());
+                // ... and none is left out: the polygon is convex, so every row is covered without gaps
+                for(int y = 0; y < HEIGHT; y++) {
+                    int first = -1, last = -1, count = 0;
+                    for(int x = 0; x < WIDTH; x++) {
+                        if(pixels[y * WIDTH + x] != pixels[0]) {
+                            first = first < 0 ? x : first;
+                            last = x;
+                            count++;
+                        }
+                    }
+                    assertEquals(n + " corners, row " + y, count, first < 0 ? 0 : last - first + 1);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void earlyDepthTestsAgreeWithFloatDepth() {
+        // the far rectangle is stored as 4.0f, so the near one is behind it in a float depth buffer
+        // although it is nearer than the far one with double precision
+        double far = 4 + 0.45 * Math.ulp(4f), near = far - 1e-7;
+        assertTrue(near > (float) far);
+        int farColor = Color.fromRGB((byte) 200, (byte) 0, (byte) 0);
+        int nearColor = Color.fromRGB((byte) 0, (byte) 200, (byte) 0);
+        // both rectangles lie in one block of the hierarchical depth buffer and the far one covers too few pixels
+        // to recompute its upper bound, so the near one is not rejected early, but may be accepted early
+        int center = (HEIGHT / 2 + 2) * WIDTH + WIDTH / 2 + 2;
+        for(boolean floatDepth : new boolean[] {false, true}) {
+            int[] colors = new int[2];
+            for(int order = 0; order < 3; order++) {
+                Scene scene = axisAlignedScene();
+                scene.setFloatDepth(floatDepth);
+                scene.render();
+                if(order != 1) {
+                    rasterizeRectangle(scene, 0, 0, 4, 4, far, farColor);
+                }
+                if(order != 0) {
+                    rasterizeRectangle(scene, 1, 1, 3, 3, near, nearColor);
+                }
+                if(order < 2) {
+                    colors[order] = frame(scene)[center];
+                    continue;
+                }
+                // like the test of each pixel against the depth buffer
+                assertEquals("float depth " + floatDepth, colors[floatDepth ? 0 : 1], frame(scene)[center]);
+            }
+            assertNotEquals(colors[0], colors[1]);
+        }
+    }
+
+    @Test
+    public void regionsMatchFullRender() throws Exception {
+        Mesh triangles = randomTriangles(19, 300), cube = new Cube(1.5);
+        for(boolean smooth : new boolean[] {false, true}) {
+            int[] full = render(scene(1, smooth, triangles, cube));
+            // horizontal and vertical strips whose borders cut through triangles and blocks of the depth buffer
+            int[][] strips = {{0, 0, WIDTH, 37}, {0, 37, WIDTH, 100}, {0, 137, WIDTH, 103},
+                    {0, 0, 61, HEIGHT}, {61, 0, 200, HEIGHT}, {261, 0, 59, HEIGHT}};
+            for(int threads : new int[] {1, 3}) {
+                Scene scene = scene(threads, smooth, triangles, cube);
+                for(int[] strip : strips) {
+                    scene.render(strip[0], strip[1], strip[2], strip[3]);
+                    int[] pixels = frame(scene);
+                    for(int y = strip[1]; y < strip[1] + strip[3]; y++) {
+                        int row = y * WIDTH + strip[0];
+                        assertArrayEquals("smooth " + smooth + ", " + threads + " threads, row " + y,
+                                Arrays.copyOfRange(full, row, row + strip[2]), Arrays.copyOfRange(pixels, row, row + strip[2]));
+                    }
+                }
+                assertArrayEquals(full, frame(scene));
+                // the scissor rectangle is restored, so the next frame is complete again
+                assertArrayEquals(full, render(scene));
+            }
+        }
+    }
+
+    @Test
+    public void unchangedFrameIsSkipped() throws Exception {
+        Mesh triangles = randomTriangles(23, 200), cube = new Cube(1.5);
+        for(int threads : new int[] {1, 3}) {
+            Scene scene = scene(threads, false, triangles, cube);
+            int[] first = render(scene);
+            assertFalse(scene.getStatistics().isSkipped());
+            assertFalse(scene.getStatistics().isReshaded());
+            assertTrue(scene.getStatistics().getPixelsWritten() > 0);
+            assertArrayEquals(first, render(scene));
+            assertTrue(scene.getStatistics().isSkipped());
+            assertEquals(0, scene.getStatistics().getFacesSubmitted());
+            assertEquals(0, scene.getStatistics().getPixelsWritten());
+        }
+    }
+
+    @Test
+    public void lightMoveReshades() throws Exception {
+        Mesh triangles = randomTriangles(29, 300), cube = new Cube(1.5);
+        Vertex moved = new Vertex(2, 4, -1);
+        // from inside of the triangles, many of them are clipped
+        EuclideanVector[] positions = {null, new EuclideanVector(0.2, 0.9, 0.6)};
+        for(EuclideanVector position : positions) {
+            for(boolean smooth : new boolean[] {false, true}) {
+                Scene reference = scene(1, smooth, triangles, cube);
+                if(position != null) {
+                    reference.getCamera().setPosition(position);
+                }
+                reference.getLights().get(0).setPosition(moved);
+                int[] expected = render(reference);
+                assertEquals(position != null, reference.getStatistics().getTrianglesClipped() > 0);
+                for(int threads : new int[] {1, 3}) {
+                    String message = (position == null ? "outside" : "inside") + ", smooth " + smooth + ", " + threads + " threads";
+                    Scene scene = scene(threads, smooth, triangles, cube);
+                    if(position != null) {
+                        scene.getCamera().setPosition(position);
+                    }
+                    int[] before = render(scene);
+                    scene.getLights().get(0).setPosition(moved);
+                    int[] after = render(scene);
+                    assertTrue(scene.getStatistics().isReshaded());
+                    assertFalse(scene.getStatistics().isSkipped());
+                    // nothing is projected, submitted or rasterized again
+                    assertEquals(0, scene.getStatistics().getVerticesProjected());
+                    assertEquals(0, scene.getStatistics().getFacesSubmitted());
+                    assertEquals(0, scene.getStatistics().getTrianglesRasterized());
+                    assertEquals(0, scene.getStatistics().getPixelsTested());
+                    assertFalse(message, Arrays.equals(before, after));
+                    assertArrayEquals(message, expected, after);
+                    // and again, from the triangles kept since the last full frame
+                    scene.getLights().get(0).setPosition(new Vertex(-1, 5, 2));
+                    assertArrayEquals(message, before, render(scene));
+                    assertTrue(scene.getStatistics().isReshaded());
+                }
+            }
+        }
+    }
+
+    /**
+     * A light shining from the direction of its position, which does not report any changes by itself.
+     */
+    private static class DirectionalLight extends Light {
+        private Vertex direction;
+
+        DirectionalLight(Vertex direction) {
+            this.direction = direction;
+        }
+
+        @Override
+        public double intensityAt(EuclideanVector position, EuclideanVector normal) {
+            return Math.max(0, -normal.dot(this.direction) / this.direction.getMagnitude());
+        }
+
+        @Override
+        protected void updatePosition(Vertex position) {
+            this.direction = position;
+        }
+    }
+
+    @Test
+    public void subclassedLightMoveReshades() throws Exception {
+        Mesh triangles = randomTriangles(37, 200);
+        Scene scene = scene(1, false, triangles);
+        Light light = new DirectionalLight(new Vertex(0, 1, -1));
+        scene.addLight(light);
+        int[] before = render(scene);
+        render(scene);
+        assertTrue(scene.getStatistics().isSkipped());
+        // setPosition reports the change, although the subclass only moves the light
+        long count = light.getModificationCount();
+        light.setPosition(new Vertex(1, 0, -1));
+        assertEquals(count + 1, light.getModificationCount());
+        int[] after = render(scene);
+        assertTrue(scene.getStatistics().isReshaded());
+        assertFalse(Arrays.equals(before, after));
+    }
+
+    @Test
+    public void changesForceFullRender() throws Exception {
+        Mesh cube = new Cube(1.5);
+        for(int change = 0; change < 4; change++) {
+            Mesh triangles = randomTriangles(31, 200);
+            Scene scene = scene(2, true, triangles, cube);
+            render(scene);
+            render(scene);
+            assertTrue(scene.getStatistics().isSkipped());
+            if(change == 0) {
+                scene.getCamera().setPosition(new EuclideanVector(1, -8, 3));
+            } else if(change == 1) {
+                triangles.setVertex(0, 0.5, -0.5, 0.25);
+            } else if(change == 2) {
+                // drawing onto the frame is not noticed by the scene
+                scene.getFrameImage().setRGB(WIDTH / 2, HEIGHT / 2, 0xff00ff);
+                scene.invalidate();
+            } else {
+                scene.rasterizeLine(pixel(-50, -50), pixel(50, 50), Color.fromRGB((byte) 255, (byte) 0, (byte) 255));
+            }
+            int[] pixels = render(scene);
+            assertFalse("change " + change, scene.getStatistics().isSkipped());
+            assertFalse("change " + change, scene.getStatistics().isReshaded());
+            assertTrue("change " + change, scene.getStatistics().getPixelsTested() > 0);
+            Scene reference = scene(1, true, triangles, cube);
+            reference.getCamera().set(scene.getCamera());
+            assertArrayEquals("change " + change, render(reference), pixels);
+        }
+    }
+
+    /**
+     * Asserts that every channel of the two frames differs by at most the given tolerance.
+     */
+    private static void assertSimilar(String message, int[] expected, int[] actual, int tolerance) {
+        assertEquals(expected.length, actual.length);
+        for(int i = 0; i < expected.length; i++) {
+            for(int shift = 0; shift < 24; shift += 8) {
+                int e = expected[i] >> shift & 0xff, a = actual[i] >> shift & 0xff;
+                assertEquals(message + ", pixel " + i, e, a, tolerance);
+            }
+        }
+    }
+
+    @Test
+    public void deferredMatchesForward() throws Exception {
+        Mesh triangles = randomTriangles(37, 300);
+        for(boolean smooth : new boolean[] {false, true}) {
+            for(int threads : new int[] {1, 3}) {
+                String message = "smooth " + smooth + ", " + threads + " threads";
+                // a distant light is almost the same at every point, so per face, per vertex and per pixel
+                // lighting differ by at most one shade; the corners of the random triangles all have the normal
+                // of their face, so smooth shading does not bend it
+                Vertex far = new Vertex(-1000, 5000, 2000);
+                double distance = Math.sqrt(1000 * 1000 + 5000 * 5000 + 2000 * 2000);
+                Scene forward = scene(1, smooth, triangles), deferred = scene(threads, smooth, triangles);
+                deferred.setDeferredShading(true);
+                for(Scene scene : new Scene[] {forward, deferred}) {
+                    scene.getLights().clear();
+                    scene.addLight(new PointLight(far, 0.9 * distance));
+                }
+                int[] expected = render(forward);
+                assertTrue(drawn(expected) > WIDTH * HEIGHT / 8);
+                assertSimilar(message, expected, render(deferred), 1);
+            }
+        }
+    }
+
+    @Test
+    public void deferredLightMoveReshades() throws Exception {
+        Mesh triangles = randomTriangles(41, 300), cube = new Cube(1.5);
+        Vertex moved = new Vertex(2, 4, -1);
+        for(boolean smooth : new boolean[] {false, true}) {
+            Scene reference = scene(1, smooth, triangles, cube);
+            reference.setDeferredShading(true);
+            reference.getLights().get(0).setPosition(moved);
+            int[] expected = render(reference);
+            for(int threads : new int[] {1, 3}) {
+                Scene scene = scene(threads, smooth, triangles, cube);
+                scene.setDeferredShading(true);
+                int[] before = render(scene);
+                scene.getLights().get(0).setPosition(moved);
+                int[] after = render(scene);
+                assertTrue(scene.getStatistics().isReshaded());
+                // only the second pass runs again
+                assertEquals(0, scene.getStatistics().getFacesSubmitted());
+                assertEquals(0, scene.getStatistics().getPixelsTested());
+                assertTrue(scene.getStatistics().getPixelsShaded() > WIDTH * HEIGHT / 4);
+                assertFalse(Arrays.equals(before, after));
+                assertArrayEquals("smooth " + smooth + ", " + threads + " threads", expected, after);
+            }
+        }
+    }
+
+    @Test
+    public void frameImageSharesFrameBuffer() throws Exception {
+        Scene scene = scene(1, false, randomTriangles(43, 100), new Cube(1.5));
+        BufferedImage image = scene.getFrameImage();
+        assertSame(image, scene.getFrameImage());
+        for(int frame = 0; frame < 2; frame++) {
+            // the image follows every frame without being requested again
+            scene.getCamera().setPosition(new EuclideanVector(frame, -8, 2));
+            int[] pixels = render(scene);
+            assertTrue(drawn(pixels) > 0);
+            for(int y = 0; y < HEIGHT; y++) {
+                for(int x = 0; x < WIDTH; x++) {
+                    assertEquals(x + ", " + y, pixels[y * WIDTH + x] & 0xffffff, image.getRGB(x, y) & 0xffffff);
+                }
+            }
+        }
+        // and writing to the image writes to the frame buffer
+        image.setRGB(3, 2, 0x123456);
+        assertEquals(0x123456, frame(scene)[2 * WIDTH + 3] & 0xffffff);
+        assertEquals(0x123456, scene.toBufferedImage().getRGB(3, 2) & 0xffffff);
+    }
+
+    @Test
+    public void floatDepthToggleIsStable() throws Exception {
+        Mesh triangles = randomTriangles(47, 300), cube = new Cube(1.5);
+        for(int threads : new int[] {1, 3}) {
+            Scene scene = scene(threads, false, triangles, cube);
+            int[] doubleDepth = render(scene);
+            Scene floats = scene(threads, false, triangles, cube);
+            floats.setFloatDepth(true);
+            int[] floatDepth = render(floats);
+            for(int toggle = 0; toggle < 2; toggle++) {
+                scene.setFloatDepth(true);
+                assertArrayEquals(floatDepth, render(scene));
+                assertFalse(scene.getStatistics().isSkipped());
+                // setting the same precision again keeps the frame
+                scene.setFloatDepth(true);
+                assertArrayEquals(floatDepth, render(scene));
+                assertTrue(scene.getStatistics().isSkipped());
+                scene.setFloatDepth(false);
+                assertArrayEquals(doubleDepth, render(scene));
+                assertFalse(scene.getStatistics().isSkipped());
+            }
+        }
+    }
+
+    private static Object field(Object object, String name) throws ReflectiveOperationException {
+        Field field = object.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(object);
+    }
+
+    /**
+     * @return the arrays behind the frame, depth and geometry buffers of the scene
+     */
+    private static Object[] backingArrays(Scene scene) throws ReflectiveOperationException {
+        DepthBuffer depth = (DepthBuffer) field(scene, "depthBuffer");
+        GBuffer gBuffer = (GBuffer) field(scene, "gBuffer");
+        return new Object[] {((DataBufferInt) scene.getFrameImage().getRaster().getDataBuffer()).getData(),
+                field(depth, depth.isFloatPrecision() ? "floats" : "doubles"), gBuffer.getTriangles(),
+                gBuffer.getNormals()};
+    }
+
+    /**
+     * Asserts that the frame, the depth and the geometry buffer of the scene are the same as the ones of a fresh
+     * scene of its size with the same meshes, which are rendered deferred.
+     */
+    private static void assertSameAsFresh(Scene scene, Mesh ... meshes) throws ReflectiveOperationException {
+        Scene fresh = new Scene(scene.getWidth(), scene.getHeight());
+        fresh.setDeferredShading(true);
+        fresh.addLight(new PointLight(new Vertex(-1, 5, 2), 2));
+        for(Mesh mesh : meshes) {
+            fresh.addMesh(mesh);
+        }
+        String size = scene.getWidth() + "x" + scene.getHeight();
+        assertArrayEquals(size, render(fresh), render(scene));
+        DepthBuffer expectedDepth = (DepthBuffer) field(fresh, "depthBuffer");
+        DepthBuffer actualDepth = (DepthBuffer) field(scene, "depthBuffer");
+        GBuffer expectedGBuffer = (GBuffer) field(fresh, "gBuffer"), actualGBuffer = (GBuffer) field(scene, "gBuffer");
+        int covered = 0;
+        for(int i = 0; i < scene.getWidth() * scene.getHeight(); i++) {
+            assertEquals(size + ", " + i, expectedDepth.get(i), actualDepth.get(i), 0);
+            if(expectedDepth.get(i) == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            covered++;
+            assertEquals(size + ", " + i, expectedGBuffer.getTriangles()[i], actualGBuffer.getTriangles()[i]);
+            for(int k = 0; k < 3; k++) {
+                assertEquals(size + ", " + i, expectedGBuffer.getNormals()[3*i + k], actualGBuffer.getNormals()[3*i + k], 0);
+            }
+        }
+        // the zoom (and so the covered area) depends on the smaller side only
+        int side = Math.min(scene.getWidth(), scene.getHeight());
+        assertTrue(size, covered > side * side / 5);
+        // the camera zooms with the size of the scene
+        Vector3 expected = new Vector3(), actual = new Vector3();
+        for(Vertex vertex : new Vertex[] {new Vertex(0, 0, 0.5), new Vertex(1, -1, 0), new Vertex(-0.5, 0.7, 1.2)}) {
+            assertTrue(fresh.getCamera().project(vertex.x(), vertex.y(), vertex.z(), expected));
+            assertTrue(scene.getCamera().project(vertex.x(), vertex.y(), vertex.z(), actual));
+            assertEquals(size, expected.x(), actual.x(), 0);
+            assertEquals(size, expected.y(), actual.y(), 0);
+            assertEquals(size, expected.z(), actual.z(), 0);
+        }
+    }
+
+    @Test
+    public void setSizeKeepsBuffers() throws Exception {
+        Mesh triangles = randomTriangles(61, 200), cube = new Cube(1.5);
+        Scene scene = new Scene(WIDTH, HEIGHT);
+        scene.setDeferredShading(true);
+        scene.addLight(new PointLight(new Vertex(-1, 5, 2), 2));
+        scene.addMesh(triangles);
+        scene.addMesh(cube);
+        scene.render();
+        Object[] arrays = backingArrays(scene);
+        for(int[] size : new int[][] {{WIDTH / 2, HEIGHT / 2}, {WIDTH, HEIGHT}, {WIDTH - 1, HEIGHT - 1}}) {
+            // a scissor rectangle of the old size does not survive the resize
+            scene.setScissor(10, 20, 30, 40);
+            scene.setSize(size[0], size[1]);
+            assertSameAsFresh(scene, triangles, cube);
+            Object[] resized = backingArrays(scene);
+            for(int k = 0; k < arrays.length; k++) {
+                assertSame(size[0] + "x" + size[1] + ", " + k, arrays[k], resized[k]);
+            }
+        }
+        // growing beyond the buffers allocates larger ones, which are kept from then on
+        scene.setSize(2 * WIDTH, HEIGHT);
+        assertSameAsFresh(scene, triangles, cube);
+        Object[] grown = backingArrays(scene);
+        for(int k = 0; k < arrays.length; k++) {
+            assertNotSame(arrays[k], grown[k]);
+        }
+        scene.setSize(WIDTH, HEIGHT);
+        assertSameAsFresh(scene, triangles, cube);
+        assertArrayEquals(grown, backingArrays(scene));
+    }
+}
@@ -0,0 +1,146 @@
+package render;
+
+import linalg.EuclideanVector;
+import mesh.Mesh;
+import mesh.Vertex;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ShadowMapTest {
+
+    /**
+     * @return a square with both orientations, whose normal is the axis (0, 1, 2 for x, y, z), at the given
+     *         coordinate along the axis with the given half side length around it
+     */
+    private static Mesh square(int axis, double position, double halfSide) throws Exception {
+        Mesh mesh = new Mesh();
+        int u = axis == 0 ? 1 : 0, v = axis == 2 ? 1 : 2;
+        double[][] corners = {{-1, -1}, {1, -1}, {1, 1}, {-1, 1}};
+        for(double[] corner : corners) {
+            double[] p = new double[3];
+            p[axis] = position;
+            p[u] = halfSide * corner[0];
+            p[v] = halfSide * corner[1];
+            mesh.addVertex(p[0], p[1], p[2]);
+        }
+        mesh.addFace(0, 1, 2, 3);
+        mesh.addFace(3, 2, 1, 0);
+        return mesh;
+    }
+
+    @Test
+    public void occluderCastsShadow() throws Exception {
+        // the light is 1 above the occluder and 2 above the floor, so the shadow is twice as large as the occluder
+        Mesh floor = square(2, 0, 3), occluder = square(2, 1, 0.5);
+        ShadowMap map = new ShadowMap(128);
+        assertTrue(map.update(0, 0, 2, List.of(floor, occluder)));
+        double[][] shadowed = {{0, 0}, {0.9, 0}, {-0.9, 0.5}, {0.5, 0.9}, {-0.8, -0.8}};
+        for(double[] p : shadowed) {
+            assertEquals(p[0] + ", " + p[1], 0, map.visibility(0, 0, 2, p[0], p[1], 0), 0);
+        }
+        double[][] lit = {{1.1, 0}, {0, -1.2}, {1.5, 1.5}, {-1.8, 0.2}, {1.6, -0.4}};
+        for(double[] p : lit) {
+            assertEquals(p[0] + ", " + p[1], 1, map.visibility(0, 0, 2, p[0], p[1], 0), 0);
+        }
+        // the occluder does not shadow itself and nothing is behind the light
+        assertEquals(1, map.visibility(0, 0, 2, 0.2, -0.3, 1), 0);
+        assertEquals(1, map.visibility(0, 0, 2, 0, 0, 5), 0);
+        // without the occluder, the whole floor is lit
+        assertTrue(map.update(0, 0, 2, List.of(floor)));
+        assertEquals(1, map.visibility(0, 0, 2, 0, 0, 0), 0);
+    }
+
+    @Test
+    public void shadowDarkensWall() throws Exception {
+        // a wall facing the camera at the depth 6 and an occluder at the depth 4, with the light 1 in front of
+        // the occluder: its shadow on the wall is 3 times as large, so it reaches out to 0.9 * 180 / 6 = 27 pixels
+        // from the center, while the occluder itself only covers 0.3 * 180 / 4 = 13.5 pixels
+        Mesh wall = square(1, 1, 3), occluder = square(1, -1, 0.3);
+        int[][] images = new int[2][];
+        for(int shadows = 0; shadows < 2; shadows++) {
+            Scene scene = SceneTest.axisAlignedScene();
+            scene.setDeferredShading(true);
+            PointLight light = new PointLight(new Vertex(0, -2, 0), 2);
+            if(shadows == 1) {
+                light.enableShadows(256);
+            }
+            scene.addLight(light);
+            scene.addMesh(wall);
+            scene.addMesh(occluder);
+            images[shadows] = SceneTest.render(scene);
+            assertEquals(shadows, scene.getStatistics().getShadowMapsRendered());
+        }
+        Scene reference = SceneTest.axisAlignedScene();
+        int width = reference.getWidth(), height = reference.getHeight();
+        int darker = 0;
+        for(int y = -height / 2; y < height / 2; y++) {
+            for(int x = -width / 2; x < width / 2; x++) {
+                int i = (y + height / 2) * width + x + width / 2;
+                double distance = Math.max(Math.abs(x), Math.abs(y));
+                if(distance < 13 || distance > 28) {
+                    // the occluder itself and the wall around the shadow are lit
+                    assertEquals(x + ", " + y, images[0][i], images[1][i]);
+                } else if(distance > 15 && distance < 26) {
+                    assertTrue(x + ", " + y, brightness(images[1][i]) < brightness(images[0][i]));
+                    darker++;
+                }
+            }
+        }
+        assertTrue(darker > 1000);
+    }
+
+    private static int brightness(int rgb) {
+        return (rgb >> 16 & 0xff) + (rgb >> 8 & 0xff) + (rgb & 0xff);
+    }
+
+    @Test
+    public void mapIsRenderedOnlyWhenOutdated() throws Exception {
+        Mesh wall = square(1, 1, 3), occluder = square(1, -1, 0.3);
+        Scene scene = SceneTest.axisAlignedScene();
+        PointLight light = new PointLight(new Vertex(0, -2, 0), 2);
+        light.enableShadows(64);
+        scene.addLight(light);
+        scene.addMesh(wall);
+        scene.addMesh(occluder);
+        scene.render();
+        assertEquals(1, scene.getStatistics().getShadowMapsRendered());
+        scene.render();
+        assertEquals(0, scene.getStatistics().getShadowMapsRendered());
+        // the map does not depend on the camera
+        scene.getCamera().setPosition(new EuclideanVector(1, -5, 0.5));
+        scene.render();
+        assertEquals(0, scene.getStatistics().getShadowMapsRendered());
+        scene.invalidate();
+        scene.render();
+        assertEquals(0, scene.getStatistics().getShadowMapsRendered());
+
+        light.setPosition(new Vertex(0, -2.5, 0));
+        scene.render();
+        assertEquals(1, scene.getStatistics().getShadowMapsRendered());
+        scene.render();
+        assertEquals(0, scene.getStatistics().getShadowMapsRendered());
+
+        occluder.setVertex(0, -0.4, -1, -0.3);
+        scene.render();
+        assertEquals(1, scene.getStatistics().getShadowMapsRendered());
+        scene.render();
+        assertEquals(0, scene.getStatistics().getShadowMapsRendered());
+
+        // the same for the map itself
+        ShadowMap map = new ShadowMap(16);
+        List<Mesh> meshes = List.of(wall, occluder);
+        assertTrue(map.update(0, -2, 0, meshes));
+        assertFalse(map.update(0, -2, 0, meshes));
+        assertTrue(map.update(0, -2, 0.1, meshes));
+        assertTrue(map.update(0, -2, 0.1, List.of(wall)));
+        assertFalse(map.update(0, -2, 0.1, List.of(wall)));
+        wall.setVertex(0, -3, 1, -3);
+        assertTrue(map.update(0, -2, 0.1, List.of(wall)));
+        map.invalidate();
+        assertTrue(map.update(0, -2, 0.1, List.of(wall)));
+        assertFalse(map.update(0, -2, 0.1, List.of(wall)));
+    }
+}
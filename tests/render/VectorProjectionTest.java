@@ -0,0 +1,48 @@
+package render;
+
+import linalg.EuclideanVector;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNotNull;
+
+/**
+ * Only runs if the optional source set vector/ is compiled and jdk.incubator.vector is added, see Camera.
+ */
+public class VectorProjectionTest {
+
+    @Test
+    public void matchesScalarLoop() {
+        VertexTransform transform = Camera.loadVectorProjection();
+        assumeNotNull(transform);
+        Random random = new Random(17);
+        int lanes = transform.getBatchSize();
+        Camera camera = new Scene(320, 240).getCamera();
+        for(int run = 0; run < 200; run++) {
+            camera.setPosition(new EuclideanVector(10 * random.nextGaussian(), 10 * random.nextGaussian(),
+                    10 * random.nextGaussian()));
+            int count = 3 + random.nextInt(8 * lanes);
+            double[] coordinates = new double[3 * count];
+            for(int i = 0; i < coordinates.length; i++) {
+                coordinates[i] = random.nextGaussian() * Math.pow(10, random.nextInt(12) - 6);
+            }
+            double[] scalar = new double[3 * count], vector = new double[3 * count];
+            camera.projectVertices(coordinates, 0, count, scalar);
+            Arrays.fill(vector, Double.NaN);
+            int end = transform.project(camera.getViewMatrix(), coordinates, 1, count - 1, vector);
+            // only whole batches are transformed, the rest is left untouched
+            assertEquals(0, (end - 1) % lanes);
+            assertTrue(end <= count - 1 && count - 1 - end < lanes);
+            for(int i = 0; i < vector.length; i++) {
+                if(i >= 3 && i < 3 * end) {
+                    assertEquals(Double.doubleToRawLongBits(scalar[i]), Double.doubleToRawLongBits(vector[i]));
+                } else {
+                    assertTrue(Double.isNaN(vector[i]));
+                }
+            }
+        }
+    }
+}
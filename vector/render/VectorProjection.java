@@ -0,0 +1,108 @@
+package render;
+
+import linalg.Matrix4;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The vertex transform of Camera.projectVertices on SIMD lanes, using the incubating Vector API.
+ * The packed coordinates (x, y, z per vertex) are transformed in place of their layout: a batch of
+ * SPECIES.length() vertices spans three vectors of 3 * SPECIES.length() consecutive doubles, and the
+ * result for the double at index j is row j % 3 of the view matrix applied to the vertex j / 3.
+ * So lane j needs x = c[j - j % 3], y = c[j - j % 3 + 1] and z = c[j - j % 3 + 2], which we get from
+ * contiguous loads at the offsets j - 2, ..., j + 2 blended by the residue of the lane. The entries of
+ * the matrix are arranged to the residues in the same way.
+ * Gathering the coordinates with an index map instead would be simpler, but it crashes the C2 compiler
+ * of JDK 17. Products and sums are evaluated in the same order as in the scalar loop, so both give
+ * identical results.
+ *
+ * This class is compiled separately from src/ with --add-modules jdk.incubator.vector and must only be loaded
+ * if that module is present (see Camera).
+ */
+final class VectorProjection implements VertexTransform {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    // for the three vectors of a batch, the lanes whose index has the residue 1 (resp. 2) modulo 3
+    private static final VectorMask<Double>[] RESIDUE_ONE = masks(1);
+    private static final VectorMask<Double>[] RESIDUE_TWO = masks(2);
+
+    VectorProjection() {
+    }
+
+    @Override
+    public int getBatchSize() {
+        return SPECIES.length();
+    }
+
+    private static VectorMask<Double>[] masks(int residue) {
+        // there are no arrays of a generic type, only the array creation is unchecked
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        VectorMask<Double>[] masks = new VectorMask[3];
+        int lanes = SPECIES.length();
+        for(int s = 0; s < 3; s++) {
+            boolean[] bits = new boolean[lanes];
+            for(int l = 0; l < lanes; l++) {
+                bits[l] = (s * lanes + l) % 3 == residue;
+            }
+            masks[s] = VectorMask.fromArray(SPECIES, bits, 0);
+        }
+        return masks;
+    }
+
+    /**
+     * Arranges the entries of the given column of the view matrix to the lanes of the three vectors of a batch,
+     * i.e. lane l of vector s gets the entry in row (s * SPECIES.length() + l) % 3.
+     */
+    private static DoubleVector[] column(Matrix4 m, int column) {
+        DoubleVector[] vectors = new DoubleVector[3];
+        int lanes = SPECIES.length();
+        double[] entries = new double[lanes];
+        for(int s = 0; s < 3; s++) {
+            for(int l = 0; l < lanes; l++) {
+                entries[l] = m.get((s * lanes + l) % 3, column);
+            }
+            vectors[s] = DoubleVector.fromArray(SPECIES, entries, 0);
+        }
+        return vectors;
+    }
+
+    /**
+     * Transforms whole batches of SPECIES.length() vertices. The loads reach one double before from and
+     * two doubles beyond the last batch.
+     */
+    @Override
+    public int project(Matrix4 m, double[] coordinates, int from, int to, double[] dest) {
+        int lanes = SPECIES.length();
+        // everything used in the loop is kept in local variables, so the vectors stay in registers
+        DoubleVector[] a = column(m, 0), b = column(m, 1), c = column(m, 2), d = column(m, 3);
+        DoubleVector a0 = a[0], b0 = b[0], c0 = c[0], d0 = d[0];
+        DoubleVector a1 = a[1], b1 = b[1], c1 = c[1], d1 = d[1];
+        DoubleVector a2 = a[2], b2 = b[2], c2 = c[2], d2 = d[2];
+        VectorMask<Double> one0 = RESIDUE_ONE[0], one1 = RESIDUE_ONE[1], one2 = RESIDUE_ONE[2];
+        VectorMask<Double> two0 = RESIDUE_TWO[0], two1 = RESIDUE_TWO[1], two2 = RESIDUE_TWO[2];
+        int v = from;
+        for(; v + lanes <= to; v += lanes) {
+            int j = 3 * v;
+            project(coordinates, j, one0, two0, a0, b0, c0, d0, dest);
+            project(coordinates, j + lanes, one1, two1, a1, b1, c1, d1, dest);
+            project(coordinates, j + 2 * lanes, one2, two2, a2, b2, c2, d2, dest);
+        }
+        return v;
+    }
+
+    /**
+     * Transforms one vector of doubles starting at index j, where one and two mark the lanes with residue 1 and 2.
+     */
+    private static void project(double[] coordinates, int j, VectorMask<Double> one, VectorMask<Double> two,
+                                DoubleVector a, DoubleVector b, DoubleVector c, DoubleVector d, double[] dest) {
+        DoubleVector before2 = DoubleVector.fromArray(SPECIES, coordinates, j - 2);
+        DoubleVector before1 = DoubleVector.fromArray(SPECIES, coordinates, j - 1);
+        DoubleVector here = DoubleVector.fromArray(SPECIES, coordinates, j);
+        DoubleVector after1 = DoubleVector.fromArray(SPECIES, coordinates, j + 1);
+        DoubleVector after2 = DoubleVector.fromArray(SPECIES, coordinates, j + 2);
+        DoubleVector x = here.blend(before1, one).blend(before2, two);
+        DoubleVector y = after1.blend(here, one).blend(before1, two);
+        DoubleVector z = after2.blend(after1, one).blend(here, two);
+        a.mul(x).add(b.mul(y)).add(c.mul(z)).add(d).intoArray(dest, j);
+    }
+}